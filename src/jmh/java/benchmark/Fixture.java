@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The signed fixtures of the tests, by subfilter and signer tool, so that JMH reports each combination separately.
+ */
+public enum Fixture
+{
+    DETACHED_NITRO11("adbe.pkcs7.detached", "Nitro Pro 11", "text_sigNitro11.2.pdf"),
+    DETACHED_ADOBE_DC("adbe.pkcs7.detached", "Adobe DC", "text_sigAdobeDC.2.pdf"),
+    DETACHED_BOUNCY_CASTLE_APPROVAL("adbe.pkcs7.detached", "BouncyCastle", "text_sigBCa.2.pdf"),
+    DETACHED_BOUNCY_CASTLE_CERTIFICATION("adbe.pkcs7.detached", "BouncyCastle", "text_sigBCc.2.pdf"),
+    DETACHED_BOUNCY_CASTLE_AND_NITRO11("adbe.pkcs7.detached", "BouncyCastle, Nitro Pro 11", "text_sigBCc_sigNitro11.2.pdf"),
+    DETACHED_MODIFIED_ADOBE_DC("adbe.pkcs7.detached", "Adobe DC", "sigField_sigAdobeDC_modified.3.pdf"),
+    SHA1_ADOBE_DC("adbe.pkcs7.sha1", "Adobe DC", "sigFieldPkcs7Sha1_sigAdobeDC.2.pdf"),
+    RSA_SHA1_ADOBE_DC("adbe.x509.rsa_sha1", "Adobe DC", "sigFieldRsaSha1_sigAdobeDC.2.pdf");
+
+    private final String subFilter;
+    private final String signer;
+    private final String fileName;
+
+    Fixture(String subFilter, String signer, String fileName)
+    {
+        this.subFilter = subFilter;
+        this.signer = signer;
+        this.fileName = fileName;
+    }
+
+    public String getSubFilter()
+    {
+        return subFilter;
+    }
+
+    public String getSigner()
+    {
+        return signer;
+    }
+
+    /**
+     * @return the fixture, relative to the project directory the benchmarks are run from
+     */
+    public Path getPath()
+    {
+        return Paths.get("src", "test", "resources", fileName);
+    }
+}
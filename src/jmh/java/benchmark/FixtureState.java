@@ -0,0 +1,42 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Security;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One fixture per trial, all of them unless restricted with {@code -p fixture=...}. The bytes are read once, so
+ * that benchmarks taking a byte array do not measure the disk.
+ */
+@State(Scope.Benchmark)
+public class FixtureState
+{
+    @Param
+    public Fixture fixture;
+
+    public Path path;
+    public File file;
+    public byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException
+    {
+        // OpenPDF and ICEpdf look the provider up by name
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null)
+        {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        path = fixture.getPath();
+        file = path.toFile();
+        bytes = Files.readAllBytes(path);
+    }
+}
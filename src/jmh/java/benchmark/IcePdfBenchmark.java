@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.icepdf.core.pobjects.Document;
+import org.icepdf.core.pobjects.acroform.InteractiveForm;
+import org.icepdf.core.pobjects.acroform.signature.SignatureValidator;
+import org.icepdf.core.pobjects.annotations.SignatureWidgetAnnotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The ICEpdf flow of IcePdfSignatureVerificationTest on the fixtures, as a baseline for the PDFBox based ones.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IcePdfBenchmark
+{
+    @Benchmark
+    public Object verifySignatures(FixtureState state)
+    {
+        Document document = new Document();
+        try
+        {
+            Map<String, Boolean> result = new HashMap<>();
+            document.setFile(state.file.getAbsolutePath());
+            InteractiveForm interactiveForm = document.getCatalog().getInteractiveForm();
+            List<SignatureWidgetAnnotation> signatureFields = interactiveForm == null ? null : interactiveForm.getSignatureFields();
+            if (signatureFields != null)
+            {
+                for (SignatureWidgetAnnotation signatureWidgetAnnotation : signatureFields)
+                {
+                    SignatureValidator signatureValidator = signatureWidgetAnnotation.getSignatureValidator();
+                    signatureValidator.validate();
+                    result.put(signatureWidgetAnnotation.getFieldDictionary().getPartialFieldName(),
+                            !signatureValidator.isSignedDataModified());
+                }
+            }
+            return result;
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+        finally
+        {
+            document.dispose();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.lowagie.text.pdf.AcroFields;
+import com.lowagie.text.pdf.PdfPKCS7;
+import com.lowagie.text.pdf.PdfReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The OpenPDF flow of OpenPdfSignatureVerificationTest on the fixtures, as a baseline for the PDFBox based ones.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenPdfBenchmark
+{
+    @Benchmark
+    public Object verifySignatures(FixtureState state)
+    {
+        try
+        {
+            Map<String, Boolean> result = new HashMap<>();
+            PdfReader reader = new PdfReader(state.bytes);
+            AcroFields fields = reader.getAcroFields();
+            for (Object name : fields.getSignatureNames())
+            {
+                PdfPKCS7 pkcs7 = fields.verifySignature((String) name);
+                result.put((String) name, pkcs7.verify());
+            }
+            return result;
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+    }
+}
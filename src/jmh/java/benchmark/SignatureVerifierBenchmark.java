@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pdfbox.SignatureVerifier;
+
+/**
+ * {@link SignatureVerifier#extractSignatures} on the fixtures. Fixtures that fail with an exception, e.g. the
+ * unsupported adbe.x509.rsa_sha1, are measured up to the failure, which is returned rather than thrown.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureVerifierBenchmark
+{
+    private SignatureVerifier verifier;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        verifier = new SignatureVerifier();
+    }
+
+    /**
+     * A verifier serving many documents, with its caches warmed up.
+     */
+    @Benchmark
+    public Object extractSignatures(FixtureState state)
+    {
+        try
+        {
+            return verifier.extractSignatures(state.file);
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+    }
+
+    /**
+     * A verifier set up for a single document.
+     */
+    @Benchmark
+    public Object extractSignaturesWithNewVerifier(FixtureState state)
+    {
+        try
+        {
+            return new SignatureVerifier().extractSignatures(state.file);
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pdfbox.mkl.ValidateSignature;
+
+/**
+ * {@link ValidateSignature#validateSignaturesImproved} on the fixtures, from memory and from a memory-mapped file.
+ * No signature file name format is given, so no diagnostic artifacts are stored.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidateSignatureBenchmark
+{
+    private ValidateSignature validateSignature;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        validateSignature = new ValidateSignature(null);
+    }
+
+    @Benchmark
+    public Object validateBytes(FixtureState state)
+    {
+        try
+        {
+            return validateSignature.validateSignaturesImproved(state.bytes, null);
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validateMapped(FixtureState state)
+    {
+        try
+        {
+            return validateSignature.validateSignaturesImproved(state.path, null);
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package pdfbox;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+
+/**
+ * Helpers for the /ByteRange of PDFBox signature dictionaries.
+ */
+public final class ByteRanges
+{
+    private ByteRanges()
+    {
+    }
+
+    /**
+     * Reads the /ByteRange as longs, {@link PDSignature#getByteRange()} truncates offsets beyond 2 GB.
+     *
+     * @param sig the signature dictionary
+     * @return the byte range as (offset, length) pairs
+     * @throws IOException if the /ByteRange is missing or not an array of numbers
+     */
+    public static long[] getByteRange(PDSignature sig) throws IOException
+    {
+        COSBase byteRange = sig.getCOSObject().getDictionaryObject(COSName.BYTERANGE);
+        if (!(byteRange instanceof COSArray))
+        {
+            throw new IOException("Missing /ByteRange in signature dictionary");
+        }
+        COSArray array = (COSArray) byteRange;
+        long[] result = new long[array.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            COSBase element = array.getObject(i);
+            if (!(element instanceof COSNumber))
+            {
+                throw new IOException("Malformed /ByteRange: " + array);
+            }
+            result[i] = ((COSNumber) element).longValue();
+        }
+        return result;
+    }
+}
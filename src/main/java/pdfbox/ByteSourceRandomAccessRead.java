@@ -0,0 +1,227 @@
+package pdfbox;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import signature.io.ByteSource;
+
+/**
+ * Lets PDFBox parse a document straight from a {@link ByteSource}, e.g. a memory mapping, instead of requiring a
+ * {@code byte[]} ({@link PDDocument#load(byte[])}) or a private copy of the file.
+ *
+ * The parser mostly reads byte by byte, so reads are served from a small page buffer rather than each going to
+ * the source, which for a file channel would mean a system call per byte.
+ */
+public class ByteSourceRandomAccessRead implements RandomAccessRead
+{
+    private static final int PAGE_SIZE = 8192;
+
+    private final ByteSource source;
+    private final long length;
+    private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+    private long pageStart;
+    private int pageLength;
+    private long position;
+    private boolean closed;
+
+    public ByteSourceRandomAccessRead(ByteSource source) throws IOException
+    {
+        this.source = source;
+        this.length = source.size();
+    }
+
+    /**
+     * Parses a document from the given source.
+     *
+     * @param source the whole PDF document
+     * @return the loaded document, which must be closed by the caller
+     * @throws IOException if the document could not be parsed
+     */
+    public static PDDocument load(ByteSource source) throws IOException
+    {
+        ByteSourceRandomAccessRead read = new ByteSourceRandomAccessRead(source);
+        try
+        {
+            PDFParser parser = new PDFParser(read);
+            parser.parse();
+            return parser.getPDDocument();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            read.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        checkClosed();
+        if (!fillPage())
+        {
+            return -1;
+        }
+        return page.get((int) (position++ - pageStart)) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException
+    {
+        checkClosed();
+        if (length == 0)
+        {
+            return 0;
+        }
+        int read;
+        if (length >= PAGE_SIZE && !inPage(position))
+        {
+            // large reads, e.g. of stream data, bypass the page
+            read = source.read(position, ByteBuffer.wrap(b, offset, length));
+        }
+        else
+        {
+            if (!fillPage())
+            {
+                return -1;
+            }
+            read = (int) Math.min(length, pageStart + pageLength - position);
+            page.position((int) (position - pageStart));
+            page.get(b, offset, read);
+        }
+        if (read > 0)
+        {
+            position += read;
+        }
+        return read;
+    }
+
+    private boolean inPage(long position)
+    {
+        return position >= pageStart && position < pageStart + pageLength;
+    }
+
+    /**
+     * Makes sure the page holds the byte at the current position.
+     *
+     * @return false at the end of the document
+     */
+    private boolean fillPage() throws IOException
+    {
+        if (inPage(position))
+        {
+            return true;
+        }
+        page.clear();
+        while (page.hasRemaining() && source.read(position + page.position(), page) > 0)
+        {
+            // keep filling, a source may return short reads
+        }
+        pageStart = position;
+        pageLength = page.position();
+        return pageLength > 0;
+    }
+
+    @Override
+    public long getPosition() throws IOException
+    {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException
+    {
+        checkClosed();
+        if (position < 0)
+        {
+            throw new IOException("Invalid position " + position);
+        }
+        this.position = Math.min(position, length);
+    }
+
+    @Override
+    public long length() throws IOException
+    {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException
+    {
+        int result = read();
+        if (result != -1)
+        {
+            rewind(1);
+        }
+        return result;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException
+    {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException
+    {
+        byte[] result = new byte[length];
+        int offset = 0;
+        while (offset < length)
+        {
+            int read = read(result, offset, length - offset);
+            if (read <= 0)
+            {
+                throw new EOFException("Premature end of document at offset " + position);
+            }
+            offset += read;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException
+    {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        checkClosed();
+        return (int) Math.min(length - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+    }
+
+    private void checkClosed() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("RandomAccessRead already closed");
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package pdfbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import signature.io.ByteSource;
+
+/**
+ * A minimal PDF object parser (PDF 32000-1:2008 7.2 and 7.3) reading directly from a {@link ByteSource} through a
+ * small window, for {@link SignatureLocator}. Objects are represented by plain Java types:
+ *
+ * <ul>
+ * <li>dictionaries by {@code Map<String, Object>}, keyed by the name without slash,</li>
+ * <li>arrays by {@code List<Object>},</li>
+ * <li>names by {@link Name}, strings by {@link Str}, indirect references by {@link Ref},</li>
+ * <li>numbers by {@link Long} or {@link Double}, booleans by {@link Boolean} and null by {@link #NULL}.</li>
+ * </ul>
+ *
+ * Stream dictionaries are returned as {@link Stream}, with the offset of the stream data; the data itself is
+ * left for the caller to read.
+ */
+final class ObjectReader
+{
+    static final Object NULL = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            return "null";
+        }
+    };
+
+    private static final int WINDOW_SIZE = 4096;
+    /**
+     * Hex strings in the document decoding to more bytes than this, like signature /Contents, are only skipped;
+     * their bytes are read from the document when needed.
+     */
+    static final int MAX_DECODED_HEX_STRING = 1024;
+    /**
+     * Arrays and dictionaries nested deeper than this are rejected rather than parsed recursively until the stack
+     * overflows; real documents hardly nest a dozen levels.
+     */
+    static final int MAX_NESTING = 256;
+
+    private final ByteSource source;
+    private final boolean documentPositions;
+    private final long size;
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    private long windowStart;
+    private long position;
+    private int nesting;
+
+    /**
+     * @param source the bytes to parse
+     * @param documentPositions whether positions in the source are positions in the document, which is not the
+     *                          case for the decoded data of an object stream
+     */
+    ObjectReader(ByteSource source, boolean documentPositions) throws IOException
+    {
+        this.source = source;
+        this.documentPositions = documentPositions;
+        this.size = source.size();
+        window.limit(0);
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    long position()
+    {
+        return position;
+    }
+
+    void seek(long position)
+    {
+        this.position = position;
+    }
+
+    /**
+     * @return the byte at the current position, or -1 at the end of the source
+     */
+    int peek() throws IOException
+    {
+        if (position < windowStart || position >= windowStart + window.limit())
+        {
+            if (position >= size)
+            {
+                return -1;
+            }
+            window.clear();
+            windowStart = position;
+            while (window.hasRemaining() && source.read(windowStart + window.position(), window) > 0)
+            {
+                // fill
+            }
+            window.flip();
+            if (!window.hasRemaining())
+            {
+                return -1;
+            }
+        }
+        return window.get((int) (position - windowStart)) & 0xff;
+    }
+
+    int read() throws IOException
+    {
+        int b = peek();
+        if (b >= 0)
+        {
+            position++;
+        }
+        return b;
+    }
+
+    /**
+     * Reads {@code length} bytes from the given offset, e.g. stream data.
+     */
+    byte[] readFully(long offset, int length) throws IOException
+    {
+        if (offset < 0 || length < 0 || offset + length > size)
+        {
+            throw new IOException("Range of " + length + " bytes at " + offset + " is outside the document");
+        }
+        ByteBuffer data = ByteBuffer.allocate(length);
+        while (data.hasRemaining())
+        {
+            if (source.read(offset + data.position(), data) <= 0)
+            {
+                throw new IOException("Unexpected end of document at " + (offset + data.position()));
+            }
+        }
+        return data.array();
+    }
+
+    void skipWhitespace() throws IOException
+    {
+        for (int b = peek(); b >= 0; b = peek())
+        {
+            if (b == '%')
+            {
+                while (b >= 0 && b != '\n' && b != '\r')
+                {
+                    position++;
+                    b = peek();
+                }
+            }
+            else if (isWhitespace(b))
+            {
+                position++;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a keyword or number, i.e. a run of regular characters, after skipping whitespace.
+     */
+    String readToken() throws IOException
+    {
+        skipWhitespace();
+        StringBuilder token = new StringBuilder();
+        for (int b = peek(); b >= 0 && !isWhitespace(b) && !isDelimiter(b); b = peek())
+        {
+            token.append((char) b);
+            position++;
+        }
+        return token.toString();
+    }
+
+    void expect(String keyword) throws IOException
+    {
+        long start = position;
+        String token = readToken();
+        if (!keyword.equals(token))
+        {
+            throw new IOException("Expected '" + keyword + "' at " + start + " but found '" + token + "'");
+        }
+    }
+
+    long readLong() throws IOException
+    {
+        long start = position;
+        String token = readToken();
+        try
+        {
+            return Long.parseLong(token);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Expected an integer at " + start + " but found '" + token + "'");
+        }
+    }
+
+    /**
+     * Reads the indirect object at the current position ({@code n g obj ... endobj}), checking its number.
+     *
+     * @return the object, a {@link Stream} if it is a stream
+     */
+    Object readIndirectObject(long number) throws IOException
+    {
+        long start = position;
+        long actual = readLong();
+        readLong();
+        expect("obj");
+        if (actual != number)
+        {
+            throw new IOException("Expected object " + number + " at " + start + " but found " + actual);
+        }
+        Object object = readObject();
+        if (object instanceof Map)
+        {
+            long afterDictionary = position;
+            if ("stream".equals(readToken()))
+            {
+                // the keyword is followed by CRLF or LF (7.3.8.1), a lone CR is tolerated
+                if (peek() == '\r')
+                {
+                    position++;
+                }
+                if (peek() == '\n')
+                {
+                    position++;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> dictionary = (Map<String, Object>) object;
+                return new Stream(dictionary, position);
+            }
+            position = afterDictionary;
+        }
+        return object;
+    }
+
+    /**
+     * Reads the direct object at the current position.
+     */
+    Object readObject() throws IOException
+    {
+        skipWhitespace();
+        long start = position;
+        int b = peek();
+        switch (b)
+        {
+            case -1:
+                throw new IOException("Unexpected end of document");
+            case '/':
+                position++;
+                return new Name(readName());
+            case '(':
+            {
+                position++;
+                byte[] literal = readLiteralString();
+                return str(literal, start);
+            }
+            case '<':
+                position++;
+                if (peek() == '<')
+                {
+                    position++;
+                    try
+                    {
+                        enter(start);
+                        return readDictionary();
+                    }
+                    finally
+                    {
+                        nesting--;
+                    }
+                }
+                byte[] hex = readHexString();
+                return str(hex, start);
+            case '[':
+                position++;
+                try
+                {
+                    enter(start);
+                    return readArray();
+                }
+                finally
+                {
+                    nesting--;
+                }
+            default:
+                break;
+        }
+        String token = readToken();
+        if (token.isEmpty())
+        {
+            throw new IOException("Unexpected character '" + (char) b + "' at " + start);
+        }
+        switch (token)
+        {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return NULL;
+            default:
+                break;
+        }
+        if (token.indexOf('.') >= 0)
+        {
+            return parseNumber(token, start);
+        }
+        Long number = (Long) parseNumber(token, start);
+        // an integer may be the start of an indirect reference "n g R"
+        long afterNumber = position;
+        String generation = readToken();
+        if (!generation.isEmpty() && Character.isDigit(generation.charAt(0)) && "R".equals(readToken()))
+        {
+            Object parsed = parseNumber(generation, afterNumber);
+            if (!(parsed instanceof Long) || (Long) parsed > Integer.MAX_VALUE)
+            {
+                throw new IOException("Malformed generation '" + generation + "' at " + afterNumber);
+            }
+            return new Ref(number, ((Long) parsed).intValue());
+        }
+        position = afterNumber;
+        return number;
+    }
+
+    private static Object parseNumber(String token, long start) throws IOException
+    {
+        try
+        {
+            return token.indexOf('.') >= 0 ? (Object) Double.parseDouble(token) : (Object) Long.parseLong(token);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Unexpected token '" + token + "' at " + start);
+        }
+    }
+
+    private Str str(byte[] bytes, long start)
+    {
+        return documentPositions ? new Str(bytes, start, position - start) : new Str(bytes, -1, -1);
+    }
+
+    private void enter(long start) throws IOException
+    {
+        // the caller leaves the level again in a finally block, also if entering it fails
+        if (++nesting > MAX_NESTING)
+        {
+            throw new IOException("Objects nested deeper than " + MAX_NESTING + " levels at " + start);
+        }
+    }
+
+    private List<Object> readArray() throws IOException
+    {
+        List<Object> array = new ArrayList<>();
+        while (true)
+        {
+            skipWhitespace();
+            if (peek() == ']')
+            {
+                position++;
+                return array;
+            }
+            array.add(readObject());
+        }
+    }
+
+    private Map<String, Object> readDictionary() throws IOException
+    {
+        Map<String, Object> dictionary = new LinkedHashMap<>();
+        while (true)
+        {
+            skipWhitespace();
+            int b = peek();
+            if (b == '>')
+            {
+                position++;
+                if (read() != '>')
+                {
+                    throw new IOException("Expected '>>' at " + (position - 2));
+                }
+                return dictionary;
+            }
+            if (b != '/')
+            {
+                throw new IOException("Expected a name key at " + position);
+            }
+            position++;
+            String key = readName();
+            dictionary.put(key, readObject());
+        }
+    }
+
+    private String readName() throws IOException
+    {
+        StringBuilder name = new StringBuilder();
+        for (int b = peek(); b >= 0 && !isWhitespace(b) && !isDelimiter(b); b = peek())
+        {
+            position++;
+            if (b == '#')
+            {
+                int high = Character.digit(read(), 16);
+                int low = Character.digit(read(), 16);
+                if (high < 0 || low < 0)
+                {
+                    throw new IOException("Invalid escape in name at " + position);
+                }
+                b = high << 4 | low;
+            }
+            name.append((char) b);
+        }
+        return name.toString();
+    }
+
+    private byte[] readLiteralString() throws IOException
+    {
+        ByteArrayOutputStream string = new ByteArrayOutputStream();
+        int depth = 1;
+        while (true)
+        {
+            int b = read();
+            switch (b)
+            {
+                case -1:
+                    throw new IOException("Unterminated string");
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    if (--depth == 0)
+                    {
+                        return string.toByteArray();
+                    }
+                    break;
+                case '\r':
+                    // end of line markers are read as a single LF (7.3.4.2)
+                    if (peek() == '\n')
+                    {
+                        position++;
+                    }
+                    b = '\n';
+                    break;
+                case '\\':
+                    b = readEscape();
+                    if (b < 0)
+                    {
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            string.write(b);
+        }
+    }
+
+    /**
+     * @return the escaped byte, or -1 for an escaped line break
+     */
+    private int readEscape() throws IOException
+    {
+        int b = read();
+        switch (b)
+        {
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case '\r':
+                if (peek() == '\n')
+                {
+                    position++;
+                }
+                return -1;
+            case '\n':
+                return -1;
+            default:
+                if (b >= '0' && b <= '7')
+                {
+                    int octal = b - '0';
+                    for (int i = 0; i < 2 && peek() >= '0' && peek() <= '7'; i++)
+                    {
+                        octal = octal * 8 + read() - '0';
+                    }
+                    return octal & 0xff;
+                }
+                if (b < 0)
+                {
+                    throw new IOException("Unterminated string");
+                }
+                // \\, \(, \) and unknown escapes stand for the character itself
+                return b;
+        }
+    }
+
+    private byte[] readHexString() throws IOException
+    {
+        ByteArrayOutputStream string = new ByteArrayOutputStream();
+        int decoded = 0;
+        int high = -1;
+        for (int b = read(); b != '>'; b = read())
+        {
+            if (b < 0)
+            {
+                throw new IOException("Unterminated hex string");
+            }
+            if (isWhitespace(b))
+            {
+                continue;
+            }
+            int digit = Character.digit(b, 16);
+            if (digit < 0)
+            {
+                throw new IOException("Invalid hex string at " + (position - 1));
+            }
+            if (high < 0)
+            {
+                high = digit;
+            }
+            else
+            {
+                if (++decoded <= MAX_DECODED_HEX_STRING || !documentPositions)
+                {
+                    string.write(high << 4 | digit);
+                }
+                high = -1;
+            }
+        }
+        if (high >= 0)
+        {
+            string.write(high << 4);
+            decoded++;
+        }
+        return decoded > MAX_DECODED_HEX_STRING && documentPositions ? null : string.toByteArray();
+    }
+
+    static boolean isWhitespace(int b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(int b)
+    {
+        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']' || b == '{' || b == '}'
+                || b == '/' || b == '%';
+    }
+
+    static final class Name
+    {
+        final String name;
+
+        Name(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Name && name.equals(((Name) other).name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "/" + name;
+        }
+    }
+
+    /**
+     * A string, with the position and length of its token in the document, delimiters included, or -1 if it was
+     * read from an object stream. The bytes of long hex strings in the document are null, see
+     * {@link #MAX_DECODED_HEX_STRING}.
+     */
+    static final class Str
+    {
+        final byte[] bytes;
+        final long offset;
+        final long length;
+
+        Str(byte[] bytes, long offset, long length)
+        {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    static final class Ref
+    {
+        final long number;
+        final int generation;
+
+        Ref(long number, int generation)
+        {
+            this.number = number;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Ref && number == ((Ref) other).number && generation == ((Ref) other).generation;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(number) * 31 + generation;
+        }
+
+        @Override
+        public String toString()
+        {
+            return number + " " + generation + " R";
+        }
+    }
+
+    static final class Stream
+    {
+        final Map<String, Object> dictionary;
+        final long dataOffset;
+
+        Stream(Map<String, Object> dictionary, long dataOffset)
+        {
+            this.dictionary = dictionary;
+            this.dataOffset = dataOffset;
+        }
+    }
+}
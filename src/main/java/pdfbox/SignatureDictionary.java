@@ -0,0 +1,179 @@
+package pdfbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+
+import signature.io.ByteSource;
+import signature.io.ContentsDecoder;
+
+/**
+ * What verification needs of a signature dictionary (PDF 32000-1:2008 12.8.1), detached from any parsed document,
+ * as found by {@link SignatureLocator}.
+ */
+public final class SignatureDictionary
+{
+    private final String fieldName;
+    private final String name;
+    private final String type;
+    private final String subFilter;
+    private final long[] byteRange;
+    private final byte[] contents;
+    private final long contentsOffset;
+    private final long contentsLength;
+    private final Calendar signDate;
+    private final byte[] cert;
+
+    SignatureDictionary(String fieldName, String name, String type, String subFilter, long[] byteRange,
+                        byte[] contents, long contentsOffset, long contentsLength, Calendar signDate, byte[] cert)
+    {
+        this.fieldName = fieldName;
+        this.name = name;
+        this.type = type;
+        this.subFilter = subFilter;
+        this.byteRange = byteRange;
+        this.contents = contents;
+        this.contentsOffset = contentsOffset;
+        this.contentsLength = contentsLength;
+        this.signDate = signDate;
+        this.cert = cert;
+    }
+
+    /**
+     * The signature dictionaries of all signature fields of a document loaded by PDFBox, like
+     * {@link PDDocument#getSignatureDictionaries()}.
+     */
+    static List<SignatureDictionary> fromDocument(PDDocument document) throws IOException
+    {
+        List<SignatureDictionary> signatures = new ArrayList<>();
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null)
+        {
+            return signatures;
+        }
+        for (PDField field : acroForm.getFieldTree())
+        {
+            if (field instanceof PDSignatureField && ((PDSignatureField) field).getSignature() != null)
+            {
+                signatures.add(of(field.getFullyQualifiedName(), ((PDSignatureField) field).getSignature()));
+            }
+        }
+        return signatures;
+    }
+
+    private static SignatureDictionary of(String fieldName, PDSignature sig) throws IOException
+    {
+        long[] byteRange = ByteRanges.getByteRange(sig);
+        COSBase contents = sig.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        COSBase cert = sig.getCOSObject().getDictionaryObject(COSName.getPDFName("Cert"));
+        String type = sig.getCOSObject().getNameAsString(COSName.TYPE);
+        // PDFBox does not keep the position of /Contents, in a sound signature it is the /ByteRange gap; the bytes
+        // PDFBox decoded are kept, as they are right even if it is not
+        long contentsOffset = byteRange.length >= 4 ? byteRange[0] + byteRange[1] : -1;
+        long contentsLength = byteRange.length >= 4 ? byteRange[2] - contentsOffset : -1;
+        return new SignatureDictionary(fieldName, sig.getName(), type, sig.getSubFilter(), byteRange,
+                contents instanceof COSString ? ((COSString) contents).getBytes() : null, contentsOffset, contentsLength,
+                sig.getSignDate(), cert instanceof COSString ? ((COSString) cert).getBytes() : null);
+    }
+
+    /**
+     * @return the fully qualified name of the signature field
+     */
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    /**
+     * @return the /Name of the signer, or null
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the /Type, e.g. DocTimeStamp, or null
+     */
+    public String getType()
+    {
+        return type;
+    }
+
+    public String getSubFilter()
+    {
+        return subFilter;
+    }
+
+    /**
+     * @return the /ByteRange as (offset, length) pairs
+     */
+    public long[] getByteRange()
+    {
+        return byteRange.clone();
+    }
+
+    /**
+     * Decodes the /Contents without its padding; locating signatures does not decode it.
+     *
+     * @param source the document the signature was located in
+     * @return a view of the DER-encoded /Contents, only valid until the calling thread decodes the next /Contents,
+     * see {@link ContentsDecoder#decode(ByteSource, long, long)}
+     * @throws IOException if /Contents is missing or not a valid hex string
+     */
+    public ByteBuffer getContents(ByteSource source) throws IOException
+    {
+        if (contents != null)
+        {
+            return ContentsDecoder.trim(contents);
+        }
+        if (contentsOffset < 0)
+        {
+            throw new IOException("Missing /Contents in signature dictionary");
+        }
+        return ContentsDecoder.decode(source, contentsOffset, contentsLength);
+    }
+
+    /**
+     * @return the offset of the /Contents string in the document, delimiters included, or -1 if unknown
+     */
+    public long getContentsOffset()
+    {
+        return contentsOffset;
+    }
+
+    /**
+     * @return the length of the /Contents string in the document, delimiters included, or -1 if unknown
+     */
+    public long getContentsLength()
+    {
+        return contentsLength;
+    }
+
+    /**
+     * @return the signing time claimed by /M, or null
+     */
+    public Calendar getSignDate()
+    {
+        return signDate;
+    }
+
+    /**
+     * @return the /Cert of adbe.x509.rsa_sha1 signatures (the first one if there is a chain), or null
+     */
+    public byte[] getCert()
+    {
+        return cert;
+    }
+}
@@ -0,0 +1,515 @@
+package pdfbox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.cms.SignerInformation;
+
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+import signature.io.ContentsDecoder;
+
+/**
+ * A persistent inventory of the signatures in an archive of PDF documents, for questions like "which documents
+ * carry adbe.pkcs7.sha1 signatures" or "which documents were signed by a signer from issuer X" that would take
+ * hours to answer by verifying the archive again.
+ *
+ * For every document the index records the metadata of its signatures: field name, subfilter, byte range, the
+ * issuer and serial number of the signer certificate, the signing time and how much of the document is signed.
+ * It is gathered with the {@link SignatureLocator} and a shallow decoding of the CMS structure, no signature is
+ * verified. {@link #update()} only rescans documents whose size or modification time changed, so keeping the index
+ * of a large archive current is cheap.
+ *
+ * <pre>
+ * SignatureInventory inventory = new SignatureInventory(archive, archive.resolve(".signatures.idx"));
+ * inventory.update();
+ * List&lt;SignatureInventory.Document&gt; sha1 = inventory.find(signature -&gt; "adbe.pkcs7.sha1".equals(signature.getSubFilter()));
+ * </pre>
+ *
+ * The index is a compact binary file, replaced atomically on every update. An inventory is not thread-safe.
+ */
+public class SignatureInventory
+{
+    private static final int MAGIC = 0x53494458; // "SIDX"
+    private static final int VERSION = 3;
+
+    private final Path root;
+    private final Path indexFile;
+    private final Map<String, Document> documents = new HashMap<>();
+
+    /**
+     * Loads the index, if it exists.
+     *
+     * @param root the directory of the archive
+     * @param indexFile the index file
+     * @throws IOException if the index exists but could not be read
+     */
+    public SignatureInventory(Path root, Path indexFile) throws IOException
+    {
+        this.root = root;
+        this.indexFile = indexFile;
+        if (Files.exists(indexFile))
+        {
+            load();
+        }
+    }
+
+    /**
+     * Brings the index up to date with all {@code .pdf} files below the root: new and changed documents are
+     * scanned, documents that no longer exist are dropped, and the index is saved.
+     *
+     * @return the number of documents scanned
+     * @throws IOException if the archive could not be listed or the index could not be saved
+     */
+    public int update() throws IOException
+    {
+        final Map<String, BasicFileAttributes> files = new ConcurrentHashMap<>();
+        try (Stream<Path> paths = Files.walk(root))
+        {
+            paths.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".pdf")).forEach(path -> {
+                try
+                {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile() && !path.equals(indexFile))
+                    {
+                        files.put(key(path), attributes);
+                    }
+                }
+                catch (IOException e)
+                {
+                    // vanished while listing
+                }
+            });
+        }
+
+        documents.keySet().retainAll(files.keySet());
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, BasicFileAttributes> file : files.entrySet())
+        {
+            Document document = documents.get(file.getKey());
+            if (document == null || document.size != file.getValue().size()
+                    || document.lastModified != file.getValue().lastModifiedTime().toMillis())
+            {
+                changed.add(file.getKey());
+            }
+        }
+        // scanning is dominated by reading the ends of the documents and the CMS decoding, which parallelize well
+        List<Document> scanned = changed.parallelStream()
+                .map(path -> scan(path, files.get(path)))
+                .collect(Collectors.toList());
+        for (Document document : scanned)
+        {
+            documents.put(document.path, document);
+        }
+        save();
+        return scanned.size();
+    }
+
+    /**
+     * @return the documents with at least one signature matching the predicate, in no particular order
+     */
+    public List<Document> find(Predicate<? super Signature> predicate)
+    {
+        List<Document> result = new ArrayList<>();
+        for (Document document : documents.values())
+        {
+            for (Signature signature : document.signatures)
+            {
+                if (predicate.test(signature))
+                {
+                    result.add(document);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all indexed documents, in no particular order
+     */
+    public Collection<Document> getDocuments()
+    {
+        return Collections.unmodifiableCollection(documents.values());
+    }
+
+    /**
+     * @param document a document of the archive
+     * @return its index entry, or null if it is not indexed
+     */
+    public Document getDocument(Path document)
+    {
+        return documents.get(key(document));
+    }
+
+    public int size()
+    {
+        return documents.size();
+    }
+
+    private String key(Path document)
+    {
+        // relative and with forward slashes, so that the index survives moving the archive to another system
+        return root.relativize(document).toString().replace(document.getFileSystem().getSeparator(), "/");
+    }
+
+    private Document scan(String path, BasicFileAttributes attributes)
+    {
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        try (FileChannel channel = FileChannel.open(root.resolve(path), StandardOpenOption.READ))
+        {
+            ByteSource source = BufferByteSource.map(channel);
+            List<Signature> signatures = new ArrayList<>();
+            for (SignatureDictionary dictionary : SignatureLocator.locateSignatures(source))
+            {
+                signatures.add(toSignature(source, dictionary));
+            }
+            return new Document(path, size, lastModified, signatures, null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // recorded, so that the document is not rescanned until it changes
+            return new Document(path, size, lastModified, Collections.<Signature>emptyList(), e.toString());
+        }
+    }
+
+    private static Signature toSignature(ByteSource source, SignatureDictionary dictionary)
+    {
+        long[] byteRange = dictionary.getByteRange();
+        byte[] issuer = null;
+        BigInteger serialNumber = null;
+        try
+        {
+            if ("adbe.x509.rsa_sha1".equals(dictionary.getSubFilter()) && dictionary.getCert() != null)
+            {
+                X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(dictionary.getCert()));
+                issuer = certificate.getIssuerX500Principal().getEncoded();
+                serialNumber = certificate.getSerialNumber();
+            }
+            else
+            {
+                Collection<SignerInformation> signers = new CMSSignedData(
+                        ContentsDecoder.asInputStream(dictionary.getContents(source))).getSignerInfos().getSigners();
+                if (!signers.isEmpty())
+                {
+                    SignerId signer = signers.iterator().next().getSID();
+                    issuer = signer.getIssuer() == null ? null : signer.getIssuer().getEncoded();
+                    serialNumber = signer.getSerialNumber();
+                }
+            }
+        }
+        catch (IOException | CMSException | CertificateException e)
+        {
+            // the signature is inventoried without a signer
+        }
+        Date signDate = dictionary.getSignDate() == null ? null : dictionary.getSignDate().getTime();
+        return new Signature(dictionary.getFieldName(), dictionary.getSubFilter(), byteRange, issuer, serialNumber, signDate);
+    }
+
+    private void load() throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Not a signature inventory index: " + indexFile);
+            }
+            for (int documentCount = in.readInt(); documentCount > 0; documentCount--)
+            {
+                String path = readString(in);
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String failure = readString(in);
+                int signatureCount = in.readInt();
+                List<Signature> signatures = new ArrayList<>(signatureCount);
+                for (int i = 0; i < signatureCount; i++)
+                {
+                    String fieldName = readString(in);
+                    String subFilter = readString(in);
+                    int byteRangeLength = in.readInt();
+                    if (byteRangeLength < 0)
+                    {
+                        throw new IOException("Corrupt signature inventory index: " + indexFile);
+                    }
+                    long[] byteRange = new long[byteRangeLength];
+                    for (int j = 0; j < byteRange.length; j++)
+                    {
+                        byteRange[j] = in.readLong();
+                    }
+                    byte[] issuer = readBytes(in);
+                    byte[] serialNumber = readBytes(in);
+                    Date signDate = in.readBoolean() ? new Date(in.readLong()) : null;
+                    signatures.add(new Signature(fieldName, subFilter, byteRange, issuer,
+                            serialNumber == null ? null : new BigInteger(serialNumber), signDate));
+                }
+                documents.put(path, new Document(path, size, lastModified, signatures, failure));
+            }
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file first and moves it into place, so that a crash never leaves a
+     * truncated index behind.
+     */
+    private void save() throws IOException
+    {
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(documents.size());
+                for (Document document : documents.values())
+                {
+                    writeString(out, document.path);
+                    out.writeLong(document.size);
+                    out.writeLong(document.lastModified);
+                    writeString(out, document.failure == null || document.failure.length() <= 1024 ? document.failure
+                            : document.failure.substring(0, 1024));
+                    out.writeInt(document.signatures.size());
+                    for (Signature signature : document.signatures)
+                    {
+                        writeString(out, signature.fieldName);
+                        writeString(out, signature.subFilter);
+                        out.writeInt(signature.byteRange.length);
+                        for (long value : signature.byteRange)
+                        {
+                            out.writeLong(value);
+                        }
+                        writeBytes(out, signature.issuer);
+                        writeBytes(out, signature.serialNumber == null ? null : signature.serialNumber.toByteArray());
+                        out.writeBoolean(signature.signDate != null);
+                        if (signature.signDate != null)
+                        {
+                            out.writeLong(signature.signDate.getTime());
+                        }
+                    }
+                }
+            }
+            try
+            {
+                Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes a string as UTF-8 bytes; unlike {@link DataOutputStream#writeUTF(String)}, it may take more than 65535
+     * bytes, as field names or paths of any length may.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] value = readBytes(in);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException
+    {
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null)
+        {
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    /**
+     * The index entry of one document.
+     */
+    public final class Document
+    {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final List<Signature> signatures;
+        private final String failure;
+
+        private Document(String path, long size, long lastModified, List<Signature> signatures, String failure)
+        {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.signatures = Collections.unmodifiableList(signatures);
+            this.failure = failure;
+        }
+
+        public Path getPath()
+        {
+            return root.resolve(path);
+        }
+
+        /**
+         * @return the size of the document when it was scanned
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        public List<Signature> getSignatures()
+        {
+            return signatures;
+        }
+
+        /**
+         * @return why the signatures could not be located, or null
+         */
+        public String getFailure()
+        {
+            return failure;
+        }
+
+        /**
+         * @return whether the signature covers the whole document, i.e. its byte range ends at the end of the file
+         * (PDF 32000-1:2008 12.8.1), so no incremental update follows it
+         */
+        public boolean coversDocument(Signature signature)
+        {
+            return signature.getSignedLength() == size;
+        }
+
+        @Override
+        public String toString()
+        {
+            return path + " " + signatures;
+        }
+    }
+
+    /**
+     * The metadata of one signature.
+     */
+    public static final class Signature
+    {
+        private final String fieldName;
+        private final String subFilter;
+        private final long[] byteRange;
+        private final byte[] issuer;
+        private final BigInteger serialNumber;
+        private final Date signDate;
+
+        private Signature(String fieldName, String subFilter, long[] byteRange, byte[] issuer, BigInteger serialNumber, Date signDate)
+        {
+            this.fieldName = fieldName;
+            this.subFilter = subFilter;
+            this.byteRange = byteRange;
+            this.issuer = issuer;
+            this.serialNumber = serialNumber;
+            this.signDate = signDate;
+        }
+
+        public String getFieldName()
+        {
+            return fieldName;
+        }
+
+        public String getSubFilter()
+        {
+            return subFilter;
+        }
+
+        public long[] getByteRange()
+        {
+            return byteRange.clone();
+        }
+
+        /**
+         * @return the issuer of the signer certificate, or null if the signer could not be determined
+         */
+        public X500Principal getIssuer()
+        {
+            return issuer == null ? null : new X500Principal(issuer);
+        }
+
+        /**
+         * @return the serial number of the signer certificate, or null if the signer could not be determined
+         */
+        public BigInteger getSerialNumber()
+        {
+            return serialNumber;
+        }
+
+        /**
+         * @return the signing time claimed by /M, or null
+         */
+        public Date getSignDate()
+        {
+            return signDate == null ? null : (Date) signDate.clone();
+        }
+
+        /**
+         * @return the number of bytes from the start of the document to the end of the byte range, the size of the
+         * revision the signature signs
+         */
+        public long getSignedLength()
+        {
+            return byteRange.length < 2 ? 0 : byteRange[byteRange.length - 2] + byteRange[byteRange.length - 1];
+        }
+
+        @Override
+        public String toString()
+        {
+            return fieldName + " (" + subFilter + ")";
+        }
+    }
+}
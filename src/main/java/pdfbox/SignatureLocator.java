@@ -0,0 +1,720 @@
+package pdfbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.util.DateConverter;
+
+import pdfbox.ObjectReader.Name;
+import pdfbox.ObjectReader.Ref;
+import pdfbox.ObjectReader.Str;
+import pdfbox.ObjectReader.Stream;
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+
+/**
+ * Finds the signature dictionaries of a document without loading it.
+ *
+ * {@link PDDocument#load(java.io.File)} parses the whole cross-reference information, the object streams and,
+ * through {@link PDDocument#getSignatureDictionaries()}, the AcroForm of a document, which for documents of many
+ * thousand pages takes far longer and far more memory than the signatures are worth. The locator instead reads
+ * {@code startxref} from the end of the document and follows the chain of cross-reference tables and streams of
+ * all incremental sections (PDF 32000-1:2008 7.5), without reading their entries: an entry is only read, straight
+ * from the document, when the object it locates is needed. It then resolves just the trailer /Root, the /AcroForm,
+ * its field tree and the /V of the signature fields. Time and memory are therefore about constant in the page
+ * count; only the decoded data of cross-reference streams, and of one object stream at a time, is held.
+ *
+ * Documents the locator does not support, encrypted ones or ones with damaged cross-reference information, are
+ * rejected with an {@link IOException}; {@link #locateSignatures(ByteSource)} then falls back to PDFBox, which can
+ * also reconstruct damaged documents.
+ */
+public final class SignatureLocator
+{
+    private static final int STARTXREF_SEARCH_LENGTH = 1024;
+
+    private final ObjectReader reader;
+    private final List<XrefSection> sections = new ArrayList<>();
+    /** The revision whose cross-reference section is being read, 0 for the newest. */
+    private int revision;
+    private long objectStreamNumber = -1;
+    private ObjectReader objectStream;
+    private long[] objectStreamOffsets;
+
+    public SignatureLocator(ByteSource source) throws IOException
+    {
+        this.reader = new ObjectReader(source, true);
+    }
+
+    /**
+     * Locates the signatures of a document, falling back to PDFBox if the locator does not support it.
+     *
+     * @param source the whole PDF document
+     * @return the signature dictionaries of all signature fields, in field tree order
+     * @throws IOException if PDFBox fails to load the document, too, also if it runs out of stack on deeply nested
+     * objects
+     */
+    public static List<SignatureDictionary> locateSignatures(ByteSource source) throws IOException
+    {
+        try
+        {
+            return new SignatureLocator(source).locate();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // malformed input must not keep PDFBox from having a go at it
+            try (PDDocument document = ByteSourceRandomAccessRead.load(source))
+            {
+                return SignatureDictionary.fromDocument(document);
+            }
+            catch (StackOverflowError overflow)
+            {
+                // PDFBox parses nested objects recursively without a limit
+                IOException exception = new IOException("PDFBox failed to parse the document: " + e.getMessage(), overflow);
+                exception.addSuppressed(e);
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * @return the signature dictionaries of all signature fields, in field tree order
+     * @throws IOException if the document could not be read, or is not supported by the locator
+     */
+    public List<SignatureDictionary> locate() throws IOException
+    {
+        Map<String, Object> trailer = readXref(findStartXref());
+        if (trailer.containsKey("Encrypt"))
+        {
+            throw new IOException("Encrypted documents are not supported");
+        }
+        Map<String, Object> catalog = dictionary(trailer.get("Root"));
+        if (catalog == null)
+        {
+            throw new IOException("Missing document catalog");
+        }
+        Map<String, Object> acroForm = dictionary(catalog.get("AcroForm"));
+        List<Object> fields = acroForm == null ? null : array(acroForm.get("Fields"));
+        if (fields == null)
+        {
+            return Collections.emptyList();
+        }
+        List<SignatureDictionary> signatures = new ArrayList<>();
+        Set<Ref> visited = new HashSet<>();
+        for (Object field : fields)
+        {
+            collect(field, null, null, visited, signatures);
+        }
+        return signatures;
+    }
+
+    /**
+     * Walks the field tree (12.7.3.1), adding the signature dictionaries of signed signature fields.
+     */
+    private void collect(Object reference, String parentName, Object inheritedType, Set<Ref> visited,
+                         List<SignatureDictionary> signatures) throws IOException
+    {
+        if (reference instanceof Ref && !visited.add((Ref) reference))
+        {
+            // a malformed, cyclic field tree
+            return;
+        }
+        Map<String, Object> field = dictionary(reference);
+        if (field == null)
+        {
+            return;
+        }
+        String partialName = text(field.get("T"));
+        String name = parentName == null ? partialName : partialName == null ? parentName : parentName + "." + partialName;
+        Object fieldType = field.containsKey("FT") ? resolve(field.get("FT")) : inheritedType;
+
+        if (new Name("Sig").equals(fieldType))
+        {
+            Map<String, Object> value = dictionary(field.get("V"));
+            if (value != null)
+            {
+                signatures.add(toSignatureDictionary(name, value));
+            }
+        }
+        List<Object> kids = array(field.get("Kids"));
+        if (kids != null)
+        {
+            for (Object kid : kids)
+            {
+                // kids without a partial name are widget annotations rather than fields
+                Map<String, Object> kidDictionary = dictionary(kid);
+                if (kidDictionary != null && kidDictionary.containsKey("T"))
+                {
+                    collect(kid, name, fieldType, visited, signatures);
+                }
+            }
+        }
+    }
+
+    private SignatureDictionary toSignatureDictionary(String fieldName, Map<String, Object> dictionary) throws IOException
+    {
+        List<Object> byteRangeArray = array(dictionary.get("ByteRange"));
+        if (byteRangeArray == null)
+        {
+            throw new IOException("Missing /ByteRange in signature dictionary");
+        }
+        long[] byteRange = new long[byteRangeArray.size()];
+        for (int i = 0; i < byteRange.length; i++)
+        {
+            Object element = resolve(byteRangeArray.get(i));
+            if (!(element instanceof Long))
+            {
+                throw new IOException("Malformed /ByteRange: " + byteRangeArray);
+            }
+            byteRange[i] = (Long) element;
+        }
+
+        Object contents = resolve(dictionary.get("Contents"));
+        Str contentsString = contents instanceof Str ? (Str) contents : null;
+        Object cert = resolve(dictionary.get("Cert"));
+        if (cert instanceof List && !((List<?>) cert).isEmpty())
+        {
+            cert = resolve(((List<?>) cert).get(0));
+        }
+        Object signDate = resolve(dictionary.get("M"));
+        Calendar calendar = signDate instanceof Str ? DateConverter.toCalendar(new COSString(((Str) signDate).bytes)) : null;
+
+        return new SignatureDictionary(fieldName, text(dictionary.get("Name")), name(dictionary.get("Type")),
+                name(dictionary.get("SubFilter")), byteRange,
+                contentsString == null ? null : contentsString.bytes,
+                contentsString == null ? -1 : contentsString.offset,
+                contentsString == null ? -1 : contentsString.length,
+                calendar, cert instanceof Str ? ((Str) cert).bytes : null);
+    }
+
+    private long findStartXref() throws IOException
+    {
+        long size = reader.size();
+        int length = (int) Math.min(STARTXREF_SEARCH_LENGTH, size);
+        String tail = new String(reader.readFully(size - length, length), StandardCharsets.ISO_8859_1);
+        int index = tail.lastIndexOf("startxref");
+        if (index < 0)
+        {
+            throw new IOException("Missing startxref");
+        }
+        reader.seek(size - length + index + "startxref".length());
+        return reader.readLong();
+    }
+
+    /**
+     * Reads the cross-reference sections of all incremental updates, newest first.
+     *
+     * @return the newest trailer, completed by older trailers for entries it lacks
+     */
+    private Map<String, Object> readXref(long offset) throws IOException
+    {
+        Map<String, Object> trailer = null;
+        Set<Long> visited = new HashSet<>();
+        for (revision = 0; offset >= 0 && visited.add(offset); revision++)
+        {
+            reader.seek(offset);
+            reader.skipWhitespace();
+            Map<String, Object> sectionTrailer;
+            if (reader.peek() == 'x')
+            {
+                reader.expect("xref");
+                sectionTrailer = readXrefTable();
+                Object xrefStream = sectionTrailer.get("XRefStm");
+                if (xrefStream instanceof Long)
+                {
+                    // a hybrid-reference file (7.5.8.4): the stream lists the objects in object streams
+                    reader.seek((Long) xrefStream);
+                    readXrefStream();
+                }
+            }
+            else
+            {
+                sectionTrailer = readXrefStream();
+            }
+            if (trailer == null)
+            {
+                trailer = sectionTrailer;
+            }
+            else
+            {
+                for (Map.Entry<String, Object> entry : sectionTrailer.entrySet())
+                {
+                    trailer.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            Object previous = sectionTrailer.get("Prev");
+            offset = previous instanceof Long ? (Long) previous : -1;
+        }
+        if (trailer == null)
+        {
+            throw new IOException("Cyclic cross-reference sections");
+        }
+        return trailer;
+    }
+
+    private Map<String, Object> readXrefTable() throws IOException
+    {
+        while (true)
+        {
+            long start = reader.position();
+            String token = reader.readToken();
+            if ("trailer".equals(token))
+            {
+                Object trailer = reader.readObject();
+                if (!(trailer instanceof Map))
+                {
+                    throw new IOException("Malformed trailer at " + start);
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> dictionary = (Map<String, Object>) trailer;
+                return dictionary;
+            }
+            reader.seek(start);
+            long first = reader.readLong();
+            long count = reader.readLong();
+            reader.skipWhitespace();
+            TableSection section = new TableSection(revision, first, count, reader.position());
+            sections.add(section);
+            reader.seek(section.entriesOffset + count * section.entryLength);
+        }
+    }
+
+    private Map<String, Object> readXrefStream() throws IOException
+    {
+        long start = reader.position();
+        long number = reader.readLong();
+        reader.seek(start);
+        Object object = reader.readIndirectObject(number);
+        if (!(object instanceof Stream) || !new Name("XRef").equals(((Stream) object).dictionary.get("Type")))
+        {
+            throw new IOException("Expected a cross-reference stream at " + start);
+        }
+        Stream stream = (Stream) object;
+        List<Object> widths = array(stream.dictionary.get("W"));
+        if (widths == null || widths.size() != 3)
+        {
+            throw new IOException("Malformed /W of cross-reference stream at " + start);
+        }
+        int[] w = new int[3];
+        for (int i = 0; i < 3; i++)
+        {
+            long width = integer(widths.get(i));
+            if (width < 0 || width > 8)
+            {
+                throw new IOException("Unsupported /W " + widths + " of cross-reference stream at " + start);
+            }
+            w[i] = (int) width;
+        }
+        byte[] data = decode(stream);
+        List<Object> index = array(stream.dictionary.get("Index"));
+        if (index == null)
+        {
+            index = new ArrayList<>();
+            index.add(0L);
+            index.add(stream.dictionary.get("Size"));
+        }
+        int entryLength = w[0] + w[1] + w[2];
+        int dataOffset = 0;
+        for (int i = 0; i + 1 < index.size(); i += 2)
+        {
+            long first = integer(index.get(i));
+            long count = integer(index.get(i + 1));
+            if (count < 0 || dataOffset + count * entryLength > data.length)
+            {
+                throw new IOException("Cross-reference stream at " + start + " is too short");
+            }
+            sections.add(new StreamSection(revision, first, count, data, dataOffset, w));
+            dataOffset += count * entryLength;
+        }
+        return stream.dictionary;
+    }
+
+    /**
+     * Resolves an indirect reference, returning direct objects as they are.
+     */
+    private Object resolve(Object object) throws IOException
+    {
+        if (!(object instanceof Ref))
+        {
+            return object;
+        }
+        long number = ((Ref) object).number;
+        int freeInRevision = -1;
+        for (XrefSection section : sections)
+        {
+            if (freeInRevision >= 0 && section.revision != freeInRevision)
+            {
+                // freed by a newer revision, whatever it was before
+                break;
+            }
+            long[] entry = section.lookup(number);
+            if (entry == null)
+            {
+                continue;
+            }
+            if (entry[0] == 1)
+            {
+                reader.seek(entry[1]);
+                return reader.readIndirectObject(number);
+            }
+            if (entry[0] == 2)
+            {
+                return readCompressedObject(entry[1], entry[2]);
+            }
+            if (!(section instanceof TableSection))
+            {
+                break;
+            }
+            // the table of a hybrid-reference file lists the objects in object streams as free, its XRefStm,
+            // which follows in the same revision, has their actual entries
+            freeInRevision = section.revision;
+        }
+        return ObjectReader.NULL;
+    }
+
+    private Object readCompressedObject(long streamNumber, long index) throws IOException
+    {
+        if (streamNumber != objectStreamNumber)
+        {
+            Object object = resolve(new Ref(streamNumber, 0));
+            if (!(object instanceof Stream))
+            {
+                throw new IOException("Object " + streamNumber + " is not an object stream");
+            }
+            Stream stream = (Stream) object;
+            long count = integer(stream.dictionary.get("N"));
+            long first = integer(stream.dictionary.get("First"));
+            byte[] data = decode(stream);
+            // each object takes two numbers in the header at least
+            if (count < 0 || count > data.length / 2)
+            {
+                throw new IOException("Malformed /N " + count + " of object stream " + streamNumber);
+            }
+            ObjectReader decoded = new ObjectReader(BufferByteSource.wrap(data), false);
+            long[] offsets = new long[(int) count];
+            for (int i = 0; i < count; i++)
+            {
+                decoded.readLong();
+                offsets[i] = first + decoded.readLong();
+            }
+            objectStreamNumber = streamNumber;
+            objectStream = decoded;
+            objectStreamOffsets = offsets;
+        }
+        if (index < 0 || index >= objectStreamOffsets.length)
+        {
+            throw new IOException("Object stream " + streamNumber + " has no object " + index);
+        }
+        objectStream.seek(objectStreamOffsets[(int) index]);
+        return objectStream.readObject();
+    }
+
+    /**
+     * @return the decoded stream data; only FlateDecode, with or without PNG predictors, is supported
+     */
+    private byte[] decode(Stream stream) throws IOException
+    {
+        long length = integer(stream.dictionary.get("Length"));
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Stream of " + length + " bytes is too large");
+        }
+        byte[] data = reader.readFully(stream.dataOffset, (int) length);
+        Object filter = resolve(stream.dictionary.get("Filter"));
+        Object parameters = resolve(stream.dictionary.get("DecodeParms"));
+        if (filter instanceof List && ((List<?>) filter).size() == 1)
+        {
+            filter = resolve(((List<?>) filter).get(0));
+            parameters = parameters instanceof List ? resolve(((List<?>) parameters).get(0)) : parameters;
+        }
+        if (filter == null)
+        {
+            return data;
+        }
+        if (!new Name("FlateDecode").equals(filter))
+        {
+            throw new IOException("Unsupported stream filter " + filter);
+        }
+        data = inflate(data);
+        if (parameters instanceof Map)
+        {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> decodeParameters = (Map<String, Object>) parameters;
+            data = unpredict(data, decodeParameters);
+        }
+        return data;
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(data);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished())
+            {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    // truncated data, use what could be inflated
+                    break;
+                }
+                inflated.write(buffer, 0, count);
+            }
+            return inflated.toByteArray();
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Invalid FlateDecode data", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reverses the PNG predictors (7.4.4.4) cross-reference streams are usually encoded with.
+     */
+    private byte[] unpredict(byte[] data, Map<String, Object> parameters) throws IOException
+    {
+        long predictor = parameters.containsKey("Predictor") ? integer(parameters.get("Predictor")) : 1;
+        if (predictor == 1)
+        {
+            return data;
+        }
+        if (predictor < 10)
+        {
+            throw new IOException("Unsupported predictor " + predictor);
+        }
+        long colors = parameters.containsKey("Colors") ? integer(parameters.get("Colors")) : 1;
+        long bitsPerComponent = parameters.containsKey("BitsPerComponent") ? integer(parameters.get("BitsPerComponent")) : 8;
+        long columns = parameters.containsKey("Columns") ? integer(parameters.get("Columns")) : 1;
+        int bytesPerPixel = (int) Math.max(1, colors * bitsPerComponent / 8);
+        int rowLength = (int) ((columns * colors * bitsPerComponent + 7) / 8);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(data.length);
+        byte[] previous = new byte[rowLength];
+        byte[] row = new byte[rowLength];
+        for (int offset = 0; offset + rowLength < data.length; offset += rowLength + 1)
+        {
+            int type = data[offset];
+            System.arraycopy(data, offset + 1, row, 0, rowLength);
+            for (int i = 0; i < rowLength; i++)
+            {
+                int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+                int up = previous[i] & 0xff;
+                int upLeft = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xff : 0;
+                switch (type)
+                {
+                    case 0:
+                        break;
+                    case 1:
+                        row[i] += left;
+                        break;
+                    case 2:
+                        row[i] += up;
+                        break;
+                    case 3:
+                        row[i] += (left + up) / 2;
+                        break;
+                    case 4:
+                        row[i] += paeth(left, up, upLeft);
+                        break;
+                    default:
+                        throw new IOException("Invalid PNG predictor " + type);
+                }
+            }
+            decoded.write(row, 0, rowLength);
+            byte[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int paeth(int left, int up, int upLeft)
+    {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft)
+        {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> dictionary(Object object) throws IOException
+    {
+        object = resolve(object);
+        return object instanceof Map ? (Map<String, Object>) object : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> array(Object object) throws IOException
+    {
+        object = resolve(object);
+        return object instanceof List ? (List<Object>) object : null;
+    }
+
+    private long integer(Object object) throws IOException
+    {
+        object = resolve(object);
+        if (!(object instanceof Long))
+        {
+            throw new IOException("Expected an integer but found " + object);
+        }
+        return (Long) object;
+    }
+
+    private String name(Object object) throws IOException
+    {
+        object = resolve(object);
+        return object instanceof Name ? ((Name) object).name : null;
+    }
+
+    /**
+     * @return a text string (7.9.2.2), decoded as PDFBox does
+     */
+    private String text(Object object) throws IOException
+    {
+        object = resolve(object);
+        return object instanceof Str ? new COSString(((Str) object).bytes).getString() : null;
+    }
+
+    /**
+     * The entries of one cross-reference subsection, looked up on demand.
+     */
+    private abstract static class XrefSection
+    {
+        final int revision;
+        final long first;
+        final long count;
+
+        XrefSection(int revision, long first, long count)
+        {
+            this.revision = revision;
+            this.first = first;
+            this.count = count;
+        }
+
+        /**
+         * @return null if the object is not in this section, otherwise {type, field 2, field 3} as in a
+         * cross-reference stream (7.5.8.3): type 0 for free, 1 for (offset, generation), 2 for (object stream,
+         * index)
+         */
+        abstract long[] lookup(long number) throws IOException;
+    }
+
+    /**
+     * A subsection of a cross-reference table, whose fixed-length entries are read from the document.
+     */
+    private final class TableSection extends XrefSection
+    {
+        final long entriesOffset;
+        final int entryLength;
+
+        TableSection(int revision, long first, long count, long entriesOffset) throws IOException
+        {
+            super(revision, first, count);
+            this.entriesOffset = entriesOffset;
+            this.entryLength = count > 0 ? measureEntryLength() : 20;
+        }
+
+        /**
+         * Entries are 20 bytes long (7.5.4), but some writers end them with a single end-of-line character only.
+         */
+        private int measureEntryLength() throws IOException
+        {
+            int length = (int) Math.min(20, reader.size() - entriesOffset);
+            byte[] entry = reader.readFully(entriesOffset, length);
+            return length == 20 && (entry[18] == '\r' || entry[18] == '\n') && !ObjectReader.isWhitespace(entry[19]) ? 19 : 20;
+        }
+
+        @Override
+        long[] lookup(long number) throws IOException
+        {
+            if (number < first || number >= first + count)
+            {
+                return null;
+            }
+            String entry = new String(reader.readFully(entriesOffset + (number - first) * entryLength, 18), StandardCharsets.ISO_8859_1);
+            try
+            {
+                long offset = Long.parseLong(entry.substring(0, 10).trim());
+                long generation = Long.parseLong(entry.substring(11, 16).trim());
+                return new long[] { entry.charAt(17) == 'n' ? 1 : 0, offset, generation };
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Malformed cross-reference entry for object " + number);
+            }
+        }
+    }
+
+    /**
+     * A subsection of a cross-reference stream.
+     */
+    private static final class StreamSection extends XrefSection
+    {
+        final byte[] data;
+        final int dataOffset;
+        final int[] widths;
+
+        StreamSection(int revision, long first, long count, byte[] data, int dataOffset, int[] widths)
+        {
+            super(revision, first, count);
+            this.data = data;
+            this.dataOffset = dataOffset;
+            this.widths = widths;
+        }
+
+        @Override
+        long[] lookup(long number) throws IOException
+        {
+            if (number < first || number >= first + count)
+            {
+                return null;
+            }
+            int entryLength = widths[0] + widths[1] + widths[2];
+            long end = dataOffset + (number - first + 1) * entryLength;
+            if (end > data.length)
+            {
+                throw new IOException("Cross-reference stream has no entry for object " + number);
+            }
+            int position = (int) (end - entryLength);
+            long[] entry = new long[3];
+            for (int field = 0; field < 3; field++)
+            {
+                long value = 0;
+                for (int i = 0; i < widths[field]; i++)
+                {
+                    value = value << 8 | data[position++] & 0xff;
+                }
+                entry[field] = value;
+            }
+            if (widths[0] == 0)
+            {
+                // the type defaults to 1
+                entry[0] = 1;
+            }
+            return entry;
+        }
+    }
+}
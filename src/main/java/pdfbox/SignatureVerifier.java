@@ -15,39 +15,72 @@ package pdfbox;/*
  * limitations under the License.
  */
 
-import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
-import org.apache.pdfbox.cos.COSDictionary;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.cos.COSString;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cms.CMSException;
-import org.bouncycastle.cms.CMSProcessable;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignerDigestMismatchException;
 import org.bouncycastle.cms.SignerInformation;
-import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
 import org.bouncycastle.util.Store;
 import org.bouncycastle.util.StoreException;
 
+import signature.CertificateValidation;
+import signature.ChainValidator;
+import signature.DigestPlanner;
+import signature.Flow;
+import signature.OrderedExecution;
 import signature.SignatureResult;
+import signature.SignerCache;
+import signature.SpooledDocument;
+import signature.TimeStampVerifier;
+import signature.VerificationContext;
+import signature.VerificationListener;
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+import signature.io.ChannelByteSource;
+import signature.io.ContentsDecoder;
+import signature.metrics.Phase;
+import signature.metrics.PhaseTracer;
+import signature.metrics.VerificationMetrics;
+import signature.revocation.RevocationChecker;
 
 /**
  * Extracts digital signatures from a PDF document using PDFBox and validates PKCS#7
@@ -64,146 +97,903 @@ import signature.SignatureResult;
  */
 public final class SignatureVerifier
 {
-    private final SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-    private final Provider provider;
+    private final VerificationContext context;
+    private final TimeStampVerifier timeStampVerifier;
+    private ChainValidator chainValidator;
+    private RevocationChecker revocationChecker;
+    private VerificationListener listener = VerificationListener.NONE;
+    private VerificationMetrics metrics = VerificationMetrics.NONE;
+    private PhaseTracer tracer = PhaseTracer.NONE;
+    private Executor executor;
 
     public SignatureVerifier()
     {
-        this(null);
+        this(new VerificationContext());
     }
 
     public SignatureVerifier(final Provider provider)
     {
-        this.provider = provider;
+        this(new VerificationContext(provider));
+    }
+
+    /**
+     * @param context the crypto context, which may be shared with other verifiers
+     */
+    public SignatureVerifier(final VerificationContext context)
+    {
+        this.context = context;
+        this.timeStampVerifier = new TimeStampVerifier(context);
+    }
+
+    /**
+     * Enables certificate chain validation: a signature whose signer, or the TSA of whose signature timestamp, does
+     * not chain to one of the validator's trust anchors at signing time fails verification. Disabled by default.
+     *
+     * @param chainValidator the validator, or null to disable chain validation
+     */
+    public void setChainValidator(ChainValidator chainValidator)
+    {
+        this.chainValidator = chainValidator;
+    }
+
+    /**
+     * Enables revocation checking of the signer at signing time, and of its chain if chain validation is enabled.
+     * A signature fails verification unless the status of every certificate checked is good. Disabled by default.
+     *
+     * @param revocationChecker the checker, e.g. a {@link signature.revocation.CrlDirectoryIndex} or an
+     *                          {@link signature.revocation.OcspChecker}, or null to disable
+     *                          revocation checking
+     */
+    public void setRevocationChecker(RevocationChecker revocationChecker)
+    {
+        this.revocationChecker = revocationChecker;
+    }
+
+    /**
+     * Reports the events of verification, e.g. to a {@link signature.ConsoleVerificationListener}. Nothing is
+     * reported by default.
+     *
+     * @param listener the listener, which must be thread-safe if this verifier serves several threads, or null to
+     *                 report nothing
+     */
+    public void setVerificationListener(VerificationListener listener)
+    {
+        this.listener = listener == null ? VerificationListener.NONE : listener;
+    }
+
+    /**
+     * Records the time spent in each phase of verification and the outcome of each signature. Nothing is recorded
+     * by default.
+     *
+     * @param metrics the registry, which may be shared with other verifiers, or null to record nothing
+     */
+    public void setMetrics(VerificationMetrics metrics)
+    {
+        this.metrics = metrics == null ? VerificationMetrics.NONE : metrics;
+    }
+
+    /**
+     * Traces each phase of verification, e.g. as Flight Recorder events with {@link signature.metrics.JfrPhaseTracer}.
+     * Nothing is traced by default.
+     *
+     * @param tracer the tracer, or null to trace nothing
+     */
+    public void setPhaseTracer(PhaseTracer tracer)
+    {
+        this.tracer = tracer == null ? PhaseTracer.NONE : tracer;
+    }
+
+    /**
+     * Verifies the signatures of a document in parallel once they are located and digested, e.g. for contracts with
+     * dozens of approval signatures. The calling thread takes part, see {@link OrderedExecution}; the results are
+     * collected, and reported as verified, in document order all the same. By default the signatures are verified
+     * one after the other on the calling thread.
+     *
+     * @param executor the executor, or null to verify sequentially; the listener, chain validator and revocation
+     *                 checker must be thread-safe then
+     */
+    public void setExecutor(Executor executor)
+    {
+        this.executor = executor;
     }
 
     public Map<String, SignatureResult> extractSignatures(File infile) throws IOException, CertificateException,
                                                      NoSuchAlgorithmException, InvalidKeyException,
                                                      NoSuchProviderException, SignatureException
     {
-        Map<String, SignatureResult> result = new HashMap<>();
+        try (Job job = open(infile.toPath()))
+        {
+            // locate all signatures and the digest algorithms their signers use first, ...
+            locate(job);
+            // ... then digest all byte ranges in a single read of the document ...
+            digest(job);
+            // ... and verify each signature against its precomputed digests
+            return verify(job);
+        }
+    }
 
-            try (PDDocument document = PDDocument.load(infile))
+    /**
+     * Verifies a document received from a stream, e.g. an HTTP body, without buffering it first: the document is
+     * spooled into memory, or into a temporary file beyond {@link VerificationPipeline#IN_MEMORY_THRESHOLD} bytes, and
+     * the likely signed byte ranges are digested while it is received, see {@link SpooledDocument}. Once the stream
+     * ends, mostly the signature dictionaries remain to be parsed.
+     *
+     * @param in the document, read to its end but not closed
+     */
+    public Map<String, SignatureResult> extractSignatures(InputStream in) throws IOException, CertificateException,
+                                                     NoSuchAlgorithmException, InvalidKeyException,
+                                                     NoSuchProviderException, SignatureException
+    {
+        try (Job job = spool(in))
+        {
+            locate(job);
+            digest(job);
+            return verify(job);
+        }
+    }
+
+    /**
+     * Verifies a document without blocking the caller: reading and digesting run on the I/O executor, locating and
+     * the checks of the signatures, each signature a task of its own, on the CPU executor. The phases are chained as
+     * continuations, so no thread waits for another phase.
+     *
+     * Documents of up to {@link VerificationPipeline#IN_MEMORY_THRESHOLD} bytes are read into memory, bigger ones
+     * are read through a file channel.
+     *
+     * @param infile the document
+     * @param ioExecutor the executor of the phases waiting for the disk
+     * @param cpuExecutor the executor of the phases waiting for the CPU
+     * @return the results by signature name, in document order; the future fails with the exception
+     * {@link #extractSignatures(File)} would have thrown
+     */
+    public CompletableFuture<Map<String, SignatureResult>> extractSignaturesAsync(File infile, Executor ioExecutor,
+                                                                               Executor cpuExecutor)
+    {
+        Path document = infile.toPath();
+        return CompletableFuture.supplyAsync(unchecked(() -> Files.size(document) <= VerificationPipeline.IN_MEMORY_THRESHOLD
+                        ? read(document) : open(document)), ioExecutor)
+                .thenCompose(job -> CompletableFuture.runAsync(unchecked(() -> locate(job)), cpuExecutor)
+                        .thenRunAsync(unchecked(() -> digest(job)), ioExecutor)
+                        .thenComposeAsync(ignored -> verifyAsync(job, cpuExecutor), cpuExecutor)
+                        .whenComplete((result, failure) -> unchecked(() -> job.close()).run()));
+    }
+
+    /**
+     * Publishes the result of each signature of a document as soon as it is verified, in document order, e.g. to
+     * reject a document at the first failing signature without verifying the others. Unlike the map of
+     * {@link #extractSignatures(File)}, every signature is published, even if it has the /Name of an earlier one.
+     *
+     * Nothing happens before a subscriber requests results: then the document is read, its signatures located and
+     * digested, and as many signatures verified as requested, one after the other, on the executor. Cancelling
+     * closes the document.
+     *
+     * @param infile the document
+     * @param executor the executor the document is verified on, and the subscriber is signalled from
+     * @return a publisher that verifies the document anew for each subscriber
+     */
+    public Flow.Publisher<SignatureResult> publishSignatures(File infile, Executor executor)
+    {
+        return subscriber -> subscriber.onSubscribe(new ResultSubscription(infile.toPath(), subscriber, executor));
+    }
+
+    /**
+     * Verify phase, asynchronously: checks each located signature in a task of its own.
+     */
+    private CompletableFuture<Map<String, SignatureResult>> verifyAsync(Job job, Executor cpuExecutor)
+    {
+        List<CompletableFuture<SignatureResult>> futures = new ArrayList<>(job.signatures.size());
+        for (PendingSignature signature : job.signatures)
+        {
+            futures.add(CompletableFuture.supplyAsync(unchecked(() ->
             {
-                for (PDSignature sig : document.getSignatureDictionaries())
+                try
+                {
+                    return verify(signature);
+                }
+                catch (CMSException | OperatorCreationException ex)
                 {
-                    COSDictionary sigDict = sig.getCOSObject();
-                    COSString contents = (COSString) sigDict.getDictionaryObject(COSName.CONTENTS);
+                    throw new IOException(ex);
+                }
+            }), cpuExecutor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored ->
+        {
+            Map<String, SignatureResult> result = new LinkedHashMap<>();
+            for (int i = 0; i < futures.size(); i++)
+            {
+                complete(result, job.signatures.get(i), futures.get(i).join());
+            }
+            return result;
+        });
+    }
 
-                    // download the signed content
-                    byte[] buf;
-                    try (FileInputStream fis = new FileInputStream(infile))
-                    {
-                        buf = sig.getSignedContent(fis);
-                    }
+    /**
+     * @return the callable as supplier, throwing its checked exceptions wrapped in a {@link CompletionException},
+     * which the future it completes unwraps
+     */
+    private static <T> Supplier<T> unchecked(Callable<T> callable)
+    {
+        return () ->
+        {
+            try
+            {
+                return callable.call();
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    private static Runnable unchecked(Step step)
+    {
+        return () -> unchecked(() ->
+        {
+            step.run();
+            return null;
+        }).get();
+    }
+
+    /**
+     * A phase run as a continuation.
+     */
+    private interface Step
+    {
+        void run() throws Exception;
+    }
+
+    /**
+     * Read phase: opens the document as a {@link ByteSource} over a file channel.
+     */
+    Job open(Path document) throws IOException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.LOAD);
+        long time = metrics.start();
+        FileChannel channel = FileChannel.open(document, StandardOpenOption.READ);
+        metrics.stop(Phase.LOAD, time);
+        if (span.isEnabled())
+        {
+            span.fileSize(channel.size());
+        }
+        span.end();
+        return new Job(document, new ChannelByteSource(channel), channel, new DigestPlanner(context.getProvider()), null);
+    }
 
-                    System.out.println("Signature found");
-                    System.out.println("Name:     " + sig.getName());
-                    System.out.println("Modified: " + sdf.format(sig.getSignDate().getTime()));
-                    String subFilter = sig.getSubFilter();
-                    if (subFilter != null)
+    /**
+     * Read phase: loads the whole document into memory, so that the later phases never wait for the disk.
+     */
+    Job read(Path document) throws IOException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.LOAD);
+        long time = metrics.start();
+        byte[] bytes = Files.readAllBytes(document);
+        metrics.stop(Phase.LOAD, time);
+        span.fileSize(bytes.length).end();
+        return new Job(document, BufferByteSource.wrap(bytes), null, new DigestPlanner(context.getProvider()), null);
+    }
+
+    /**
+     * Read phase: spools a document from a stream, digesting the likely signed byte ranges on the way.
+     */
+    Job spool(InputStream in) throws IOException, NoSuchAlgorithmException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.LOAD);
+        long time = metrics.start();
+        SpooledDocument document = SpooledDocument.spool(in, (int) VerificationPipeline.IN_MEMORY_THRESHOLD,
+                SpooledDocument.DEFAULT_ALGORITHMS, context.getProvider());
+        metrics.stop(Phase.LOAD, time);
+        span.fileSize(document.size()).end();
+        return new Job(null, document, document, new DigestPlanner(context.getProvider()), document);
+    }
+
+    /**
+     * Locate phase: finds the signature dictionaries with the {@link SignatureLocator}, decodes the CMS structure of
+     * each signature and registers its byte range with the digest planner.
+     */
+    void locate(Job job) throws IOException, CertificateException
+    {
+        try
+        {
+            PhaseTracer.Span span = tracer.start(Phase.LOCATE);
+            long time = metrics.start();
+            List<SignatureDictionary> signatures = SignatureLocator.locateSignatures(job.source);
+            metrics.stop(Phase.LOCATE, time);
+            if (span.isEnabled())
+            {
+                span.fileSize(job.source.size());
+            }
+            span.end();
+            int index = 0;
+            for (SignatureDictionary sig : signatures)
+            {
+                long[] byteRange = sig.getByteRange();
+                String subFilter = sig.getSubFilter();
+                listener.signatureFound(++index, sig.getName(), subFilter, sig.getSignDate());
+                if (subFilter != null)
+                {
+                    switch (subFilter)
                     {
-                        switch (subFilter)
+                        case "adbe.pkcs7.detached": // COSName.ADBE_PKCS7_DETACHED
+                        case "ETSI.CAdES.detached":
                         {
-                            case "adbe.pkcs7.detached": // COSName.ADBE_PKCS7_DETACHED
-                                result.put(sig.getName(), verifyPKCS7(buf, contents, sig));
-
-                                //TODO check certificate chain, revocation lists, timestamp...
-                                break;
-                            case "adbe.pkcs7.sha1": // COSName.ADBE_PKCS7_SHA1
-                            {
-                                // example: PDFBOX-1452.pdf
-                                //COSString certString = (COSString) sigDict.getDictionaryObject(
-                                //        COSName.CONTENTS);
-                                byte[] certData = contents.getBytes();
-                                Collection<? extends Certificate> certs = getCertificates(certData);
-                                System.out.println("certs=" + certs);
-                                byte[] hash = MessageDigest.getInstance("SHA1").digest(buf);
-                                result.put(sig.getName(), verifyPKCS7(hash, contents, sig));
-
-                                //TODO check certificate chain, revocation lists, timestamp...
-                                break;
-                            }
-                            case "adbe.x509.rsa_sha1": // COSName.ADBE_PKCS7_SHA1
+                            // a CAdES signature is verified like any detached CMS signature
+                            CMSSignedData signedData = parse(job, sig);
+                            job.signatures.add(new PendingSignature(sig, signedData.toASN1Structure(),
+                                    job.planner.add(byteRange, getDigestAlgorithms(signedData)), Kind.DETACHED));
+                            break;
+                        }
+                        case "ETSI.RFC3161":
+                        {
+                            // a document timestamp: the message imprint of the token is the digest of the byte range
+                            CMSSignedData signedData = parse(job, sig);
+                            TimeStampToken token = new TimeStampToken(signedData);
+                            job.signatures.add(new PendingSignature(sig, signedData.toASN1Structure(),
+                                    job.planner.add(byteRange, Collections.singleton(token.getTimeStampInfo().getMessageImprintAlgOID())),
+                                    Kind.DOCUMENT_TIMESTAMP));
+                            break;
+                        }
+                        case "adbe.pkcs7.sha1": // COSName.ADBE_PKCS7_SHA1
+                        {
+                            // example: PDFBOX-1452.pdf
+                            CMSSignedData signedData = parse(job, sig);
+                            if (listener != VerificationListener.NONE)
                             {
-                                // example: PDFBOX-2693.pdf
-                                COSString certString = (COSString) sigDict.getDictionaryObject(
-                                        COSName.getPDFName("Cert"));
-                                byte[] certData = certString.getBytes();
-                                Collection<? extends Certificate> certs = getCertificates(certData);
-                                System.out.println("certs=" + certs);
-
-                                //TODO verify signature
-                                throw new IOException(subFilter + " verification not supported");
-                                //break;
+                                // the certificates are only converted to be reported
+                                @SuppressWarnings("unchecked")
+                                Collection<? extends Certificate> certs = context.getCertificates(signedData.getCertificates());
+                                listener.certificatesFound(sig.getName(), certs);
                             }
-                            default:
-                                throw new IOException("Unknown certificate type: " + subFilter);
-                                //break;
+                            job.signatures.add(new PendingSignature(sig, signedData.toASN1Structure(),
+                                    job.planner.add(byteRange, Collections.singleton(OIWObjectIdentifiers.idSHA1)), Kind.ENCAPSULATED_DIGEST));
+                            break;
                         }
-                    }
-                    else
-                    {
-                        throw new IOException("Missing subfilter for cert dictionary");
+                        case "adbe.x509.rsa_sha1": // COSName.ADBE_PKCS7_SHA1
+                        {
+                            // example: PDFBOX-2693.pdf
+                            byte[] certData = sig.getCert();
+                            listener.certificatesFound(sig.getName(), getCertificates(certData));
+
+                            //TODO verify signature
+                            metrics.count(subFilter, VerificationMetrics.Outcome.ERROR);
+                            throw new IOException(subFilter + " verification not supported");
+                            //break;
+                        }
+                        default:
+                            metrics.count(subFilter, VerificationMetrics.Outcome.ERROR);
+                            throw new IOException("Unknown certificate type: " + subFilter);
+                            //break;
                     }
                 }
+                else
+                {
+                    metrics.count(null, VerificationMetrics.Outcome.ERROR);
+                    throw new IOException("Missing subfilter for cert dictionary");
+                }
             }
-            catch (CMSException | OperatorCreationException ex)
+        }
+        catch (CMSException | TSPException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Parses the DER-encoded /Contents, decoded into a buffer of the calling thread and only parsed from there.
+     */
+    private CMSSignedData parse(Job job, SignatureDictionary sig) throws IOException, CMSException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.CMS_PARSE);
+        long time = metrics.start();
+        InputStream contents = ContentsDecoder.asInputStream(sig.getContents(job.source));
+        CMSSignedData signedData = new CMSSignedData(contents);
+        metrics.stop(Phase.CMS_PARSE, time);
+        span.subFilter(sig.getSubFilter()).end();
+        return signedData;
+    }
+
+    /**
+     * Digest phase: digests the byte ranges of all located signatures in a single pass over the document.
+     */
+    void digest(Job job) throws IOException, NoSuchAlgorithmException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.DIGEST);
+        long time = metrics.start();
+        job.planner.digest(job.source, job.precomputed);
+        metrics.stop(Phase.DIGEST, time);
+        if (span.isEnabled())
+        {
+            span.digestAlgorithm(job.planner.getAlgorithmNames()).bytesHashed(job.planner.getBytesHashed());
+        }
+        span.end();
+    }
+
+    /**
+     * Verify phase: checks each located signature against its precomputed digests.
+     *
+     * @return the results by signature name, in document order
+     */
+    Map<String, SignatureResult> verify(Job job) throws IOException, CertificateException
+    {
+        Map<String, SignatureResult> result = new LinkedHashMap<>();
+        try
+        {
+            if (executor == null || job.signatures.size() < 2)
+            {
+                for (PendingSignature signature : job.signatures)
+                {
+                    complete(result, signature, verify(signature));
+                }
+                return result;
+            }
+            List<Callable<SignatureResult>> tasks = new ArrayList<>(job.signatures.size());
+            for (PendingSignature signature : job.signatures)
+            {
+                tasks.add(() -> verify(signature));
+            }
+            List<SignatureResult> results = OrderedExecution.invokeAll(executor, tasks);
+            for (int i = 0; i < results.size(); i++)
+            {
+                complete(result, job.signatures.get(i), results.get(i));
+            }
+            return result;
+        }
+        catch (CMSException | OperatorCreationException ex)
+        {
+            throw new IOException(ex);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while verifying " + job.document);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CertificateException)
+            {
+                throw (CertificateException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
             {
-                throw new IOException(ex);
+                throw (Error) cause;
             }
+            throw new IOException(cause);
+        }
+    }
 
-        return result;
+    /**
+     * Checks one located signature; signatures of the same document may be checked concurrently.
+     */
+    private SignatureResult verify(PendingSignature signature)
+            throws CMSException, OperatorCreationException, IOException, CertificateException
+    {
+        SignatureResult signatureResult;
+        try
+        {
+            // the CMS structure was parsed and timed when the signature was located
+            CMSSignedData signedData = signature.getSignedData();
+            signatureResult = signature.kind == Kind.DOCUMENT_TIMESTAMP
+                    ? verifyDocumentTimeStamp(signature.name, signedData, signature.digests)
+                    : verifyPKCS7(signature.name, signature.subFilter, signedData, signature.signDate);
+        }
+        catch (CMSException | OperatorCreationException | IOException | CertificateException | RuntimeException ex)
+        {
+            metrics.count(signature.subFilter, VerificationMetrics.Outcome.ERROR);
+            throw ex;
+        }
+        metrics.count(signature.subFilter, signatureResult.isVerified()
+                ? VerificationMetrics.Outcome.VERIFIED : VerificationMetrics.Outcome.FAILED);
+        return signatureResult;
+    }
+
+    private void complete(Map<String, SignatureResult> result, PendingSignature signature, SignatureResult signatureResult)
+    {
+        listener.signatureVerified(signature.name, signatureResult);
+        result.put(signature.name, signatureResult);
+    }
+
+    private static Set<ASN1ObjectIdentifier> getDigestAlgorithms(CMSSignedData signedData)
+    {
+        Set<ASN1ObjectIdentifier> algorithms = new LinkedHashSet<>();
+        for (SignerInformation signer : signedData.getSignerInfos().getSigners())
+        {
+            algorithms.add(signer.getDigestAlgorithmID().getAlgorithm());
+        }
+        return algorithms;
     }
 
     private Collection<? extends Certificate> getCertificates(byte[] certData) throws CertificateException {
-        CertificateFactory factory = CertificateFactory.getInstance("X.509");
-        ByteArrayInputStream certStream = new ByteArrayInputStream(certData);
-        return factory.generateCertificates(certStream);
+        return context.getCertificates(certData);
     }
 
     /**
      * Verify a PKCS7 signature.
      *
-     * @param byteArray the byte sequence that has been signed
-     * @param contents the /Contents field as a COSString
-     * @param sig the PDF signature (the /V dictionary)
+     * @param name the /Name of the signature, to report it by
+     * @param subFilter the /SubFilter of the signature, to trace it by
+     * @param signedData the /Contents field with the digest of the byte sequence that has been signed
+     * @param signDate the signing time claimed by the PDF signature (the /M entry), used unless the signer carries
+     *                 a signature timestamp; may be null
      * @throws CertificateException
      * @throws CMSException
      * @throws StoreException
      * @throws OperatorCreationException
+     * @throws IOException if the revocation information could not be read
      */
-    private SignatureResult verifyPKCS7(byte[] byteArray, COSString contents, PDSignature sig)
-            throws CMSException, CertificateException, StoreException, OperatorCreationException
+    private SignatureResult verifyPKCS7(String name, String subFilter, CMSSignedData signedData, Calendar signDate)
+            throws CMSException, CertificateException, StoreException, OperatorCreationException, IOException
     {
         // inspiration:
         // http://stackoverflow.com/a/26702631/535646
         // http://stackoverflow.com/a/9261365/535646
-        CMSProcessable signedContent = new CMSProcessableByteArray(byteArray);
-        CMSSignedData signedData = new CMSSignedData(signedContent, contents.getBytes());
         Store certificatesStore = signedData.getCertificates();
         Collection<SignerInformation> signers = signedData.getSignerInfos().getSigners();
         SignerInformation signerInformation = signers.iterator().next();
         Collection matches = certificatesStore.getMatches(signerInformation.getSID());
         X509CertificateHolder certificateHolder = (X509CertificateHolder) matches.iterator().next();
-        X509Certificate certFromSignedData = new JcaX509CertificateConverter().getCertificate(certificateHolder);
+        long time = metrics.start();
+        SignerCache.Signer signer = context.getSigner(certificateHolder);
+        X509Certificate certFromSignedData = signer.getCertificate();
+        time = metrics.stop(Phase.CERTIFICATE_CONVERSION, time);
         //System.out.println("certFromSignedData: " + certFromSignedData);
-        certFromSignedData.checkValidity(sig.getSignDate().getTime());
 
-        JcaSimpleSignerInfoVerifierBuilder verifierBuilder = new JcaSimpleSignerInfoVerifierBuilder();
-        if (provider != null) {
-            verifierBuilder.setProvider(provider);
+        // a verified signature timestamp replaces the self-reported /M as the time the signer had to be valid at
+        Date signingTime = null;
+        // a revoked key could claim any /M, so without a timestamp the signer must not be revoked now
+        Date revocationTime = new Date();
+        try
+        {
+            time = metrics.start();
+            Date timeStamp = timeStampVerifier.verify(signerInformation, chainValidator);
+            if (timeStamp != null)
+            {
+                // signatures without a timestamp token would only dilute the phase
+                metrics.stop(Phase.TIMESTAMP, time);
+                listener.timeStampVerified(name, timeStamp, false);
+                signingTime = timeStamp;
+                revocationTime = timeStamp;
+            }
+        }
+        catch (TSPException e)
+        {
+            return new SignatureResult(certFromSignedData, false, "Timestamp validation failed: " + e.getMessage());
+        }
+        if (signingTime == null)
+        {
+            // /M is optional, without it the certificate has to be valid now
+            signingTime = signDate != null ? signDate.getTime() : new Date();
         }
+        certFromSignedData.checkValidity(signingTime);
 
         boolean validated = false;
+        time = metrics.start();
+        PhaseTracer.Span span = tracer.start(Phase.SIGNER_VERIFY);
         try {
-            validated = signerInformation.verify(verifierBuilder.build(certFromSignedData));
-
+            validated = signerInformation.verify(signer.getVerifier());
+            listener.signatureChecked(name, validated, null);
         } catch (CMSSignerDigestMismatchException e) {
-            System.out.println("Signature failed to validate: ");
-            e.printStackTrace();
+            listener.signatureChecked(name, false, e);
+        }
+        time = metrics.stop(Phase.SIGNER_VERIFY, time);
+        if (span.isEnabled())
+        {
+            span.subFilter(subFilter).digestAlgorithm(DigestPlanner.getAlgorithmName(signerInformation.getDigestAlgorithmID().getAlgorithm()));
+        }
+        span.end();
+
+        if (validated && (chainValidator != null || revocationChecker != null))
+        {
+            time = metrics.start();
+            @SuppressWarnings("unchecked")
+            List<X509Certificate> certificates = context.getCertificates(certificatesStore);
+            String diag = CertificateValidation.validate(chainValidator, revocationChecker, certFromSignedData, certificates, signingTime,
+                    revocationTime);
+            metrics.stop(Phase.CERTIFICATE_VALIDATION, time);
+            listener.certificatesChecked(name, diag);
+            if (diag != null)
+            {
+                return new SignatureResult(certFromSignedData, false, diag);
+            }
         }
 
         return new SignatureResult(certFromSignedData, validated);
     }
+
+    /**
+     * Verify an RFC 3161 document timestamp.
+     *
+     * @param name the /Name of the signature, to report it by
+     * @param signedData the /Contents field, a timestamp token
+     * @param digests the digest of the byte range, computed with the hash algorithm of the token's message imprint
+     * @throws IOException if the revocation information could not be read
+     */
+    private SignatureResult verifyDocumentTimeStamp(String name, CMSSignedData signedData, DigestPlanner.Request digests)
+            throws CertificateException, IOException
+    {
+        X509Certificate tsaCertificate = null;
+        try
+        {
+            long start = metrics.start();
+            TimeStampToken token = new TimeStampToken(signedData);
+            tsaCertificate = timeStampVerifier.getTimeStampAuthority(token).getCertificate();
+            byte[] digest = digests.getDigest(token.getTimeStampInfo().getMessageImprintAlgOID());
+            Date time = timeStampVerifier.verify(token, digest, null);
+            start = metrics.stop(Phase.TIMESTAMP, start);
+            listener.timeStampVerified(name, time, true);
+
+            if (chainValidator != null || revocationChecker != null)
+            {
+                @SuppressWarnings("unchecked")
+                Store<X509CertificateHolder> certificates = token.getCertificates();
+                // unlike /M, the time of the token is vouched for by the TSA itself
+                String diag = CertificateValidation.validate(chainValidator, revocationChecker, tsaCertificate,
+                        context.getCertificates(certificates), time, time);
+                metrics.stop(Phase.CERTIFICATE_VALIDATION, start);
+                listener.certificatesChecked(name, diag);
+                if (diag != null)
+                {
+                    return new SignatureResult(tsaCertificate, false, diag);
+                }
+            }
+            return new SignatureResult(tsaCertificate, true);
+        }
+        catch (TSPException e)
+        {
+            return new SignatureResult(tsaCertificate, false, "Document timestamp validation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The subscription to the results of a document. All work, and all signals to the subscriber, happen in runs of
+     * {@link #drain()} on the executor, never more than one at a time.
+     */
+    private final class ResultSubscription implements Flow.Subscription, Runnable
+    {
+        private final Path document;
+        private final Flow.Subscriber<? super SignatureResult> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean illegalRequest;
+
+        // confined to drain()
+        private Job job;
+        private int next;
+        private boolean done;
+
+        private ResultSubscription(Path document, Flow.Subscriber<? super SignatureResult> subscriber, Executor executor)
+        {
+            this.document = document;
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                illegalRequest = true;
+            }
+            else
+            {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (scheduled.getAndIncrement() == 0)
+            {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            do
+            {
+                drain();
+            }
+            while (scheduled.decrementAndGet() != 0);
+        }
+
+        private void drain()
+        {
+            if (done)
+            {
+                return;
+            }
+            if (cancelled)
+            {
+                finish(null, false);
+                return;
+            }
+            if (illegalRequest)
+            {
+                finish(new IllegalArgumentException("The number of results requested must be positive"), true);
+                return;
+            }
+            try
+            {
+                if (demand.get() > 0 && job == null)
+                {
+                    job = Files.size(document) <= VerificationPipeline.IN_MEMORY_THRESHOLD ? read(document) : open(document);
+                    locate(job);
+                    digest(job);
+                }
+                while (job != null && next < job.signatures.size() && demand.get() > 0 && !cancelled)
+                {
+                    PendingSignature signature = job.signatures.get(next++);
+                    SignatureResult signatureResult = verify(signature);
+                    listener.signatureVerified(signature.name, signatureResult);
+                    demand.decrementAndGet();
+                    try
+                    {
+                        subscriber.onNext(signatureResult);
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        // a subscriber that throws is treated as cancelled, it gets no further signals (rule 2.13)
+                        cancelled = true;
+                        finish(null, false);
+                        return;
+                    }
+                }
+                if (job != null && next == job.signatures.size() && !cancelled)
+                {
+                    finish(null, true);
+                }
+            }
+            catch (CMSException | OperatorCreationException ex)
+            {
+                finish(new IOException(ex), true);
+            }
+            catch (Exception ex)
+            {
+                finish(ex, true);
+            }
+        }
+
+        private void finish(Throwable failure, boolean signal)
+        {
+            done = true;
+            if (job != null)
+            {
+                try
+                {
+                    job.close();
+                }
+                catch (IOException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e;
+                    }
+                }
+            }
+            if (signal)
+            {
+                if (failure == null)
+                {
+                    subscriber.onComplete();
+                }
+                else
+                {
+                    subscriber.onError(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * A document on its way through the verification phases. The phases of one job run one after the other, but
+     * not necessarily on the same thread.
+     */
+    static final class Job implements Closeable
+    {
+        private final Path document;
+        private final ByteSource source;
+        private final Closeable resource;
+        private final DigestPlanner planner;
+        private final DigestPlanner.Precomputed precomputed;
+        private final List<PendingSignature> signatures = new ArrayList<>();
+
+        private Job(Path document, ByteSource source, Closeable resource, DigestPlanner planner,
+                    DigestPlanner.Precomputed precomputed)
+        {
+            this.document = document;
+            this.source = source;
+            this.resource = resource;
+            this.planner = planner;
+            this.precomputed = precomputed;
+        }
+
+        /**
+         * @return the document, or null if it was read from a stream
+         */
+        Path getDocument()
+        {
+            return document;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (resource != null)
+            {
+                resource.close();
+            }
+        }
+    }
+
+    private enum Kind
+    {
+        /** adbe.pkcs7.detached and ETSI.CAdES.detached: the signer signs the digest of the byte range */
+        DETACHED,
+        /** adbe.pkcs7.sha1: the SHA1 digest of the byte range is the encapsulated content */
+        ENCAPSULATED_DIGEST,
+        /** ETSI.RFC3161: the message imprint of the timestamp token is the digest of the byte range */
+        DOCUMENT_TIMESTAMP
+    }
+
+    /**
+     * A located signature waiting for the digest of its byte range.
+     */
+    private static final class PendingSignature
+    {
+        private final String name;
+        private final String subFilter;
+        private final Calendar signDate;
+        private final ContentInfo contents;
+        private final DigestPlanner.Request digests;
+        private final Kind kind;
+
+        private PendingSignature(SignatureDictionary sig, ContentInfo contents, DigestPlanner.Request digests, Kind kind)
+        {
+            this.name = sig.getName();
+            this.subFilter = sig.getSubFilter();
+            this.signDate = sig.getSignDate();
+            this.contents = contents;
+            this.digests = digests;
+            this.kind = kind;
+        }
+        private CMSSignedData getSignedData() throws CMSException
+        {
+            if (kind == Kind.DOCUMENT_TIMESTAMP)
+            {
+                // the signed content, the TSTInfo, is encapsulated
+                return new CMSSignedData(contents);
+            }
+            if (kind == Kind.ENCAPSULATED_DIGEST)
+            {
+                // adbe.pkcs7.sha1 signs the SHA1 digest of the byte range as encapsulated content
+                return new CMSSignedData(new CMSProcessableByteArray(digests.getDigest(OIWObjectIdentifiers.idSHA1)), contents);
+            }
+            return new CMSSignedData(digests.getDigests(), contents);
+        }
+    }
 }
@@ -0,0 +1,337 @@
+package pdfbox;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import signature.DocumentResult;
+import signature.SignatureResult;
+
+/**
+ * Verifies documents in a staged pipeline, so that disk reads, PDFBox parsing, hashing and the CMS/RSA checks of
+ * different documents overlap instead of running one after the other on the caller thread.
+ *
+ * <pre>
+ * READ -&gt; LOCATE -&gt; DIGEST -&gt; VERIFY -&gt; RESULT
+ * </pre>
+ *
+ * Every stage has its own bounded queue and workers. READ and DIGEST are I/O bound and get {@code ioThreads} workers
+ * each; LOCATE and VERIFY are CPU bound and get {@code cpuThreads} workers each; a single RESULT worker hands the
+ * results to the sink, which therefore needs not be thread-safe. A full queue blocks the stage in front of it, so
+ * a burst of huge documents throttles {@link #submit(Path)} rather than exhausting memory.
+ *
+ * Documents of up to {@link #IN_MEMORY_THRESHOLD} bytes are read into memory by the READ stage, so that the later
+ * stages never wait for the disk; bigger documents are read through a file channel by the stages that need them.
+ *
+ * <pre>
+ * try (VerificationPipeline pipeline = new VerificationPipeline(new SignatureVerifier(), results::add))
+ * {
+ *     for (Path document : documents)
+ *     {
+ *         pipeline.submit(document);
+ *     }
+ * }
+ * </pre>
+ */
+public class VerificationPipeline implements AutoCloseable
+{
+    /**
+     * Documents up to this size are held in memory while they pass through the pipeline.
+     */
+    public static final long IN_MEMORY_THRESHOLD = 16 * 1024 * 1024;
+
+    public enum Stage
+    {
+        READ, LOCATE, DIGEST, VERIFY, RESULT
+    }
+
+    private final SignatureVerifier verifier;
+    private final Consumer<DocumentResult> sink;
+    private final Map<Stage, Worker<?>> stages = new EnumMap<>(Stage.class);
+    private final Object lock = new Object();
+    private int inFlight;
+    private boolean closed;
+
+    /**
+     * Uses as many CPU workers as there are cores, twice as many I/O workers and queues of 16 documents.
+     */
+    public VerificationPipeline(SignatureVerifier verifier, Consumer<DocumentResult> sink)
+    {
+        this(verifier, 2 * Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 16, sink);
+    }
+
+    /**
+     * @param verifier the verifier whose phases the stages run, it is used concurrently
+     * @param ioThreads the number of workers of each I/O bound stage
+     * @param cpuThreads the number of workers of each CPU bound stage
+     * @param queueCapacity the capacity of the queue in front of each stage
+     * @param sink receives the result of every submitted document, always from the same thread
+     */
+    public VerificationPipeline(SignatureVerifier verifier, int ioThreads, int cpuThreads, int queueCapacity,
+                                Consumer<DocumentResult> sink)
+    {
+        if (ioThreads < 1 || cpuThreads < 1 || queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("Thread counts and queue capacity must be positive");
+        }
+        this.verifier = verifier;
+        this.sink = sink;
+
+        final Worker<DocumentResult> result = new Worker<>(Stage.RESULT, 1, queueCapacity, this::deliver);
+        final Worker<SignatureVerifier.Job> verify = new Worker<>(Stage.VERIFY, cpuThreads, queueCapacity, job -> {
+            Map<String, SignatureResult> signatures;
+            try
+            {
+                signatures = verifier.verify(job);
+            }
+            finally
+            {
+                job.close();
+            }
+            result.put(new DocumentResult(job.getDocument(), signatures));
+        });
+        final Worker<SignatureVerifier.Job> digest = new Worker<>(Stage.DIGEST, ioThreads, queueCapacity, job -> {
+            verifier.digest(job);
+            verify.put(job);
+        });
+        final Worker<SignatureVerifier.Job> locate = new Worker<>(Stage.LOCATE, cpuThreads, queueCapacity, job -> {
+            verifier.locate(job);
+            digest.put(job);
+        });
+        final Worker<Path> read = new Worker<>(Stage.READ, ioThreads, queueCapacity, document -> {
+            locate.put(Files.size(document) <= IN_MEMORY_THRESHOLD ? verifier.read(document) : verifier.open(document));
+        });
+        for (Worker<?> worker : new Worker<?>[] { read, locate, digest, verify, result })
+        {
+            stages.put(worker.stage, worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues a document for verification, blocking while the READ queue is full.
+     *
+     * @param document the PDF document to verify
+     * @throws InterruptedException if interrupted while waiting for queue space
+     * @throws IllegalStateException if the pipeline has been closed
+     */
+    public void submit(Path document) throws InterruptedException
+    {
+        synchronized (lock)
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("Pipeline closed");
+            }
+            inFlight++;
+        }
+        @SuppressWarnings("unchecked")
+        Worker<Path> read = (Worker<Path>) stages.get(Stage.READ);
+        boolean queued = false;
+        try
+        {
+            read.queue.put(document);
+            queued = true;
+        }
+        finally
+        {
+            if (!queued)
+            {
+                // the document never entered the pipeline, close() must not wait for its result
+                synchronized (lock)
+                {
+                    inFlight--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of documents waiting in front of the given stage
+     */
+    public int getQueueDepth(Stage stage)
+    {
+        return stages.get(stage).queue.size();
+    }
+
+    /**
+     * @return the number of documents waiting in front of each stage
+     */
+    public Map<Stage, Integer> getQueueDepths()
+    {
+        Map<Stage, Integer> depths = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values())
+        {
+            depths.put(stage, getQueueDepth(stage));
+        }
+        return depths;
+    }
+
+    /**
+     * Stops accepting documents, waits until the results of all submitted documents have been delivered and stops
+     * the workers.
+     *
+     * @throws InterruptedIOException if interrupted while waiting, with the interrupt flag set again
+     */
+    @Override
+    public void close() throws InterruptedIOException
+    {
+        synchronized (lock)
+        {
+            closed = true;
+            try
+            {
+                while (inFlight > 0)
+                {
+                    lock.wait();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                InterruptedIOException exception = new InterruptedIOException(
+                        "Interrupted while waiting for " + inFlight + " documents");
+                exception.initCause(e);
+                throw exception;
+            }
+        }
+        for (Worker<?> worker : stages.values())
+        {
+            worker.stop();
+        }
+    }
+
+    private void deliver(DocumentResult result)
+    {
+        try
+        {
+            sink.accept(result);
+        }
+        finally
+        {
+            synchronized (lock)
+            {
+                inFlight--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private interface Task<T>
+    {
+        void run(T item) throws Exception;
+    }
+
+    /**
+     * The queue and worker threads of one stage. A document that fails in any stage skips the remaining ones and
+     * its failure is delivered as its result.
+     */
+    private final class Worker<T>
+    {
+        private final Stage stage;
+        private final BlockingQueue<T> queue;
+        private final Task<T> task;
+        private final List<Thread> threads = new ArrayList<>();
+
+        private Worker(Stage stage, int threadCount, int queueCapacity, Task<T> task)
+        {
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.task = task;
+            for (int i = 0; i < threadCount; i++)
+            {
+                Thread thread = new Thread(this::work, "verification-" + stage.name().toLowerCase() + "-" + (i + 1));
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+        }
+
+        private void start()
+        {
+            for (Thread thread : threads)
+            {
+                thread.start();
+            }
+        }
+
+        private void stop()
+        {
+            for (Thread thread : threads)
+            {
+                thread.interrupt();
+            }
+        }
+
+        private void put(T item) throws InterruptedException
+        {
+            queue.put(item);
+        }
+
+        private void work()
+        {
+            try
+            {
+                while (true)
+                {
+                    T item = queue.take();
+                    try
+                    {
+                        task.run(item);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw e;
+                    }
+                    catch (Throwable e)
+                    {
+                        fail(item, e);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // the pipeline was closed
+            }
+        }
+
+        private void fail(T item, Throwable failure) throws InterruptedException
+        {
+            if (stage == Stage.RESULT)
+            {
+                // the sink itself failed, the document has been accounted for by deliver()
+                return;
+            }
+            Path document;
+            if (item instanceof SignatureVerifier.Job)
+            {
+                SignatureVerifier.Job job = (SignatureVerifier.Job) item;
+                document = job.getDocument();
+                try
+                {
+                    job.close();
+                }
+                catch (IOException e)
+                {
+                    failure.addSuppressed(e);
+                }
+            }
+            else
+            {
+                document = (Path) item;
+            }
+            @SuppressWarnings("unchecked")
+            Worker<DocumentResult> result = (Worker<DocumentResult>) stages.get(Stage.RESULT);
+            result.put(new DocumentResult(document, failure));
+        }
+    }
+}
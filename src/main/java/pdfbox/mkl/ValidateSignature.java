@@ -1,156 +1,638 @@
 package pdfbox.mkl;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.Provider;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
-import org.bouncycastle.asn1.ASN1InputStream;
-import org.bouncycastle.asn1.util.ASN1Dump;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.CMSException;
-import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationVerifier;
-import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.util.Store;
+import pdfbox.SignatureDictionary;
+import pdfbox.SignatureLocator;
+import pdfbox.VerificationPipeline;
+import signature.CertificateValidation;
+import signature.ChainValidator;
+import signature.DigestPlanner;
+import signature.OrderedExecution;
+import signature.SignatureDiagnostics;
 import signature.SignatureResult;
+import signature.SignerCache;
+import signature.SpooledDocument;
+import signature.TimeStampVerifier;
+import signature.VerificationContext;
+import signature.VerificationListener;
+import signature.io.ArtifactWriter;
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+import signature.io.ContentsDecoder;
+import signature.metrics.Phase;
+import signature.metrics.PhaseTracer;
+import signature.metrics.VerificationMetrics;
+import signature.revocation.RevocationChecker;
 
 /**
  * @author mkl
  */
 public class ValidateSignature
 {
+    private static final Provider BOUNCY_CASTLE = new BouncyCastleProvider();
+
     private final File resultFolder;
+    private VerificationContext context;
+    private TimeStampVerifier timeStampVerifier;
+    private ChainValidator chainValidator;
+    private RevocationChecker revocationChecker;
+    private VerificationListener listener = VerificationListener.NONE;
+    private VerificationMetrics metrics = VerificationMetrics.NONE;
+    private PhaseTracer tracer = PhaseTracer.NONE;
+    private Executor executor;
+    private ArtifactWriter artifactWriter;
 
     public ValidateSignature(File resultFolder)
     {
         this.resultFolder = resultFolder;
     }
 
+    /**
+     * @param context the crypto context, which may be shared with other validators; {@link #provider()} is not
+     *                consulted then
+     */
+    public ValidateSignature(File resultFolder, VerificationContext context)
+    {
+        this.resultFolder = resultFolder;
+        this.context = context;
+    }
+
+    /**
+     * Enables certificate chain validation at the signing time of each signature: the time of its verified signature
+     * timestamp, or else /M; for document timestamps, the time stamped. Disabled by default.
+     *
+     * @param chainValidator the validator, or null to disable chain validation
+     */
+    public void setChainValidator(ChainValidator chainValidator)
+    {
+        this.chainValidator = chainValidator;
+    }
+
+    /**
+     * Enables revocation checking at the signing time of each signature, as for chain validation. Disabled by default.
+     *
+     * @param revocationChecker the checker, or null to disable revocation checking
+     */
+    public void setRevocationChecker(RevocationChecker revocationChecker)
+    {
+        this.revocationChecker = revocationChecker;
+    }
+
+    /**
+     * Reports the events of validation, e.g. to a {@link signature.ConsoleVerificationListener}. Nothing is reported
+     * by default.
+     *
+     * @param listener the listener, or null to report nothing
+     */
+    public void setVerificationListener(VerificationListener listener)
+    {
+        this.listener = listener == null ? VerificationListener.NONE : listener;
+    }
+
+    /**
+     * Records the time spent in each phase of validation and the outcome of each signature. Nothing is recorded by
+     * default.
+     *
+     * @param metrics the registry, or null to record nothing
+     */
+    public void setMetrics(VerificationMetrics metrics)
+    {
+        this.metrics = metrics == null ? VerificationMetrics.NONE : metrics;
+    }
+
+    /**
+     * Traces each phase of validation, e.g. as Flight Recorder events with {@link signature.metrics.JfrPhaseTracer}.
+     * Nothing is traced by default.
+     *
+     * @param tracer the tracer, or null to trace nothing
+     */
+    public void setPhaseTracer(PhaseTracer tracer)
+    {
+        this.tracer = tracer == null ? PhaseTracer.NONE : tracer;
+    }
+
+    /**
+     * Validates the signatures of a document in parallel once they are located and digested. The results are
+     * collected, and reported as verified, in document order all the same. By default the signatures are validated
+     * one after the other on the calling thread.
+     *
+     * @param executor the executor, or null to validate sequentially; the listener, chain validator and revocation
+     *                 checker must be thread-safe then
+     */
+    public void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the writer that stores the diagnostic artifacts of signatures failing validation when a signature file
+     * name format is given. By default they are written to the result folder before validation returns.
+     *
+     * @param artifactWriter the writer, which the caller closes, or null to write the artifacts synchronously
+     */
+    public synchronized void setArtifactWriter(ArtifactWriter artifactWriter)
+    {
+        this.artifactWriter = artifactWriter;
+    }
+
     public Map<String, SignatureResult> validateSignaturesImproved(byte[] pdfByte, String signatureFileName) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
     {
-        Map<String, SignatureResult> result = new HashMap<>();
-        try (PDDocument pdfDoc = PDDocument.load(pdfByte))
+        ByteSource source = BufferByteSource.wrap(pdfByte);
+        return validateSignaturesImproved(locate(source), source, null, signatureFileName);
+    }
+
+    /**
+     * Validates the signatures of a document received from a stream without buffering it first: the document is
+     * spooled into memory, or into a temporary file beyond {@link VerificationPipeline#IN_MEMORY_THRESHOLD} bytes, and
+     * the likely signed byte ranges are digested while it is received, see {@link SpooledDocument}.
+     *
+     * @param in the document, read to its end but not closed
+     */
+    public Map<String, SignatureResult> validateSignaturesImproved(InputStream in, String signatureFileName) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.LOAD);
+        long time = metrics.start();
+        try (SpooledDocument document = SpooledDocument.spool(in, (int) VerificationPipeline.IN_MEMORY_THRESHOLD,
+                SpooledDocument.DEFAULT_ALGORITHMS, context().getProvider()))
         {
-            List<PDSignature> signatures = pdfDoc.getSignatureDictionaries();
-            int index = 0;
-            for (PDSignature signature : signatures)
-            {
-                String subFilter = signature.getSubFilter();
-                // The PDFBox examples retrieve the contents using:
-                //   ((COSString)signature.getCOSObject().getDictionaryObject(COSName.CONTENTS)).getBytes()
-                // the mechanism below throws an "IOException: Invalid hex string" for the fixtures that were modified
-                // by PDF box.
-                byte[] signatureAsBytes = signature.getContents(pdfByte);
-                byte[] signedContentAsBytes = signature.getSignedContent(pdfByte);
-                System.out.printf("\nSignature # %s (%s)\n", ++index, subFilter);
+            metrics.stop(Phase.LOAD, time);
+            span.fileSize(document.size()).end();
+            return validateSignaturesImproved(locate(document), document, document, signatureFileName);
+        }
+    }
+
+    /**
+     * Validates the signatures of a document without reading it into the heap: the file is memory-mapped, the
+     * signatures are located in the mapping and the /Contents and /ByteRange slices are taken from it as well.
+     */
+    public Map<String, SignatureResult> validateSignaturesImproved(Path pdfPath, String signatureFileName) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
+    {
+        final ByteSource source;
+        PhaseTracer.Span span = tracer.start(Phase.LOAD);
+        long time = metrics.start();
+        try (FileChannel channel = FileChannel.open(pdfPath, StandardOpenOption.READ))
+        {
+            source = BufferByteSource.map(channel);
+        }
+        metrics.stop(Phase.LOAD, time);
+        span.fileSize(source.size()).end();
+        return validateSignaturesImproved(locate(source), source, null, signatureFileName);
+    }
+
+    /**
+     * Parses the /ByteRange gap straight from the decoder's buffer of this thread, without copying it, like
+     * {@code SignatureVerifier.parse} does with the /Contents.
+     */
+    private static CMSSignedData parse(ByteSource source, long[] byteRange) throws IOException, CMSException
+    {
+        if (byteRange.length < 4)
+        {
+            throw new IOException("/ByteRange does not exclude a /Contents gap");
+        }
+        long start = byteRange[0] + byteRange[1];
+        return new CMSSignedData(ContentsDecoder.asInputStream(ContentsDecoder.decode(source, start, byteRange[2] - start)));
+    }
+
+    private List<SignatureDictionary> locate(ByteSource source) throws IOException
+    {
+        PhaseTracer.Span span = tracer.start(Phase.LOCATE);
+        long time = metrics.start();
+        List<SignatureDictionary> signatures = SignatureLocator.locateSignatures(source);
+        metrics.stop(Phase.LOCATE, time);
+        span.fileSize(source.size()).end();
+        return signatures;
+    }
 
-                dump(signatureFileName, String.format(signatureFileName, index), "Signature contents", signatureAsBytes);
+    private Map<String, SignatureResult> validateSignaturesImproved(List<SignatureDictionary> signatures, ByteSource source,
+                                                                    DigestPlanner.Precomputed precomputed, String signatureFileName) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
+    {
+        VerificationContext context = context();
 
-                final CMSSignedData cms;
-                if ("adbe.pkcs7.detached".equals(subFilter) || "ETSI.CAdES.detached".equals(subFilter))
+        // Locate the signatures and register their byte ranges with the digest algorithms their signers use, so
+        // that all signed revisions are digested in a single read of the document.
+        DigestPlanner planner = new DigestPlanner(context.getProvider());
+        List<LocatedSignature> located = new ArrayList<>();
+        for (SignatureDictionary signature : signatures)
+        {
+            String subFilter = signature.getSubFilter();
+            // The PDFBox examples retrieve the contents using:
+            //   ((COSString)signature.getCOSObject().getDictionaryObject(COSName.CONTENTS)).getBytes()
+            // the mechanism below (like signature.getContents(pdfByte)) throws an "IOException: Invalid hex string"
+            // for the fixtures that were modified by PDF box.
+            long[] byteRange = signature.getByteRange();
+            PhaseTracer.Span span = tracer.start(Phase.CMS_PARSE);
+            long time = metrics.start();
+            CMSSignedData cms = null;
+            DigestPlanner.Request digests = null;
+            if ("adbe.pkcs7.detached".equals(subFilter) || "ETSI.CAdES.detached".equals(subFilter))
+            {
+                cms = parse(source, byteRange);
+                Set<ASN1ObjectIdentifier> digestAlgorithms = new LinkedHashSet<>();
+                for (SignerInformation signerInfo : cms.getSignerInfos().getSigners())
                 {
-                    cms = new CMSSignedData(new CMSProcessableByteArray(signedContentAsBytes), signatureAsBytes);
+                    digestAlgorithms.add(signerInfo.getDigestAlgorithmID().getAlgorithm());
                 }
-                else if ("adbe.pkcs7.sha1".equals(subFilter))
+                digests = planner.add(byteRange, digestAlgorithms);
+            }
+            else if ("adbe.pkcs7.sha1".equals(subFilter))
+            {
+                cms = parse(source, byteRange);
+                digests = planner.add(byteRange, Collections.singleton(OIWObjectIdentifiers.idSHA1));
+            }
+            else if ("ETSI.RFC3161".equals(subFilter))
+            {
+                cms = parse(source, byteRange);
+                digests = planner.add(byteRange, Collections.singleton(timeStampToken(cms).getTimeStampInfo().getMessageImprintAlgOID()));
+            }
+            metrics.stop(Phase.CMS_PARSE, time);
+            span.subFilter(subFilter).end();
+            located.add(new LocatedSignature(signature, subFilter, cms, digests));
+        }
+
+        PhaseTracer.Span digestSpan = tracer.start(Phase.DIGEST);
+        long digestStart = metrics.start();
+        planner.digest(source, precomputed);
+        metrics.stop(Phase.DIGEST, digestStart);
+        if (digestSpan.isEnabled())
+        {
+            digestSpan.digestAlgorithm(planner.getAlgorithmNames()).bytesHashed(planner.getBytesHashed());
+        }
+        digestSpan.end();
+
+        Map<String, SignatureResult> result = new LinkedHashMap<>();
+        List<SignatureDiagnostics> diagnostics = new ArrayList<>(located.size());
+        List<Callable<SignatureResult>> tasks = new ArrayList<>(located.size());
+        for (LocatedSignature entry : located)
+        {
+            int index = diagnostics.size() + 1;
+            listener.signatureFound(index, entry.signature.getName(), entry.subFilter, entry.signature.getSignDate());
+            // only references are captured here, the contents are encoded and dumped if anybody asks the result for them
+            SignatureDiagnostics signatureDiagnostics = new SignatureDiagnostics()
+                    .add("Signature contents", fileName(signatureFileName, "", index),
+                            entry.cms != null ? entry.cms::getEncoded : () -> ContentsDecoder.decode(source, entry.signature.getByteRange()));
+            diagnostics.add(signatureDiagnostics);
+            if (executor == null || located.size() < 2)
+            {
+                complete(result, entry, validate(context, entry, index, signatureFileName, signatureDiagnostics), signatureDiagnostics);
+            }
+            else
+            {
+                tasks.add(() -> validate(context, entry, index, signatureFileName, signatureDiagnostics));
+            }
+        }
+        if (tasks.isEmpty())
+        {
+            return result;
+        }
+
+        // the signatures are independent once digested: validate them in parallel, but complete them in order
+        try
+        {
+            List<SignatureResult> results = OrderedExecution.invokeAll(executor, tasks);
+            for (int i = 0; i < results.size(); i++)
+            {
+                complete(result, located.get(i), results.get(i), diagnostics.get(i));
+            }
+            return result;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while validating signatures");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CMSException)
+            {
+                throw (CMSException) cause;
+            }
+            if (cause instanceof OperatorCreationException)
+            {
+                throw (OperatorCreationException) cause;
+            }
+            if (cause instanceof GeneralSecurityException)
+            {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Validates one located signature; signatures of the same document may be validated concurrently.
+     *
+     * @param index the number of the signature in the document, counting from 1
+     * @param diagnostics the diagnostics of the signature, which further artifacts are added to
+     */
+    private SignatureResult validate(VerificationContext context, LocatedSignature entry, int index, String signatureFileName,
+                                     SignatureDiagnostics diagnostics) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
+    {
+        try
+        {
+            return check(context, entry, index, signatureFileName, diagnostics);
+        }
+        catch (IOException | CMSException | OperatorCreationException | GeneralSecurityException | RuntimeException e)
+        {
+            metrics.count(entry.subFilter, VerificationMetrics.Outcome.ERROR);
+            throw e;
+        }
+    }
+
+    private SignatureResult check(VerificationContext context, LocatedSignature entry, int index, String signatureFileName,
+                                  SignatureDiagnostics diagnostics) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
+    {
+        SignatureDictionary signature = entry.signature;
+        String subFilter = entry.subFilter;
+        String name = signature.getName();
+        final CMSSignedData cms;
+        if ("adbe.pkcs7.detached".equals(subFilter) || "ETSI.CAdES.detached".equals(subFilter))
+        {
+            // the CMS structure was parsed and timed when the signature was located
+            cms = new CMSSignedData(entry.digests.getDigests(), entry.cms.toASN1Structure());
+        }
+        else if ("adbe.pkcs7.sha1".equals(subFilter))
+        {
+            cms = entry.cms;
+        }
+        else if ("ETSI.RFC3161".equals(subFilter))
+        {
+            return validateDocumentTimeStamp(name, timeStampToken(entry.cms), entry.digests);
+        }
+        else if ("adbe.x509.rsa.sha1".equals(subFilter))
+        {
+            return SignatureResult.failed(String.format("!!! SubFilter %s not yet supported.", subFilter));
+        }
+        else if (subFilter != null)
+        {
+            return SignatureResult.failed(String.format("!!! Unknown SubFilter %s.", subFilter));
+        }
+        else
+        {
+            return SignatureResult.failed(String.format("!!! Missing SubFilter."));
+        }
+
+        SignerInformation signerInfo = (SignerInformation) cms.getSignerInfos().getSigners().iterator().next();
+        X509CertificateHolder cert = (X509CertificateHolder) cms.getCertificates().getMatches(signerInfo.getSID())
+                .iterator().next();
+        long time = metrics.start();
+        SignerCache.Signer signer = context.getSigner(cert);
+        SignerInformationVerifier verifier = signer.getVerifier();
+        time = metrics.stop(Phase.CERTIFICATE_CONVERSION, time);
+
+        PhaseTracer.Span span = tracer.start(Phase.SIGNER_VERIFY);
+        boolean verifyResult = signerInfo.verify(verifier);
+        time = metrics.stop(Phase.SIGNER_VERIFY, time);
+        if (span.isEnabled())
+        {
+            span.subFilter(subFilter).digestAlgorithm(DigestPlanner.getAlgorithmName(signerInfo.getDigestAlgorithmID().getAlgorithm()));
+        }
+        span.end();
+        listener.signatureChecked(name, verifyResult, null);
+        if (!verifyResult)
+        {
+            diagnostics.add("Encoded signed attributes", fileName(signatureFileName, "-sigAttr.der", index),
+                signerInfo.getEncodedSignedAttributes());
+        }
+
+        String diag = null;
+        if ("adbe.pkcs7.sha1".equals(subFilter))
+        {
+            byte[] calculatedDigest = entry.digests.getDigest(OIWObjectIdentifiers.idSHA1);
+            byte[] signedDigest = (byte[]) cms.getSignedContent().getContent();
+            boolean digestsMatch = Arrays.equals(calculatedDigest, signedDigest);
+            listener.digestChecked(name, "SHA1", digestsMatch);
+            diag = digestsMatch ? "    Document SHA1 digest matches." : "!!! Document SHA1 digest does not match!";
+        }
+        // a verified signature timestamp replaces the self-reported /M as the time the signer had to be valid at
+        Date signingTime = null;
+        // a revoked key could claim any /M, so without a timestamp the signer must not be revoked now
+        Date revocationTime = new Date();
+        if (verifyResult)
+        {
+            try
+            {
+                time = metrics.start();
+                Date timeStamp = timeStampVerifier().verify(signerInfo, chainValidator);
+                if (timeStamp != null)
                 {
-                    cms = new CMSSignedData(new ByteArrayInputStream(signatureAsBytes));
+                    // signatures without a timestamp token would only dilute the phase
+                    metrics.stop(Phase.TIMESTAMP, time);
+                    listener.timeStampVerified(name, timeStamp, false);
+                    signingTime = timeStamp;
+                    revocationTime = timeStamp;
                 }
-                else if ("adbe.x509.rsa.sha1".equals(subFilter) || "ETSI.RFC3161".equals(subFilter))
+            }
+            catch (TSPException e)
+            {
+                diag = "!!! Timestamp validation failed: " + e.getMessage();
+                verifyResult = false;
+            }
+        }
+        if (signingTime == null)
+        {
+            // /M is optional, without it the certificate has to be valid now
+            signingTime = signature.getSignDate() != null ? signature.getSignDate().getTime() : new Date();
+        }
+        if (verifyResult && (chainValidator != null || revocationChecker != null))
+        {
+            time = metrics.start();
+            @SuppressWarnings("unchecked")
+            Store<X509CertificateHolder> certificates = cms.getCertificates();
+            String failure = CertificateValidation.validate(chainValidator, revocationChecker, signer.getCertificate(),
+                    context.getCertificates(certificates), signingTime, revocationTime);
+            metrics.stop(Phase.CERTIFICATE_VALIDATION, time);
+            listener.certificatesChecked(name, failure);
+            if (failure != null)
+            {
+                diag = "!!! " + failure;
+                verifyResult = false;
+            }
+        }
+        return new SignatureResult(signer.getCertificate(), verifyResult, diag);
+    }
+
+    /**
+     * Validates a document timestamp, whose message imprint is the digest of the signed byte range.
+     */
+    private SignatureResult validateDocumentTimeStamp(String name, TimeStampToken token, DigestPlanner.Request digests) throws IOException, GeneralSecurityException
+    {
+        TimeStampVerifier timeStampVerifier = timeStampVerifier();
+        X509Certificate tsaCertificate = null;
+        try
+        {
+            long start = metrics.start();
+            tsaCertificate = timeStampVerifier.getTimeStampAuthority(token).getCertificate();
+            Date time = timeStampVerifier.verify(token, digests.getDigest(token.getTimeStampInfo().getMessageImprintAlgOID()), null);
+            start = metrics.stop(Phase.TIMESTAMP, start);
+            listener.timeStampVerified(name, time, true);
+            if (chainValidator != null || revocationChecker != null)
+            {
+                @SuppressWarnings("unchecked")
+                Store<X509CertificateHolder> certificates = token.getCertificates();
+                // unlike /M, the time of the token is vouched for by the TSA itself
+                String failure = CertificateValidation.validate(chainValidator, revocationChecker, tsaCertificate,
+                        context().getCertificates(certificates), time, time);
+                metrics.stop(Phase.CERTIFICATE_VALIDATION, start);
+                listener.certificatesChecked(name, failure);
+                if (failure != null)
                 {
-                    String diag = String.format("!!! SubFilter %s not yet supported.", subFilter);
-                    System.out.println(diag);
-                    result.put(signature.getName(), SignatureResult.failed(diag));
-                    continue;
+                    return new SignatureResult(tsaCertificate, false, "!!! " + failure);
                 }
-                else if (subFilter != null)
+            }
+            return new SignatureResult(tsaCertificate, true);
+        }
+        catch (TSPException e)
+        {
+            return new SignatureResult(tsaCertificate, false, "!!! Document timestamp validation failed: " + e.getMessage());
+        }
+    }
+
+    private static TimeStampToken timeStampToken(CMSSignedData cms) throws IOException
+    {
+        try
+        {
+            return new TimeStampToken(cms);
+        }
+        catch (TSPException e)
+        {
+            throw new IOException("Invalid document timestamp: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reports and records the result of a signature; the diagnostic artifacts of a failed signature are stored.
+     */
+    private void complete(Map<String, SignatureResult> result, LocatedSignature entry, SignatureResult signatureResult,
+                          SignatureDiagnostics diagnostics) throws IOException
+    {
+        String name = entry.signature.getName();
+        metrics.count(entry.subFilter, signatureResult.isVerified()
+                ? VerificationMetrics.Outcome.VERIFIED : VerificationMetrics.Outcome.FAILED);
+        signatureResult = signatureResult.withDiagnostics(diagnostics);
+        if (!signatureResult.isVerified())
+        {
+            ArtifactWriter writer = artifactWriter();
+            for (SignatureDiagnostics.Artifact artifact : diagnostics.getArtifacts())
+            {
+                if (artifact.getFileName() == null || artifact.getData() == null)
                 {
-                    String diag = String.format("!!! Unknown SubFilter %s.", subFilter);
-                    System.out.println(diag);
-                    result.put(signature.getName(), SignatureResult.failed(diag));
                     continue;
                 }
-                else
+                if (writer != null)
                 {
-                    String diag = String.format("!!! Missing SubFilter.");
-                    System.out.println(diag);
-                    result.put(signature.getName(), SignatureResult.failed(diag));
-                    continue;
+                    writer.write(artifact.getFileName(), artifact.getData());
                 }
-
-                SignerInformation signerInfo = (SignerInformation) cms.getSignerInfos().getSigners().iterator().next();
-                X509CertificateHolder cert = (X509CertificateHolder) cms.getCertificates().getMatches(signerInfo.getSID())
-                        .iterator().next();
-                SignerInformationVerifier verifier = new JcaSimpleSignerInfoVerifierBuilder().setProvider(provider()).build(cert);
-
-                boolean verifyResult = signerInfo.verify(verifier);
-                if (verifyResult)
-                    System.out.println("    Signature verification successful.");
                 else
                 {
-                    System.out.println("!!! Signature verification failed!");
-                    dump(signatureFileName, String.format(signatureFileName + "-sigAttr.der", index),
-                        "Encoded signed attributes", signerInfo.getEncodedSignedAttributes());
-                }
-
-                String diag = null;
-                if ("adbe.pkcs7.sha1".equals(subFilter))
-                {
-                    MessageDigest md = MessageDigest.getInstance("SHA1");
-                    byte[] calculatedDigest = md.digest(signedContentAsBytes);
-                    byte[] signedDigest = (byte[]) cms.getSignedContent().getContent();
-                    boolean digestsMatch = Arrays.equals(calculatedDigest, signedDigest);
-                    if (digestsMatch)
-                        System.out.println(diag = "    Document SHA1 digest matches.");
-                    else
-                    {
-                        System.out.println(diag = "!!! Document SHA1 digest does not match!");
-                    }
+                    // nobody would close a writer of our own, so nothing may be left queued
+                    Files.write(new File(resultFolder, artifact.getFileName()).toPath(), artifact.getData());
                 }
-                result.put(signature.getName(), new SignatureResult(cert, verifyResult, diag));
             }
         }
-        return result;
+        listener.signatureVerified(name, signatureResult);
+        result.put(name, signatureResult);
     }
 
-    private void dump(String signatureFileNameBaseFormat, String signatureFileName, String description, byte[] data) throws IOException {
-        if (data == null) {
-            System.out.printf("    %s is null\n", description);
-            return;
-        }
+    /**
+     * @return the name of an artifact of the signature with the given index, or null if artifacts are not stored
+     */
+    private static String fileName(String signatureFileNameFormat, String suffix, int index)
+    {
+        return signatureFileNameFormat == null ? null : String.format(signatureFileNameFormat + suffix, index);
+    }
+
+    protected Provider provider() { return BOUNCY_CASTLE; }
 
-        if (signatureFileNameBaseFormat != null) {
-            Files.write(new File(resultFolder, signatureFileName).toPath(), data);
-            System.out.printf("    %s stored as '%s'.\n", description, signatureFileName);
+    /**
+     * The context is set up on first use from {@link #provider()}, so that subclasses can still choose the provider.
+     */
+    private synchronized VerificationContext context()
+    {
+        if (context == null)
+        {
+            context = new VerificationContext(provider());
         }
+        return context;
+    }
 
-        System.out.printf("    ==================================================\n", description, signatureFileName);
-        System.out.printf("    %s\n", description);
-        try (ASN1InputStream bIn = new ASN1InputStream(data)) {
-            Object obj;
-            try {
-                while ((obj = bIn.readObject()) != null) {
-                    System.out.println(ASN1Dump.dumpAsString(obj, false));
-                }
-            } catch (IOException e) {
-                if (!e.getMessage().equals("unexpected end-of-contents marker")) {
-                    throw e;
-                }
-            }
+    private synchronized ArtifactWriter artifactWriter()
+    {
+        return artifactWriter;
+    }
+
+    private synchronized TimeStampVerifier timeStampVerifier()
+    {
+        if (timeStampVerifier == null)
+        {
+            timeStampVerifier = new TimeStampVerifier(context());
         }
+        return timeStampVerifier;
     }
 
-    protected Provider provider() { return new BouncyCastleProvider(); }
+    /**
+     * A signature located in the document, waiting for the digest of its byte range.
+     */
+    private static final class LocatedSignature
+    {
+        private final SignatureDictionary signature;
+        private final String subFilter;
+        private final CMSSignedData cms;
+        private final DigestPlanner.Request digests;
+
+        private LocatedSignature(SignatureDictionary signature, String subFilter, CMSSignedData cms, DigestPlanner.Request digests)
+        {
+            this.signature = signature;
+            this.subFilter = subFilter;
+            this.cms = cms;
+            this.digests = digests;
+        }
+    }
 }
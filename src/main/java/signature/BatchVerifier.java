@@ -0,0 +1,221 @@
+package signature;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Verifies many documents concurrently, yielding each document's result as soon as it completes.
+ *
+ * Every document is verified on its own virtual thread when the runtime supports them (Java 21+), otherwise on a
+ * cached pool of platform threads. Either way at most {@code maxConcurrency} documents are in flight: a permit is
+ * taken before a document is started and only returned when its result has been consumed, so a slow consumer
+ * throttles the batch instead of piling up results.
+ *
+ * <pre>
+ * SignatureVerifier verifier = new SignatureVerifier();
+ * try (Stream&lt;DocumentResult&gt; results = new BatchVerifier(path -&gt; verifier.extractSignatures(path.toFile()), 64)
+ *         .verify(archive))
+ * {
+ *     results.filter(result -&gt; !result.isVerified()).forEach(System.out::println);
+ * }
+ * </pre>
+ */
+public class BatchVerifier
+{
+    private static final DocumentResult END = new DocumentResult(null, (Throwable) null);
+
+    private final DocumentVerifier verifier;
+    private final int maxConcurrency;
+
+    /**
+     * Uses a concurrency cap of four documents per core, verification being largely I/O bound for big documents.
+     */
+    public BatchVerifier(DocumentVerifier verifier)
+    {
+        this(verifier, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param verifier verifies a single document, it is called concurrently
+     * @param maxConcurrency the maximum number of documents verified (or awaiting consumption) at once
+     */
+    public BatchVerifier(DocumentVerifier verifier, int maxConcurrency)
+    {
+        if (maxConcurrency < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.verifier = verifier;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Verifies all {@code .pdf} files below the given directory.
+     *
+     * @param directory the root of the archive
+     * @return the results in completion order, the stream must be closed
+     * @throws IOException if the directory could not be opened
+     */
+    public Stream<DocumentResult> verify(Path directory) throws IOException
+    {
+        final Stream<Path> files = Files.walk(directory)
+                .filter(Files::isRegularFile)
+                .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".pdf"));
+        return verify(files).onClose(files::close);
+    }
+
+    /**
+     * Verifies the given documents. The paths are pulled lazily, so the stream may be arbitrarily long.
+     *
+     * @param documents the documents to verify
+     * @return the results in completion order, the stream must be closed to abandon the batch early
+     */
+    public Stream<DocumentResult> verify(final Stream<Path> documents)
+    {
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final BlockingQueue<DocumentResult> results = new LinkedBlockingQueue<>();
+        final ExecutorService executor = newExecutor();
+
+        final Thread dispatcher = newThread(() -> {
+            try
+            {
+                Iterator<Path> iterator = documents.iterator();
+                while (iterator.hasNext())
+                {
+                    final Path document = iterator.next();
+                    permits.acquire();
+                    executor.execute(() -> results.add(verifyDocument(document)));
+                }
+                // all permits are back once every result has been consumed
+                permits.acquire(maxConcurrency);
+                permits.release(maxConcurrency);
+                executor.shutdown();
+                results.add(END);
+            }
+            catch (InterruptedException e)
+            {
+                // the batch was closed
+            }
+            catch (RuntimeException e)
+            {
+                results.add(new DocumentResult(null, e));
+                results.add(END);
+            }
+        });
+        dispatcher.start();
+
+        Iterator<DocumentResult> iterator = new Iterator<DocumentResult>()
+        {
+            private DocumentResult next;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (next == null)
+                {
+                    try
+                    {
+                        next = results.take();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for verification results", e);
+                    }
+                }
+                if (next == END)
+                {
+                    return false;
+                }
+                if (next.getDocument() == null)
+                {
+                    // failure listing the documents, e.g. Files.walk hitting an unreadable directory
+                    throw (RuntimeException) next.getFailure();
+                }
+                return true;
+            }
+
+            @Override
+            public DocumentResult next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                DocumentResult result = next;
+                next = null;
+                permits.release();
+                return result;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    dispatcher.interrupt();
+                    executor.shutdownNow();
+                });
+    }
+
+    private DocumentResult verifyDocument(Path document)
+    {
+        try
+        {
+            return new DocumentResult(document, verifier.verify(document));
+        }
+        catch (Throwable e)
+        {
+            // every document must yield a result, otherwise its permit would never be returned
+            return new DocumentResult(document, e);
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} if available, looked up reflectively so that the project
+     * still builds and runs on older Java versions.
+     */
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task)
+                {
+                    Thread thread = new Thread(task, "batch-verifier-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    private static Thread newThread(Runnable task)
+    {
+        Thread thread = new Thread(task, "batch-verifier-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,174 @@
+package signature;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size bounded cache evicting the least recently used entry, with hit and miss counters.
+ *
+ * Values are computed outside the lock, so a slow load never blocks lookups of other keys. Two threads missing the
+ * same key at once may both compute it; the first value stored wins.
+ *
+ * @param <K> the key type, with value based equals and hashCode
+ * @param <V> the value type
+ */
+public class BoundedCache<K, V>
+{
+    /**
+     * Computes the value of a key that is not cached.
+     */
+    public interface Loader<K, V, E extends Exception>
+    {
+        V load(K key) throws E;
+    }
+
+    private final int maximumSize;
+    private final LinkedHashMap<K, V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maximumSize the maximum number of entries
+     */
+    public BoundedCache(final int maximumSize)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+                if (size() > maximumSize)
+                {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or null
+     */
+    public V getIfPresent(K key)
+    {
+        V value;
+        synchronized (entries)
+        {
+            value = entries.get(key);
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Returns the cached value, loading and caching it if absent.
+     *
+     * @param key the key
+     * @param loader computes the value, it must not return null
+     * @return the cached or loaded value
+     * @throws E if the loader failed, nothing is cached then
+     */
+    public <E extends Exception> V get(K key, Loader<? super K, ? extends V, E> loader) throws E
+    {
+        V value = getIfPresent(key);
+        if (value != null)
+        {
+            return value;
+        }
+        value = loader.load(key);
+        if (value == null)
+        {
+            throw new NullPointerException("Loader returned null for " + key);
+        }
+        return putIfAbsent(key, value);
+    }
+
+    /**
+     * Caches the value unless the key is cached already.
+     *
+     * @return the value now cached for the key
+     */
+    public V putIfAbsent(K key, V value)
+    {
+        synchronized (entries)
+        {
+            V existing = entries.get(key);
+            if (existing != null)
+            {
+                return existing;
+            }
+            entries.put(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * Caches the value, replacing any value cached for the key.
+     */
+    public void put(K key, V value)
+    {
+        synchronized (entries)
+        {
+            entries.put(key, value);
+        }
+    }
+
+    public void invalidate(K key)
+    {
+        synchronized (entries)
+        {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("BoundedCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]", size(), maximumSize,
+                getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
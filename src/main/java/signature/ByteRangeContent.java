@@ -0,0 +1,145 @@
+package signature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.cms.CMSTypedData;
+import signature.io.ByteSource;
+import signature.io.ChannelByteSource;
+
+/**
+ * The content covered by a PDF signature /ByteRange, read lazily from a {@link ByteSource} such as a
+ * {@link FileChannel} or a memory mapping.
+ *
+ * Unlike {@link org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature#getSignedContent(java.io.InputStream)}
+ * the signed content never exists as a single array: each segment is read chunk by chunk using positional reads with
+ * long offsets, so documents larger than 2 GB can be verified and the channel can be shared between signatures
+ * (and threads).
+ */
+public class ByteRangeContent implements CMSTypedData
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ByteSource source;
+    private final long[] byteRange;
+
+    /**
+     * @param channel the channel over the whole PDF document, it is not closed by this class
+     * @param byteRange the /ByteRange of the signature as (offset, length) pairs
+     * @throws IOException if the byte range is malformed
+     */
+    public ByteRangeContent(FileChannel channel, long[] byteRange) throws IOException
+    {
+        this(new ChannelByteSource(channel), byteRange);
+    }
+
+    /**
+     * @param source the whole PDF document
+     * @param byteRange the /ByteRange of the signature as (offset, length) pairs
+     * @throws IOException if the byte range is malformed
+     */
+    public ByteRangeContent(ByteSource source, long[] byteRange) throws IOException
+    {
+        if (byteRange == null || byteRange.length == 0 || byteRange.length % 2 != 0)
+        {
+            throw new IOException("Malformed /ByteRange: expected (offset, length) pairs");
+        }
+        for (int i = 0; i < byteRange.length; i += 2)
+        {
+            if (byteRange[i] < 0 || byteRange[i + 1] < 0)
+            {
+                throw new IOException("Malformed /ByteRange: negative offset or length");
+            }
+        }
+        this.source = source;
+        this.byteRange = byteRange.clone();
+    }
+
+    /**
+     * @return the number of bytes covered by the byte range
+     */
+    public long length()
+    {
+        long length = 0;
+        for (int i = 1; i < byteRange.length; i += 2)
+        {
+            length += byteRange[i];
+        }
+        return length;
+    }
+
+    /**
+     * Digests the covered bytes without materialising them.
+     *
+     * @param md the message digest to update, it is reset first
+     * @return the digest of the signed content
+     * @throws IOException if the document could not be read
+     */
+    public byte[] digest(final MessageDigest md) throws IOException
+    {
+        md.reset();
+        write(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                md.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+                md.update(b, off, len);
+            }
+        });
+        return md.digest();
+    }
+
+    /**
+     * Writes the covered bytes to the given stream. Like PDFBox, a range reaching beyond the end of the document
+     * (e.g. after the document was rewritten) is truncated so that the signature simply fails to verify.
+     */
+    @Override
+    public void write(OutputStream out) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, Math.max(1, length())));
+        for (int i = 0; i < byteRange.length; i += 2)
+        {
+            long position = byteRange[i];
+            long remaining = byteRange[i + 1];
+            while (remaining > 0)
+            {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int read = source.read(position, buffer);
+                if (read < 0)
+                {
+                    break;
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the byte range, the content itself is only available through {@link #write(OutputStream)}
+     */
+    @Override
+    public Object getContent()
+    {
+        return byteRange.clone();
+    }
+
+    @Override
+    public ASN1ObjectIdentifier getContentType()
+    {
+        return CMSObjectIdentifiers.data;
+    }
+}
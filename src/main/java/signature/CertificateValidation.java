@@ -0,0 +1,83 @@
+package signature;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import signature.revocation.RevocationChecker;
+import signature.revocation.RevocationStatus;
+
+/**
+ * The certificate checks shared by the verifiers once the signature value itself verified: chain validation and
+ * revocation checking, both optional.
+ */
+public final class CertificateValidation
+{
+    private CertificateValidation()
+    {
+    }
+
+    /**
+     * @param chainValidator validates the chain of the signer, or null to skip chain validation
+     * @param revocationChecker checks the signer (and its chain, if validated) for revocation, or null to skip it
+     * @param signer the signer certificate
+     * @param certificates the certificates accompanying the signature
+     * @param time the time the certificates must have been valid at
+     * @param revocationTime the time the certificates must not have been revoked at; as a signer can claim any
+     *                       signing time, only a time vouched for by a timestamp authority may be earlier than now
+     * @return null if the checks passed, otherwise why they failed
+     * @throws IOException if the revocation information could not be read
+     */
+    public static String validate(ChainValidator chainValidator, RevocationChecker revocationChecker,
+                                  X509Certificate signer, List<X509Certificate> certificates, Date time,
+                                  Date revocationTime) throws IOException
+    {
+        List<X509Certificate> path = Collections.singletonList(signer);
+        X509Certificate anchor = findIssuer(signer, certificates);
+        if (chainValidator != null)
+        {
+            try
+            {
+                PKIXCertPathBuilderResult result = chainValidator.validate(signer, certificates, time);
+                path = new ArrayList<>();
+                for (Certificate certificate : result.getCertPath().getCertificates())
+                {
+                    path.add((X509Certificate) certificate);
+                }
+                anchor = result.getTrustAnchor().getTrustedCert();
+            }
+            catch (GeneralSecurityException e)
+            {
+                return "Certificate chain validation failed: " + e.getMessage();
+            }
+        }
+        if (revocationChecker != null)
+        {
+            RevocationStatus status = revocationChecker.checkPath(path, anchor, revocationTime);
+            if (!status.isGood())
+            {
+                return "Certificate revocation status " + status;
+            }
+        }
+        return null;
+    }
+
+    private static X509Certificate findIssuer(X509Certificate certificate, List<X509Certificate> candidates)
+    {
+        for (X509Certificate candidate : candidates)
+        {
+            if (candidate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal()) && !candidate.equals(certificate))
+            {
+                return candidate;
+            }
+        }
+        // a self-issued certificate, e.g. a self-signed signer
+        return certificate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal()) ? certificate : null;
+    }
+}
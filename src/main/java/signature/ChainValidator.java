@@ -0,0 +1,268 @@
+package signature;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.PKIXCertPathBuilderResult;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates signer certificate chains against a set of trust anchors, memoizing the validated paths.
+ *
+ * Building a PKIX path is expensive, yet nearly all signers chain to the same few intermediates. Successfully
+ * validated paths are therefore cached by (leaf certificate, set of supplied intermediates, validation time bucket).
+ * A cached path is only reused if the validation time also lies within the validity period of every certificate on
+ * it, so bucketing never accepts an expired certificate. Entries expire after a time to live, so that changes to
+ * the trust anchors or revocation status are picked up eventually; failures are never cached.
+ *
+ * Revocation checking is disabled, it is the business of a separate revocation check.
+ */
+public class ChainValidator
+{
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_TIME_BUCKET = TimeUnit.DAYS.toMillis(1);
+
+    private final Set<TrustAnchor> trustAnchors;
+    private final BoundedCache<Key, ValidatedPath> cache;
+    private final long timeToLive;
+    private final long timeBucket;
+
+    /**
+     * Uses the default cache size, time to live and time bucket.
+     */
+    public ChainValidator(Set<TrustAnchor> trustAnchors)
+    {
+        this(trustAnchors, DEFAULT_CACHE_SIZE, DEFAULT_TIME_TO_LIVE, DEFAULT_TIME_BUCKET);
+    }
+
+    /**
+     * @param trustAnchors the trusted roots
+     * @param cacheSize the maximum number of validated paths cached
+     * @param timeToLive how long a validated path is reused, in milliseconds
+     * @param timeBucket the granularity of the validation time in the cache key, in milliseconds
+     */
+    public ChainValidator(Set<TrustAnchor> trustAnchors, int cacheSize, long timeToLive, long timeBucket)
+    {
+        if (trustAnchors.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one trust anchor is required");
+        }
+        if (timeToLive < 0 || timeBucket < 1)
+        {
+            throw new IllegalArgumentException("Invalid time to live or time bucket");
+        }
+        this.trustAnchors = Collections.unmodifiableSet(new HashSet<>(trustAnchors));
+        this.cache = new BoundedCache<>(cacheSize);
+        this.timeToLive = timeToLive;
+        this.timeBucket = timeBucket;
+    }
+
+    /**
+     * Trusts every certificate entry of the given key store, e.g. a JKS trust store.
+     */
+    public static ChainValidator fromKeyStore(KeyStore trustStore) throws KeyStoreException
+    {
+        Set<TrustAnchor> anchors = new HashSet<>();
+        for (Enumeration<String> aliases = trustStore.aliases(); aliases.hasMoreElements(); )
+        {
+            Certificate certificate = trustStore.getCertificate(aliases.nextElement());
+            if (certificate instanceof X509Certificate)
+            {
+                anchors.add(new TrustAnchor((X509Certificate) certificate, null));
+            }
+        }
+        return new ChainValidator(anchors);
+    }
+
+    /**
+     * Validates the chain of the given certificate at the given time.
+     *
+     * @param leaf the signer certificate
+     * @param intermediates further certificates the path may be built from, typically all certificates of the CMS
+     *                      structure; the leaf itself and trust anchors among them are harmless
+     * @param time the validation time, usually the signing time
+     * @return the validated path
+     * @throws GeneralSecurityException if no valid path to a trust anchor could be built
+     */
+    public PKIXCertPathBuilderResult validate(X509Certificate leaf, Collection<X509Certificate> intermediates, Date time)
+            throws GeneralSecurityException
+    {
+        Key key = new Key(leaf, intermediates, time.getTime() / timeBucket);
+        long now = System.currentTimeMillis();
+        ValidatedPath cached = cache.getIfPresent(key);
+        if (cached != null)
+        {
+            if (cached.expires > now && cached.covers(time))
+            {
+                return cached.result;
+            }
+            cache.invalidate(key);
+        }
+
+        PKIXCertPathBuilderResult result = build(leaf, intermediates, time);
+        ValidatedPath validated = new ValidatedPath(result, now + timeToLive);
+        if (validated.covers(time))
+        {
+            cache.putIfAbsent(key, validated);
+        }
+        return result;
+    }
+
+    private PKIXCertPathBuilderResult build(X509Certificate leaf, Collection<X509Certificate> intermediates, Date time)
+            throws GeneralSecurityException
+    {
+        X509CertSelector target = new X509CertSelector();
+        target.setCertificate(leaf);
+        PKIXBuilderParameters parameters;
+        try
+        {
+            parameters = new PKIXBuilderParameters(trustAnchors, target);
+        }
+        catch (InvalidAlgorithmParameterException e)
+        {
+            // only thrown for an empty set of trust anchors, which the constructor rules out
+            throw new IllegalStateException(e);
+        }
+        List<Certificate> certificates = new ArrayList<>(intermediates);
+        certificates.add(leaf);
+        parameters.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(certificates)));
+        parameters.setDate(time);
+        parameters.setRevocationEnabled(false);
+        // CertPathBuilder instances are not thread-safe, but cheap compared to the build itself
+        return (PKIXCertPathBuilderResult) CertPathBuilder.getInstance("PKIX").build(parameters);
+    }
+
+    public int getCacheSize()
+    {
+        return cache.size();
+    }
+
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+    private static final class ValidatedPath
+    {
+        private final PKIXCertPathBuilderResult result;
+        private final long expires;
+        private final long notBefore;
+        private final long notAfter;
+
+        private ValidatedPath(PKIXCertPathBuilderResult result, long expires)
+        {
+            this.result = result;
+            this.expires = expires;
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            for (Certificate certificate : result.getCertPath().getCertificates())
+            {
+                X509Certificate x509 = (X509Certificate) certificate;
+                from = Math.max(from, x509.getNotBefore().getTime());
+                to = Math.min(to, x509.getNotAfter().getTime());
+            }
+            X509Certificate root = result.getTrustAnchor().getTrustedCert();
+            if (root != null)
+            {
+                from = Math.max(from, root.getNotBefore().getTime());
+                to = Math.min(to, root.getNotAfter().getTime());
+            }
+            this.notBefore = from;
+            this.notAfter = to;
+        }
+
+        private boolean covers(Date time)
+        {
+            return time.getTime() >= notBefore && time.getTime() <= notAfter;
+        }
+    }
+
+    /**
+     * (leaf, intermediate set, time bucket), with certificates represented by their SHA-256 hashes.
+     */
+    private static final class Key
+    {
+        private final byte[] leaf;
+        private final Set<Fingerprint> intermediates;
+        private final long bucket;
+
+        private Key(X509Certificate leaf, Collection<X509Certificate> intermediates, long bucket)
+                throws CertificateEncodingException, NoSuchAlgorithmException
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            this.leaf = md.digest(leaf.getEncoded());
+            this.intermediates = new HashSet<>();
+            for (X509Certificate intermediate : intermediates)
+            {
+                this.intermediates.add(new Fingerprint(md.digest(intermediate.getEncoded())));
+            }
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key) other;
+            return bucket == key.bucket && Arrays.equals(leaf, key.leaf) && intermediates.equals(key.intermediates);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * (31 * Arrays.hashCode(leaf) + intermediates.hashCode()) + Long.hashCode(bucket);
+        }
+    }
+
+    private static final class Fingerprint
+    {
+        private final byte[] hash;
+
+        private Fingerprint(byte[] hash)
+        {
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Fingerprint && Arrays.equals(hash, ((Fingerprint) other).hash);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package signature;
+
+import java.io.PrintStream;
+import java.security.cert.Certificate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Prints the events of verification in human readable form, as the verifiers used to do unconditionally.
+ *
+ * Each event is printed with a single call, so that the lines of an event are not interleaved with those of other
+ * threads; the events of documents verified at the same time may be, though.
+ */
+public class ConsoleVerificationListener implements VerificationListener
+{
+    // unlike SimpleDateFormat, DateTimeFormatter is thread-safe
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final PrintStream out;
+
+    public ConsoleVerificationListener()
+    {
+        this(System.out);
+    }
+
+    public ConsoleVerificationListener(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    @Override
+    public void signatureFound(int index, String name, String subFilter, Calendar signDate)
+    {
+        StringBuilder buffy = new StringBuilder();
+        buffy.append(String.format("%nSignature # %s (%s)%n", index, subFilter));
+        buffy.append(String.format("    Name:     %s%n", name));
+        if (signDate != null)
+        {
+            // document timestamps need not have one
+            buffy.append(String.format("    Modified: %s%n", DATE_FORMAT.format(signDate.toInstant())));
+        }
+        out.print(buffy);
+    }
+
+    @Override
+    public void certificatesFound(String name, Collection<? extends Certificate> certificates)
+    {
+        out.println("    certs=" + certificates);
+    }
+
+    @Override
+    public void signatureChecked(String name, boolean valid, Throwable cause)
+    {
+        if (valid)
+        {
+            out.println("    Signature verification successful.");
+        }
+        else
+        {
+            out.println("!!! Signature verification failed!" + (cause == null ? "" : " " + cause));
+        }
+    }
+
+    @Override
+    public void digestChecked(String name, String algorithm, boolean matches)
+    {
+        out.println(matches
+                ? "    Document " + algorithm + " digest matches."
+                : "!!! Document " + algorithm + " digest does not match!");
+    }
+
+    @Override
+    public void timeStampVerified(String name, Date time, boolean documentTimeStamp)
+    {
+        out.println((documentTimeStamp ? "    Document timestamp verified: " : "    Signature timestamp verified: ")
+                + DATE_FORMAT.format(time.toInstant()));
+    }
+
+    @Override
+    public void certificatesChecked(String name, String failure)
+    {
+        out.println(failure == null ? "    Certificate checks passed." : "!!! " + failure);
+    }
+
+    @Override
+    public void signatureVerified(String name, SignatureResult result)
+    {
+        if (result.isVerified() || result.getDiagnostics() == null)
+        {
+            out.println("    " + result);
+        }
+        else
+        {
+            // the diagnostics of a failure are worth their rendering
+            out.print("    " + result + System.lineSeparator() + result.getDiagnostics().dump());
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package signature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.operator.DefaultAlgorithmNameFinder;
+
+import signature.io.ByteSource;
+
+/**
+ * Digests the /ByteRanges of all signatures of a document in a single sequential read.
+ *
+ * The byte ranges of incremental signatures are nested prefixes of the file, so hashing them one by one costs
+ * O(signatures &times; file size). The planner instead walks the document once, from one range boundary to the
+ * next, feeding every byte to one digest per algorithm that is shared by all ranges containing it. Where the ranges
+ * diverge, i.e. at the /Contents gap of one signature which the later signatures cover, the digest state is cloned
+ * so that each group of ranges continues from the state it had at that boundary.
+ *
+ * Ranges with unsorted or overlapping segments, and algorithms whose digest cannot be cloned, are digested
+ * separately.
+ */
+public class DigestPlanner
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final DefaultAlgorithmNameFinder NAME_FINDER = new DefaultAlgorithmNameFinder();
+
+    private final Provider provider;
+    private final List<Request> requests = new ArrayList<>();
+
+    /**
+     * @param provider the provider of the message digests, or null for the installed providers
+     */
+    public DigestPlanner(Provider provider)
+    {
+        this.provider = provider;
+    }
+
+    /**
+     * Registers a byte range to be digested.
+     *
+     * @param byteRange the /ByteRange as (offset, length) pairs
+     * @param digestAlgorithms the OIDs of the digest algorithms required for the range
+     * @return the request, whose digests are available after {@link #digest(ByteSource)}
+     */
+    public Request add(long[] byteRange, Collection<ASN1ObjectIdentifier> digestAlgorithms)
+    {
+        Request request = new Request(byteRange, digestAlgorithms);
+        requests.add(request);
+        return request;
+    }
+
+    /**
+     * Computes the digests of all registered requests.
+     *
+     * @param source the document the byte ranges refer to
+     * @throws IOException if the document could not be read
+     * @throws NoSuchAlgorithmException if a requested digest algorithm is not available
+     */
+    public void digest(ByteSource source) throws IOException, NoSuchAlgorithmException
+    {
+        digest(source, null);
+    }
+
+    /**
+     * Computes the digests of all registered requests that were not computed before.
+     *
+     * @param source the document the byte ranges refer to
+     * @param precomputed the digests computed before, e.g. by a {@link SpooledDocument} while receiving the
+     *                    document, or null
+     * @throws IOException if the document could not be read
+     * @throws NoSuchAlgorithmException if a requested digest algorithm is not available
+     */
+    public void digest(ByteSource source, Precomputed precomputed) throws IOException, NoSuchAlgorithmException
+    {
+        // one lane per (request, algorithm), grouped by algorithm
+        Map<ASN1ObjectIdentifier, List<Request>> shared = new LinkedHashMap<>();
+        for (Request request : requests)
+        {
+            for (ASN1ObjectIdentifier algorithm : request.algorithms)
+            {
+                byte[] digest = precomputed == null ? null : precomputed.getDigest(request.byteRange, algorithm);
+                if (digest != null)
+                {
+                    request.digests.put(algorithm, digest);
+                    continue;
+                }
+                if (request.isSequential())
+                {
+                    List<Request> lanes = shared.get(algorithm);
+                    if (lanes == null)
+                    {
+                        lanes = new ArrayList<>();
+                        shared.put(algorithm, lanes);
+                    }
+                    lanes.add(request);
+                }
+                else
+                {
+                    request.digests.put(algorithm, new ByteRangeContent(source, request.byteRange).digest(createDigest(algorithm)));
+                }
+            }
+        }
+
+        List<State> states = new ArrayList<>();
+        for (Map.Entry<ASN1ObjectIdentifier, List<Request>> entry : shared.entrySet())
+        {
+            MessageDigest md = createDigest(entry.getKey());
+            if (isCloneable(md))
+            {
+                states.add(new State(entry.getKey(), md, entry.getValue()));
+            }
+            else
+            {
+                for (Request request : entry.getValue())
+                {
+                    request.digests.put(entry.getKey(), new ByteRangeContent(source, request.byteRange).digest(createDigest(entry.getKey())));
+                }
+            }
+        }
+        if (states.isEmpty())
+        {
+            return;
+        }
+
+        TreeSet<Long> boundaries = new TreeSet<>();
+        for (State state : states)
+        {
+            for (Request request : state.members)
+            {
+                for (int i = 0; i < request.byteRange.length; i += 2)
+                {
+                    boundaries.add(request.byteRange[i]);
+                    boundaries.add(request.byteRange[i] + request.byteRange[i + 1]);
+                }
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        long end = source.size();
+        Iterator<Long> iterator = boundaries.iterator();
+        long from = iterator.next();
+        while (iterator.hasNext())
+        {
+            long to = iterator.next();
+            finish(states, from);
+
+            // split every state whose members disagree about the segment [from, to)
+            List<State> feeding = new ArrayList<>();
+            for (State state : new ArrayList<>(states))
+            {
+                List<Request> excluded = new ArrayList<>();
+                for (Request request : state.members)
+                {
+                    if (!request.includes(from))
+                    {
+                        excluded.add(request);
+                    }
+                }
+                if (excluded.size() < state.members.size())
+                {
+                    if (!excluded.isEmpty())
+                    {
+                        state.members.removeAll(excluded);
+                        states.add(new State(state.algorithm, state.copy(), excluded));
+                    }
+                    feeding.add(state);
+                }
+            }
+
+            for (long position = from; position < Math.min(to, end) && !feeding.isEmpty(); )
+            {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - position));
+                int read = source.read(position, buffer);
+                if (read < 0)
+                {
+                    // like ByteRangeContent, ranges beyond the end of the document are truncated
+                    break;
+                }
+                for (State state : feeding)
+                {
+                    state.md.update(buffer.array(), 0, read);
+                }
+                position += read;
+            }
+            from = to;
+        }
+        finish(states, Long.MAX_VALUE);
+    }
+
+    /**
+     * Completes the digests of all requests whose byte range ends at or before the given position.
+     */
+    private static void finish(List<State> states, long position)
+    {
+        for (Iterator<State> iterator = states.iterator(); iterator.hasNext(); )
+        {
+            State state = iterator.next();
+            for (Iterator<Request> members = state.members.iterator(); members.hasNext(); )
+            {
+                Request request = members.next();
+                if (request.end() <= position)
+                {
+                    MessageDigest md = state.members.size() == 1 ? state.md : state.copy();
+                    request.digests.put(state.algorithm, md.digest());
+                    members.remove();
+                }
+            }
+            if (state.members.isEmpty())
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the names of the digest algorithms of all registered requests, separated by commas
+     */
+    public String getAlgorithmNames()
+    {
+        Set<ASN1ObjectIdentifier> algorithms = new LinkedHashSet<>();
+        for (Request request : requests)
+        {
+            algorithms.addAll(request.algorithms);
+        }
+        StringBuilder buffy = new StringBuilder();
+        for (ASN1ObjectIdentifier algorithm : algorithms)
+        {
+            buffy.append(buffy.length() == 0 ? "" : ",").append(getAlgorithmName(algorithm));
+        }
+        return buffy.toString();
+    }
+
+    /**
+     * @return the number of bytes the registered requests digest, counted once per digest algorithm, even where
+     * {@link #digest(ByteSource)} shares one digest among several requests
+     */
+    public long getBytesHashed()
+    {
+        long bytes = 0;
+        for (Request request : requests)
+        {
+            long length = 0;
+            for (int i = 1; i < request.byteRange.length; i += 2)
+            {
+                length += request.byteRange[i];
+            }
+            bytes += length * request.algorithms.size();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the name of a digest algorithm, e.g. SHA256
+     */
+    public static String getAlgorithmName(ASN1ObjectIdentifier algorithm)
+    {
+        return NAME_FINDER.getAlgorithmName(algorithm);
+    }
+
+    private MessageDigest createDigest(ASN1ObjectIdentifier algorithm) throws NoSuchAlgorithmException
+    {
+        return createDigest(provider, algorithm);
+    }
+
+    static MessageDigest createDigest(Provider provider, ASN1ObjectIdentifier algorithm) throws NoSuchAlgorithmException
+    {
+        try
+        {
+            return getInstance(provider, algorithm.getId());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // the installed providers may only know the algorithm by name, e.g. SHA1WITHRSA aliased to SHA-1
+            return getInstance(provider, NAME_FINDER.getAlgorithmName(algorithm));
+        }
+    }
+
+    private static MessageDigest getInstance(Provider provider, String algorithm) throws NoSuchAlgorithmException
+    {
+        return provider == null ? MessageDigest.getInstance(algorithm) : MessageDigest.getInstance(algorithm, provider);
+    }
+
+    static boolean isCloneable(MessageDigest md)
+    {
+        try
+        {
+            md.clone();
+            return true;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Digests of byte ranges computed before {@link DigestPlanner#digest(ByteSource, Precomputed)}.
+     */
+    public interface Precomputed
+    {
+        /**
+         * @return the digest of the byte range with the given algorithm, or null if it has not been computed
+         */
+        byte[] getDigest(long[] byteRange, ASN1ObjectIdentifier algorithm);
+    }
+
+    /**
+     * A byte range to digest and, once {@link DigestPlanner#digest(ByteSource)} completed, its digests.
+     */
+    public static final class Request
+    {
+        private final long[] byteRange;
+        private final Set<ASN1ObjectIdentifier> algorithms;
+        private final Map<ASN1ObjectIdentifier, byte[]> digests = new HashMap<>();
+
+        private Request(long[] byteRange, Collection<ASN1ObjectIdentifier> algorithms)
+        {
+            if (byteRange.length == 0 || byteRange.length % 2 != 0)
+            {
+                throw new IllegalArgumentException("Malformed /ByteRange: expected (offset, length) pairs");
+            }
+            this.byteRange = byteRange.clone();
+            this.algorithms = new LinkedHashSet<>(algorithms);
+        }
+
+        /**
+         * @return the digest computed with the given algorithm, or null if it was not requested
+         */
+        public byte[] getDigest(ASN1ObjectIdentifier algorithm)
+        {
+            return digests.get(algorithm);
+        }
+
+        /**
+         * @return the digests keyed by algorithm OID, as expected by
+         * {@link org.bouncycastle.cms.CMSSignedData#CMSSignedData(Map, byte[])}
+         */
+        public Map<ASN1ObjectIdentifier, byte[]> getDigests()
+        {
+            return Collections.unmodifiableMap(digests);
+        }
+
+        public long[] getByteRange()
+        {
+            return byteRange.clone();
+        }
+
+        private boolean isSequential()
+        {
+            for (int i = 0; i < byteRange.length; i += 2)
+            {
+                if (byteRange[i] < 0 || byteRange[i + 1] < 0 || i > 0 && byteRange[i] < byteRange[i - 2] + byteRange[i - 1])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean includes(long position)
+        {
+            for (int i = 0; i < byteRange.length; i += 2)
+            {
+                if (position >= byteRange[i] && position < byteRange[i] + byteRange[i + 1])
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long end()
+        {
+            return byteRange[byteRange.length - 2] + byteRange[byteRange.length - 1];
+        }
+    }
+
+    /**
+     * A digest shared by all member requests, which have included exactly the same bytes so far.
+     */
+    private static final class State
+    {
+        private final ASN1ObjectIdentifier algorithm;
+        private final MessageDigest md;
+        private final List<Request> members;
+
+        private State(ASN1ObjectIdentifier algorithm, MessageDigest md, List<Request> members)
+        {
+            this.algorithm = algorithm;
+            this.md = md;
+            this.members = new ArrayList<>(members);
+        }
+
+        private MessageDigest copy()
+        {
+            try
+            {
+                return (MessageDigest) md.clone();
+            }
+            catch (CloneNotSupportedException e)
+            {
+                // cloneability is checked before a state is created
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
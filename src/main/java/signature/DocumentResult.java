@@ -0,0 +1,85 @@
+package signature;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of verifying one document of a batch: either the signature results or the failure that prevented
+ * verification.
+ */
+public class DocumentResult
+{
+    private final Path document;
+    private final Map<String, SignatureResult> signatures;
+    private final Throwable failure;
+
+    public DocumentResult(Path document, Map<String, SignatureResult> signatures)
+    {
+        this(document, signatures, null);
+    }
+
+    public DocumentResult(Path document, Throwable failure)
+    {
+        this(document, Collections.<String, SignatureResult>emptyMap(), failure);
+    }
+
+    private DocumentResult(Path document, Map<String, SignatureResult> signatures, Throwable failure)
+    {
+        this.document = document;
+        this.signatures = signatures;
+        this.failure = failure;
+    }
+
+    public Path getDocument()
+    {
+        return document;
+    }
+
+    public Map<String, SignatureResult> getSignatures()
+    {
+        return signatures;
+    }
+
+    /**
+     * @return the exception thrown while verifying the document, or null
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * @return true if the document has signatures and all of them passed verification
+     */
+    public boolean isVerified()
+    {
+        if (failure != null || signatures.isEmpty())
+        {
+            return false;
+        }
+        for (SignatureResult signature : signatures.values())
+        {
+            if (!signature.isVerified())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffy = new StringBuilder(String.valueOf(document));
+        if (failure != null)
+        {
+            buffy.append(" -> ").append(failure);
+        }
+        else
+        {
+            buffy.append(" -> ").append(signatures.values());
+        }
+        return buffy.toString();
+    }
+}
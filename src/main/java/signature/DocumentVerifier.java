@@ -0,0 +1,20 @@
+package signature;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Verifies all signatures of a single document, e.g.
+ * {@code path -> signatureVerifier.extractSignatures(path.toFile())}.
+ * Implementations must be safe to call from several threads at once.
+ */
+@FunctionalInterface
+public interface DocumentVerifier
+{
+    /**
+     * @param document the PDF document
+     * @return the signature results keyed by signature name
+     * @throws Exception if the document could not be verified
+     */
+    Map<String, SignatureResult> verify(Path document) throws Exception;
+}
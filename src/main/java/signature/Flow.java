@@ -0,0 +1,69 @@
+package signature;
+
+/**
+ * The interfaces of <code>java.util.concurrent.Flow</code>, which this Java 8 project cannot use yet, with the same
+ * methods and contracts: see the <a href="https://github.com/reactive-streams/reactive-streams-jvm">Reactive
+ * Streams specification</a>. Once the project moves to Java 9 these interfaces can be replaced by the JDK's.
+ */
+public final class Flow
+{
+    private Flow()
+    {
+    }
+
+    /**
+     * Produces items for subscribers, as much as they requested.
+     */
+    @FunctionalInterface
+    public interface Publisher<T>
+    {
+        /**
+         * Adds a subscriber, which is passed its subscription with {@link Subscriber#onSubscribe(Subscription)}.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receives items, one signal at a time.
+     */
+    public interface Subscriber<T>
+    {
+        /**
+         * Called before any other signal of the subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item, never more often than requested.
+         */
+        void onNext(T item);
+
+        /**
+         * Called after a failure, which ends the subscription.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once all items have been delivered.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one of its subscribers.
+     */
+    public interface Subscription
+    {
+        /**
+         * Adds the given number of items to the demand of the subscriber.
+         *
+         * @param n the number of items, which must be positive; {@link Long#MAX_VALUE} for an unbounded demand
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items; some may still arrive.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,71 @@
+package signature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs independent tasks, e.g. the verifications of the signatures of one document, in parallel and collects their
+ * results in the order of the tasks.
+ *
+ * The calling thread takes part: it runs the first task itself and then every task the executor has not started by
+ * the time its result is due. So a busy or rejecting executor degrades to sequential execution rather than
+ * deadlocking, even if the caller itself is one of the executor's threads.
+ */
+public final class OrderedExecution
+{
+    private OrderedExecution()
+    {
+    }
+
+    /**
+     * @param executor the executor to offer the tasks to
+     * @param tasks the tasks, which must be thread-safe with respect to each other
+     * @return the results of the tasks, in the order of the tasks
+     * @throws ExecutionException with the exception of the first task, in task order, that failed; the tasks not
+     *                            started yet are cancelled then
+     * @throws InterruptedException if interrupted while waiting for a task
+     */
+    public static <T> List<T> invokeAll(Executor executor, List<? extends Callable<T>> tasks)
+            throws ExecutionException, InterruptedException
+    {
+        List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks)
+        {
+            futures.add(new FutureTask<>(task));
+        }
+        try
+        {
+            try
+            {
+                for (int i = 1; i < futures.size(); i++)
+                {
+                    executor.execute(futures.get(i));
+                }
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the tasks not accepted are left to the caller
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (FutureTask<T> future : futures)
+            {
+                // does nothing if a worker already started the task
+                future.run();
+                results.add(future.get());
+            }
+            return results;
+        }
+        finally
+        {
+            for (FutureTask<T> future : futures)
+            {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package signature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.util.ASN1Dump;
+
+/**
+ * The raw DER structures behind a signature result, e.g. the /Contents and the signed attributes. They are only
+ * captured when verifying; rendering them as ASN.1 dump, the expensive part, is left to whoever looks at a result.
+ */
+public final class SignatureDiagnostics
+{
+    private final List<Artifact> artifacts = new ArrayList<>(2);
+
+    /**
+     * @param description what the data is, e.g. "Signature contents"
+     * @param fileName the name to store the data as, or null
+     * @param data the DER encoded data, not copied
+     * @return these diagnostics
+     */
+    public SignatureDiagnostics add(String description, String fileName, byte[] data)
+    {
+        artifacts.add(new Artifact(description, fileName, data, null));
+        return this;
+    }
+
+    /**
+     * @param description what the data is, e.g. "Signature contents"
+     * @param fileName the name to store the data as, or null
+     * @param encoder encodes the data the first time it is asked for, e.g. {@code cms::getEncoded}
+     * @return these diagnostics
+     */
+    public SignatureDiagnostics add(String description, String fileName, Encoder encoder)
+    {
+        artifacts.add(new Artifact(description, fileName, null, encoder));
+        return this;
+    }
+
+    public List<Artifact> getArtifacts()
+    {
+        return Collections.unmodifiableList(artifacts);
+    }
+
+    /**
+     * @return the ASN.1 dumps of all artifacts
+     */
+    public String dump()
+    {
+        StringBuilder buffy = new StringBuilder();
+        for (Artifact artifact : artifacts)
+        {
+            buffy.append(artifact.dump());
+        }
+        return buffy.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return dump();
+    }
+
+    /**
+     * Encodes the data of an artifact on demand, so that a verified signature never pays for it.
+     */
+    public interface Encoder
+    {
+        byte[] encode() throws IOException;
+    }
+
+    /**
+     * One DER structure, with a description and optionally the name of a file to store it as.
+     */
+    public static final class Artifact
+    {
+        private final String description;
+        private final String fileName;
+        private byte[] data;
+        private Encoder encoder;
+
+        private Artifact(String description, String fileName, byte[] data, Encoder encoder)
+        {
+            this.description = description;
+            this.fileName = fileName;
+            this.data = data;
+            this.encoder = encoder;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        /**
+         * @return the name to store the data as, or null if it is not to be stored
+         */
+        public String getFileName()
+        {
+            return fileName;
+        }
+
+        /**
+         * @return the data, or null if there is none; not a copy
+         * @throws UncheckedIOException if the data could not be encoded
+         */
+        public synchronized byte[] getData()
+        {
+            if (encoder != null)
+            {
+                try
+                {
+                    data = encoder.encode();
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                encoder = null;
+            }
+            return data;
+        }
+
+        /**
+         * @return the description followed by the ASN.1 dump of the data
+         */
+        public String dump()
+        {
+            StringBuilder buffy = new StringBuilder();
+            byte[] data;
+            try
+            {
+                data = getData();
+            }
+            catch (UncheckedIOException e)
+            {
+                return buffy.append(String.format("    !!! %s: %s%n", description, e.getCause().getMessage())).toString();
+            }
+            if (data == null)
+            {
+                return buffy.append(String.format("    %s is null%n", description)).toString();
+            }
+            buffy.append(String.format("    ==================================================%n"));
+            buffy.append(String.format("    %s%n", description));
+            try (ASN1InputStream bIn = new ASN1InputStream(data))
+            {
+                Object obj;
+                while ((obj = bIn.readObject()) != null)
+                {
+                    buffy.append(ASN1Dump.dumpAsString(obj, false)).append(System.lineSeparator());
+                }
+            }
+            catch (IOException e)
+            {
+                // the padding of /Contents may look like an end-of-contents marker
+                if (!"unexpected end-of-contents marker".equals(e.getMessage()))
+                {
+                    buffy.append(String.format("    !!! %s%n", e.getMessage()));
+                }
+            }
+            return buffy.toString();
+        }
+    }
+}
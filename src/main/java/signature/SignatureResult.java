@@ -14,6 +14,7 @@ public class SignatureResult {
     private final X509Certificate certificate;
     private final boolean verified;
     private final String diagMessage;
+    private final SignatureDiagnostics diagnostics;
 
     public SignatureResult(X509Certificate certificate, boolean verified)
     {
@@ -35,11 +36,18 @@ public class SignatureResult {
     }
 
     public SignatureResult(String signatureFieldName, X509Certificate certificate, boolean verified, String diagMessage)
+    {
+        this(signatureFieldName, certificate, verified, diagMessage, null);
+    }
+
+    private SignatureResult(String signatureFieldName, X509Certificate certificate, boolean verified, String diagMessage,
+                            SignatureDiagnostics diagnostics)
     {
         this.signatureFieldName = signatureFieldName;
         this.certificate = certificate;
         this.verified = verified;
         this.diagMessage = diagMessage;
+        this.diagnostics = diagnostics;
     }
 
     public static SignatureResult failed(String diagMessage)
@@ -62,6 +70,22 @@ public class SignatureResult {
 
     public String getDiagMessage() { return diagMessage; }
 
+    /**
+     * @return the raw structures behind this result, rendered on demand, or null if none were captured
+     */
+    public SignatureDiagnostics getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * @return a copy of this result with the given diagnostics
+     */
+    public SignatureResult withDiagnostics(SignatureDiagnostics diagnostics)
+    {
+        return new SignatureResult(signatureFieldName, certificate, verified, diagMessage, diagnostics);
+    }
+
     @Override
     public String toString()
     {
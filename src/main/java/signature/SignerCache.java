@@ -0,0 +1,143 @@
+package signature;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.operator.OperatorCreationException;
+
+/**
+ * Caches the decoded certificate and the ready-to-use {@link SignerInformationVerifier} of each signing certificate,
+ * keyed by the SHA-256 hash of the encoded certificate. Documents from a signer seen before thus skip certificate
+ * decoding, public key parsing and verifier setup.
+ *
+ * The cache also serves the other certificates of a CMS structure, e.g. intermediates needed for chain validation;
+ * their verifiers are only set up if asked for. Both cached objects are immutable (the verifier creates a fresh
+ * content verifier per use), so a cached signer can be used by any number of threads at once.
+ */
+public class SignerCache
+{
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final VerificationContext context;
+    private final BoundedCache<Key, Signer> cache;
+
+    /**
+     * @param context creates the certificates and verifiers on a miss
+     * @param maximumSize the maximum number of signing certificates cached
+     */
+    public SignerCache(VerificationContext context, int maximumSize)
+    {
+        this.context = context;
+        this.cache = new BoundedCache<>(maximumSize);
+    }
+
+    /**
+     * @param certificate the signing certificate as found in the CMS structure
+     * @return the cached signer for the certificate
+     */
+    public Signer get(final X509CertificateHolder certificate) throws CertificateException
+    {
+        final Key key;
+        try
+        {
+            key = new Key(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            throw new CertificateException("Unable to hash certificate " + certificate.getSubject(), e);
+        }
+        Signer signer = cache.getIfPresent(key);
+        if (signer == null)
+        {
+            signer = cache.putIfAbsent(key, new Signer(context, context.getCertificate(certificate)));
+        }
+        return signer;
+    }
+
+    public int size()
+    {
+        return cache.size();
+    }
+
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount()
+    {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SignerCache" + cache.toString().substring("BoundedCache".length());
+    }
+
+    /**
+     * A decoded signing certificate with its verifier.
+     */
+    public static final class Signer
+    {
+        private final VerificationContext context;
+        private final X509Certificate certificate;
+        private volatile SignerInformationVerifier verifier;
+
+        private Signer(VerificationContext context, X509Certificate certificate)
+        {
+            this.context = context;
+            this.certificate = certificate;
+        }
+
+        public X509Certificate getCertificate()
+        {
+            return certificate;
+        }
+
+        public SignerInformationVerifier getVerifier() throws OperatorCreationException
+        {
+            SignerInformationVerifier result = verifier;
+            if (result == null)
+            {
+                // racing threads may both create one, which is harmless
+                verifier = result = context.createVerifier(certificate);
+            }
+            return result;
+        }
+    }
+
+    private static final class Key
+    {
+        private final byte[] hash;
+
+        private Key(byte[] hash)
+        {
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Key && Arrays.equals(hash, ((Key) other).hash);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            // the hash is already uniformly distributed
+            return (hash[0] & 0xff) << 24 | (hash[1] & 0xff) << 16 | (hash[2] & 0xff) << 8 | hash[3] & 0xff;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package signature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+import signature.io.ChannelByteSource;
+
+/**
+ * A document received from a stream, e.g. an HTTP body, spooled into memory up to a threshold and into a temporary
+ * file beyond it, which is deleted on {@link #close()}.
+ *
+ * The likely signed byte ranges are digested while the document is received, so that verification need not read it
+ * again: every hex string following /Contents may be the contents of a signature, its /ByteRange then spanning the
+ * document from the start to the hex string and from the hex string to the end of a revision. A revision ends
+ * after a %%EOF marker and its end-of-line or at the end of the stream. The digests of the byte ranges of all these
+ * candidates, up to {@link #MAX_CANDIDATES} and for the given algorithms, are offered to the {@link DigestPlanner},
+ * which only digests the byte ranges and algorithms guessed wrong.
+ */
+public final class SpooledDocument implements ByteSource, DigestPlanner.Precomputed, Closeable
+{
+    /**
+     * The digest algorithms of by far most signatures.
+     */
+    public static final List<ASN1ObjectIdentifier> DEFAULT_ALGORITHMS = Collections.unmodifiableList(
+            Arrays.asList(NISTObjectIdentifiers.id_sha256, OIWObjectIdentifiers.idSHA1));
+
+    /**
+     * The number of hex strings after /Contents digested as candidate signature contents, each costing one more
+     * pass of every algorithm over the rest of the document.
+     */
+    public static final int MAX_CANDIDATES = 32;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] CONTENTS = "/Contents".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EOF = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteSource source;
+    private final FileChannel channel;
+    private final Map<Range, Map<ASN1ObjectIdentifier, byte[]>> digests;
+
+    private SpooledDocument(ByteSource source, FileChannel channel, Map<Range, Map<ASN1ObjectIdentifier, byte[]>> digests)
+    {
+        this.source = source;
+        this.channel = channel;
+        this.digests = digests;
+    }
+
+    /**
+     * Reads the stream to its end, without closing it.
+     *
+     * @param in the document
+     * @param memoryThreshold the size up to which the document is held in memory
+     * @param algorithms the digest algorithms to digest the candidate byte ranges with
+     * @param provider the provider of the digests, or null for the installed providers
+     * @return the document, which must be closed
+     * @throws IOException if the stream or the temporary file failed
+     * @throws NoSuchAlgorithmException if one of the algorithms is not available
+     */
+    public static SpooledDocument spool(InputStream in, int memoryThreshold, Collection<ASN1ObjectIdentifier> algorithms,
+                                        Provider provider) throws IOException, NoSuchAlgorithmException
+    {
+        Scanner scanner = new Scanner(algorithms, provider);
+        byte[] memory = new byte[Math.min(memoryThreshold, CHUNK_SIZE)];
+        int size = 0;
+        FileChannel file = null;
+        try
+        {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) >= 0)
+            {
+                scanner.scan(chunk, read);
+                if (file == null && size + read <= memoryThreshold)
+                {
+                    if (size + read > memory.length)
+                    {
+                        memory = Arrays.copyOf(memory, (int) Math.min(memoryThreshold, Math.max(2L * memory.length, size + read)));
+                    }
+                    System.arraycopy(chunk, 0, memory, size, read);
+                    size += read;
+                    continue;
+                }
+                if (file == null)
+                {
+                    Path path = Files.createTempFile("spool", ".pdf");
+                    file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+                    write(file, memory, size);
+                    memory = null;
+                }
+                write(file, chunk, read);
+            }
+            scanner.finish();
+            ByteSource source = file == null ? BufferByteSource.wrap(memory, size) : new ChannelByteSource(file);
+            return new SpooledDocument(source, file, scanner.digests);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if (file != null)
+            {
+                file.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void write(FileChannel file, byte[] data, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining())
+        {
+            file.write(buffer);
+        }
+    }
+
+    /**
+     * @return whether the document overflowed into a temporary file
+     */
+    public boolean isSpooledToFile()
+    {
+        return channel != null;
+    }
+
+    @Override
+    public long size() throws IOException
+    {
+        return source.size();
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst) throws IOException
+    {
+        return source.read(position, dst);
+    }
+
+    @Override
+    public byte[] getDigest(long[] byteRange, ASN1ObjectIdentifier algorithm)
+    {
+        if (byteRange.length != 4 || byteRange[0] != 0)
+        {
+            return null;
+        }
+        Map<ASN1ObjectIdentifier, byte[]> candidate = digests.get(new Range(byteRange[1], byteRange[2], byteRange[2] + byteRange[3]));
+        return candidate == null ? null : candidate.get(algorithm);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Follows the bytes of the document, digesting the prefix and every candidate byte range as it goes.
+     */
+    private static final class Scanner
+    {
+        private final List<ASN1ObjectIdentifier> algorithms;
+        private final MessageDigest[] prefix;
+        private final List<Candidate> candidates = new ArrayList<>();
+        private final Map<Range, Map<ASN1ObjectIdentifier, byte[]>> digests = new HashMap<>();
+
+        private long position;
+        private long hexStart = -1;
+        private MessageDigest[] beforeHex;
+        private int contentsMatched;
+        private boolean afterContents;
+        private int eofMatched;
+        private int eolAfterEof = -1;
+
+        // the bytes of the current chunk not yet digested start here
+        private int digested;
+
+        private Scanner(Collection<ASN1ObjectIdentifier> requested, Provider provider) throws NoSuchAlgorithmException
+        {
+            algorithms = new ArrayList<>();
+            List<MessageDigest> digests = new ArrayList<>();
+            for (ASN1ObjectIdentifier algorithm : requested)
+            {
+                MessageDigest md = DigestPlanner.createDigest(provider, algorithm);
+                // a digest that cannot be copied cannot be forked for the candidates, the planner computes it then
+                if (DigestPlanner.isCloneable(md))
+                {
+                    algorithms.add(algorithm);
+                    digests.add(md);
+                }
+            }
+            prefix = digests.toArray(new MessageDigest[0]);
+        }
+
+        private void scan(byte[] chunk, int length)
+        {
+            long chunkStart = position;
+            digested = 0;
+            for (int i = 0; i < length; i++, position++)
+            {
+                byte b = chunk[i];
+                if (eolAfterEof >= 0)
+                {
+                    if ((b == '\r' || b == '\n') && eolAfterEof < 2)
+                    {
+                        eolAfterEof++;
+                        // the revision may end after the end-of-line, too
+                        update(chunk, (int) (position + 1 - chunkStart));
+                        snapshot(position + 1);
+                    }
+                    else
+                    {
+                        eolAfterEof = -1;
+                    }
+                }
+                if (hexStart >= 0)
+                {
+                    if (b == '>')
+                    {
+                        update(chunk, (int) (position + 1 - chunkStart));
+                        if (candidates.size() < MAX_CANDIDATES)
+                        {
+                            candidates.add(new Candidate(hexStart, position + 1, beforeHex));
+                        }
+                        hexStart = -1;
+                        beforeHex = null;
+                    }
+                    else if (b == '<' && position == hexStart + 1)
+                    {
+                        // a dictionary, not a hex string
+                        hexStart = -1;
+                        beforeHex = null;
+                    }
+                    else if (!isHexDigit(b) && !isWhitespace(b))
+                    {
+                        hexStart = -1;
+                        beforeHex = null;
+                    }
+                    continue;
+                }
+                if (afterContents)
+                {
+                    if (b == '<')
+                    {
+                        afterContents = false;
+                        update(chunk, (int) (position - chunkStart));
+                        hexStart = position;
+                        beforeHex = copy(prefix);
+                        continue;
+                    }
+                    afterContents = isWhitespace(b);
+                }
+                contentsMatched = b == CONTENTS[contentsMatched] ? contentsMatched + 1 : (b == CONTENTS[0] ? 1 : 0);
+                if (contentsMatched == CONTENTS.length)
+                {
+                    contentsMatched = 0;
+                    afterContents = true;
+                }
+                // a run of % keeps the last two as the start of %%EOF
+                eofMatched = b == EOF[eofMatched] ? eofMatched + 1 : (b == '%' ? Math.min(eofMatched, 2) : 0);
+                if (eofMatched == EOF.length)
+                {
+                    eofMatched = 0;
+                    update(chunk, (int) (position + 1 - chunkStart));
+                    snapshot(position + 1);
+                    eolAfterEof = 0;
+                }
+            }
+            update(chunk, length);
+        }
+
+        private void finish()
+        {
+            snapshot(position);
+        }
+
+        /**
+         * Digests the bytes of the current chunk up to the given offset.
+         */
+        private void update(byte[] chunk, int end)
+        {
+            if (end <= digested)
+            {
+                return;
+            }
+            for (MessageDigest md : prefix)
+            {
+                md.update(chunk, digested, end - digested);
+            }
+            for (Candidate candidate : candidates)
+            {
+                for (MessageDigest md : candidate.digests)
+                {
+                    md.update(chunk, digested, end - digested);
+                }
+            }
+            digested = end;
+        }
+
+        /**
+         * Records the digests of all candidates whose revision may end at the given position.
+         */
+        private void snapshot(long end)
+        {
+            for (Candidate candidate : candidates)
+            {
+                Range range = new Range(candidate.hexStart, candidate.hexEnd, end);
+                if (digests.containsKey(range))
+                {
+                    continue;
+                }
+                Map<ASN1ObjectIdentifier, byte[]> values = new HashMap<>();
+                MessageDigest[] copies = copy(candidate.digests);
+                for (int i = 0; i < copies.length; i++)
+                {
+                    values.put(algorithms.get(i), copies[i].digest());
+                }
+                digests.put(range, values);
+            }
+        }
+
+        private static MessageDigest[] copy(MessageDigest[] digests)
+        {
+            MessageDigest[] copies = new MessageDigest[digests.length];
+            try
+            {
+                for (int i = 0; i < digests.length; i++)
+                {
+                    copies[i] = (MessageDigest) digests[i].clone();
+                }
+            }
+            catch (CloneNotSupportedException e)
+            {
+                // the constructor only keeps cloneable digests
+                throw new IllegalStateException(e);
+            }
+            return copies;
+        }
+
+        private static boolean isHexDigit(byte b)
+        {
+            return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F');
+        }
+
+        private static boolean isWhitespace(byte b)
+        {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+        }
+    }
+
+    /**
+     * A hex string that may be the contents of a signature, and the digests of the document before and after it.
+     */
+    private static final class Candidate
+    {
+        private final long hexStart;
+        private final long hexEnd;
+        private final MessageDigest[] digests;
+
+        private Candidate(long hexStart, long hexEnd, MessageDigest[] digests)
+        {
+            this.hexStart = hexStart;
+            this.hexEnd = hexEnd;
+            this.digests = digests;
+        }
+    }
+
+    /**
+     * The /ByteRange [0 hexStart hexEnd end-hexEnd] in a form fit for a key.
+     */
+    private static final class Range
+    {
+        private final long hexStart;
+        private final long hexEnd;
+        private final long end;
+
+        private Range(long hexStart, long hexEnd, long end)
+        {
+            this.hexStart = hexStart;
+            this.hexEnd = hexEnd;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Range))
+            {
+                return false;
+            }
+            Range other = (Range) o;
+            return hexStart == other.hexStart && hexEnd == other.hexEnd && end == other.end;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(hexStart) * 31 * 31 + Long.hashCode(hexEnd) * 31 + Long.hashCode(end);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package signature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.util.Store;
+
+/**
+ * Verifies the RFC 3161 signature timestamp token a signer may carry as {@code id-aa-signatureTimeStampToken}
+ * unsigned attribute (RFC 3161, appendix A), as added by e.g. {@code CreateSignatureBase.signTimeStamp}.
+ *
+ * The token's message imprint must be the digest of the signer's signature value, the token must be signed by a
+ * time stamping certificate valid at the time stamped, and, if a {@link ChainValidator} is given, that certificate
+ * must chain to a trust anchor. The few TSA certificates seen in practice are decoded once, through the
+ * {@link SignerCache} of the context, and their validated chains are cached by the chain validator, so that a
+ * timestamp costs a digest and a signature check.
+ */
+public class TimeStampVerifier
+{
+    private final VerificationContext context;
+
+    public TimeStampVerifier(VerificationContext context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * @param signer the signer whose timestamp to verify
+     * @param chainValidator validates the TSA certificate chain, or null to only check the token itself
+     * @return the verified time of the timestamp, or null if the signer carries no timestamp
+     * @throws TSPException if the timestamp is invalid
+     */
+    public Date verify(SignerInformation signer, ChainValidator chainValidator) throws TSPException
+    {
+        AttributeTable unsignedAttributes = signer.getUnsignedAttributes();
+        Attribute attribute = unsignedAttributes == null ? null : unsignedAttributes.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken);
+        if (attribute == null)
+        {
+            return null;
+        }
+        try
+        {
+            TimeStampToken token = new TimeStampToken(new CMSSignedData(attribute.getAttrValues().getObjectAt(0).toASN1Primitive().getEncoded()));
+
+            DigestCalculator digest = context.getDigestCalculatorProvider().get(token.getTimeStampInfo().getHashAlgorithm());
+            try (OutputStream out = digest.getOutputStream())
+            {
+                out.write(signer.getSignature());
+            }
+            if (!Arrays.equals(digest.getDigest(), token.getTimeStampInfo().getMessageImprintDigest()))
+            {
+                throw new TSPException("Timestamp message imprint does not match the signature value");
+            }
+            return validate(token, chainValidator);
+        }
+        catch (IOException | CMSException | OperatorCreationException e)
+        {
+            throw new TSPException("Invalid timestamp token: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verifies a document timestamp (subfilter ETSI.RFC3161), whose message imprint is the digest of the signed
+     * byte range rather than of a signature value.
+     *
+     * @param token the /Contents of the document timestamp
+     * @param digest the digest of the byte range, computed with the hash algorithm of the token's message imprint
+     * @param chainValidator validates the TSA certificate chain, or null to only check the token itself
+     * @return the verified time of the timestamp
+     * @throws TSPException if the timestamp is invalid
+     */
+    public Date verify(TimeStampToken token, byte[] digest, ChainValidator chainValidator) throws TSPException
+    {
+        if (!Arrays.equals(digest, token.getTimeStampInfo().getMessageImprintDigest()))
+        {
+            throw new TSPException("Timestamp message imprint does not match the signed byte range");
+        }
+        return validate(token, chainValidator);
+    }
+
+    /**
+     * @return the decoded certificate and verifier of the TSA that signed the token, cached across timestamps
+     * @throws TSPException if the token does not contain the TSA certificate
+     */
+    public SignerCache.Signer getTimeStampAuthority(TimeStampToken token) throws TSPException
+    {
+        @SuppressWarnings("unchecked")
+        Collection<X509CertificateHolder> matches = token.getCertificates().getMatches(token.getSID());
+        if (matches.isEmpty())
+        {
+            throw new TSPException("Timestamp token does not contain the TSA certificate");
+        }
+        try
+        {
+            return context.getSigner(matches.iterator().next());
+        }
+        catch (CertificateException e)
+        {
+            throw new TSPException("Invalid TSA certificate: " + e.getMessage(), e);
+        }
+    }
+
+    private Date validate(TimeStampToken token, ChainValidator chainValidator) throws TSPException
+    {
+        SignerCache.Signer tsa = getTimeStampAuthority(token);
+        try
+        {
+            // checks the signature, the timeStamping extended key usage and the validity at the time stamped
+            token.validate(tsa.getVerifier());
+
+            Date time = token.getTimeStampInfo().getGenTime();
+            if (chainValidator != null)
+            {
+                @SuppressWarnings("unchecked")
+                Store<X509CertificateHolder> certificates = token.getCertificates();
+                List<X509Certificate> chain = context.getCertificates(certificates);
+                chainValidator.validate(tsa.getCertificate(), chain, time);
+            }
+            return time;
+        }
+        catch (OperatorCreationException | CertificateException e)
+        {
+            throw new TSPException("Invalid timestamp token: " + e.getMessage(), e);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new TSPException("TSA certificate chain validation failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package signature;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.Provider;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.DefaultCMSSignatureAlgorithmNameGenerator;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Store;
+
+/**
+ * The cryptographic machinery needed to verify signatures, set up once and shared by all verifications.
+ *
+ * Creating a {@link org.bouncycastle.jce.provider.BouncyCastleProvider} registers hundreds of algorithms, and
+ * {@link org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder} and
+ * {@link org.bouncycastle.cert.jcajce.JcaX509CertificateConverter} set up new helpers (and certificate factories)
+ * on every use. A context does all of that once. It is thread-safe: the BouncyCastle builders it holds are
+ * stateless once configured, and certificate factories, which are not thread-safe, are kept per thread.
+ */
+public class VerificationContext
+{
+    private final Provider provider;
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final JcaContentVerifierProviderBuilder contentVerifierProviderBuilder;
+    private final DefaultCMSSignatureAlgorithmNameGenerator signatureAlgorithmNameGenerator = new DefaultCMSSignatureAlgorithmNameGenerator();
+    private final DefaultSignatureAlgorithmIdentifierFinder signatureAlgorithmIdentifierFinder = new DefaultSignatureAlgorithmIdentifierFinder();
+    private final ThreadLocal<CertificateFactory> certificateFactory;
+    private final SignerCache signerCache;
+
+    /**
+     * Uses the installed providers.
+     */
+    public VerificationContext()
+    {
+        this(null);
+    }
+
+    /**
+     * @param provider the provider of all cryptographic services, or null for the installed providers
+     */
+    public VerificationContext(Provider provider)
+    {
+        this(provider, SignerCache.DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param provider the provider of all cryptographic services, or null for the installed providers
+     * @param signerCacheSize the number of signing certificates whose decoded form and verifier are cached
+     */
+    public VerificationContext(final Provider provider, int signerCacheSize)
+    {
+        this.provider = provider;
+        JcaDigestCalculatorProviderBuilder digestCalculatorProviderBuilder = new JcaDigestCalculatorProviderBuilder();
+        this.contentVerifierProviderBuilder = new JcaContentVerifierProviderBuilder();
+        if (provider != null)
+        {
+            digestCalculatorProviderBuilder.setProvider(provider);
+            contentVerifierProviderBuilder.setProvider(provider);
+        }
+        try
+        {
+            this.digestCalculatorProvider = digestCalculatorProviderBuilder.build();
+        }
+        catch (OperatorCreationException e)
+        {
+            // the JCA builder does not actually create anything up front
+            throw new IllegalStateException(e);
+        }
+        this.certificateFactory = new ThreadLocal<CertificateFactory>()
+        {
+            @Override
+            protected CertificateFactory initialValue()
+            {
+                try
+                {
+                    return provider == null ? CertificateFactory.getInstance("X.509") : CertificateFactory.getInstance("X.509", provider);
+                }
+                catch (CertificateException e)
+                {
+                    throw new IllegalStateException("X.509 certificate factory not available", e);
+                }
+            }
+        };
+        this.signerCache = new SignerCache(this, signerCacheSize);
+    }
+
+    /**
+     * @return the provider, or null if the installed providers are used
+     */
+    public Provider getProvider()
+    {
+        return provider;
+    }
+
+    public DigestCalculatorProvider getDigestCalculatorProvider()
+    {
+        return digestCalculatorProvider;
+    }
+
+    /**
+     * @return the decoded certificate and verifier of the given signing certificate, cached across signatures
+     */
+    public SignerCache.Signer getSigner(X509CertificateHolder certificate) throws CertificateException
+    {
+        return signerCache.get(certificate);
+    }
+
+    /**
+     * @return all certificates of the given CMS certificate store, decoded through the signer cache
+     */
+    public List<X509Certificate> getCertificates(Store<X509CertificateHolder> certificates) throws CertificateException
+    {
+        List<X509Certificate> result = new ArrayList<>();
+        for (X509CertificateHolder certificate : certificates.getMatches(null))
+        {
+            result.add(signerCache.get(certificate).getCertificate());
+        }
+        return result;
+    }
+
+    public SignerCache getSignerCache()
+    {
+        return signerCache;
+    }
+
+    /**
+     * Equivalent to {@code new JcaSimpleSignerInfoVerifierBuilder().setProvider(provider).build(certificate)}.
+     */
+    public SignerInformationVerifier createVerifier(X509Certificate certificate) throws OperatorCreationException
+    {
+        return new SignerInformationVerifier(signatureAlgorithmNameGenerator, signatureAlgorithmIdentifierFinder,
+                contentVerifierProviderBuilder.build(certificate), digestCalculatorProvider);
+    }
+
+    /**
+     * Equivalent to {@code new JcaSimpleSignerInfoVerifierBuilder().setProvider(provider).build(certificate)}.
+     */
+    public SignerInformationVerifier createVerifier(X509CertificateHolder certificate) throws OperatorCreationException, CertificateException
+    {
+        return new SignerInformationVerifier(signatureAlgorithmNameGenerator, signatureAlgorithmIdentifierFinder,
+                contentVerifierProviderBuilder.build(certificate), digestCalculatorProvider);
+    }
+
+    /**
+     * @return a provider of verifiers for signatures made with the key of the given certificate, e.g. on OCSP
+     * responses or certificates
+     */
+    public ContentVerifierProvider createContentVerifierProvider(X509CertificateHolder certificate)
+            throws OperatorCreationException, CertificateException
+    {
+        return contentVerifierProviderBuilder.build(certificate);
+    }
+
+    /**
+     * Equivalent to {@code new JcaX509CertificateConverter().setProvider(provider).getCertificate(certificate)}.
+     */
+    public X509Certificate getCertificate(X509CertificateHolder certificate) throws CertificateException
+    {
+        try
+        {
+            return (X509Certificate) certificateFactory.get().generateCertificate(new ByteArrayInputStream(certificate.getEncoded()));
+        }
+        catch (IOException e)
+        {
+            throw new CertificateException("Unable to encode certificate", e);
+        }
+    }
+
+    /**
+     * @param data DER encoded certificates, or a PKCS#7 structure holding them
+     */
+    public Collection<? extends Certificate> getCertificates(byte[] data) throws CertificateException
+    {
+        return certificateFactory.get().generateCertificates(new ByteArrayInputStream(data));
+    }
+}
@@ -0,0 +1,93 @@
+package signature;
+
+import java.security.cert.Certificate;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Receives the events of verifying the signatures of a document, e.g. to log or to count them. Every method does
+ * nothing by default, so a listener only implements the events it is interested in; verifiers report to
+ * {@link #NONE} unless a listener is set, which costs an empty call per event.
+ *
+ * Events are reported on the verifying thread. A listener set on a verifier that verifies several documents at once,
+ * e.g. in a {@link BatchVerifier}, must be thread-safe.
+ *
+ * Signatures are identified by their /Name, which need not be present nor unique; the index of
+ * {@link #signatureFound} is.
+ */
+public interface VerificationListener
+{
+    /**
+     * Ignores all events.
+     */
+    VerificationListener NONE = new VerificationListener()
+    {
+    };
+
+    /**
+     * A signature dictionary was located.
+     *
+     * @param index the position of the signature in the document, starting at 1
+     * @param name the /Name of the signer, or null
+     * @param subFilter the /SubFilter, or null
+     * @param signDate the signing time claimed by /M, or null
+     */
+    default void signatureFound(int index, String name, String subFilter, Calendar signDate)
+    {
+    }
+
+    /**
+     * The certificates that come with a signature were decoded.
+     */
+    default void certificatesFound(String name, Collection<? extends Certificate> certificates)
+    {
+    }
+
+    /**
+     * The signature value was checked against the digest of the signed byte range.
+     *
+     * @param cause why the check failed, or null
+     */
+    default void signatureChecked(String name, boolean valid, Throwable cause)
+    {
+    }
+
+    /**
+     * The digest encapsulated in an adbe.pkcs7.sha1 signature was compared to the digest of the signed byte range.
+     *
+     * @param algorithm the digest algorithm, e.g. SHA1
+     */
+    default void digestChecked(String name, String algorithm, boolean matches)
+    {
+    }
+
+    /**
+     * A timestamp was verified.
+     *
+     * @param time the time stamped
+     * @param documentTimeStamp true for an ETSI.RFC3161 document timestamp, false for the signature timestamp of
+     *                          a signer
+     */
+    default void timeStampVerified(String name, Date time, boolean documentTimeStamp)
+    {
+    }
+
+    /**
+     * The certificate chain and revocation checks ran.
+     *
+     * @param failure why they failed, or null if they passed
+     */
+    default void certificatesChecked(String name, String failure)
+    {
+    }
+
+    /**
+     * Verification of a signature is complete.
+     *
+     * @param result the result, with the cause of a failure as diagnostic message
+     */
+    default void signatureVerified(String name, SignatureResult result)
+    {
+    }
+}
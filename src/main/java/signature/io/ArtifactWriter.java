@@ -0,0 +1,178 @@
+package signature.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores diagnostic artifacts, e.g. the /Contents of a signature that failed verification, in a folder on a
+ * background thread, so that verification does not wait for the disk.
+ *
+ * Artifacts are best effort: an artifact is dropped rather than delaying the caller if the queue is full, if it
+ * would exceed the total size cap or if writing it fails. Artifacts still queued are written by {@link #close()}.
+ */
+public final class ArtifactWriter implements Closeable
+{
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final Artifact END = new Artifact(null, null);
+
+    private final Path folder;
+    private final long maxBytes;
+    private final boolean compress;
+    private final BlockingQueue<Artifact> queue;
+    private final Thread thread;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * A writer with {@link #DEFAULT_QUEUE_CAPACITY} and {@link #DEFAULT_MAX_BYTES} that does not compress.
+     */
+    public ArtifactWriter(Path folder)
+    {
+        this(folder, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BYTES, false);
+    }
+
+    /**
+     * @param folder the folder to store the artifacts in
+     * @param queueCapacity the number of artifacts that may wait to be written
+     * @param maxBytes the total size of all artifacts, uncompressed, beyond which artifacts are dropped
+     * @param compress whether to gzip the artifacts, which get the extension .gz then
+     */
+    public ArtifactWriter(Path folder, int queueCapacity, long maxBytes, boolean compress)
+    {
+        this.folder = folder;
+        this.maxBytes = maxBytes;
+        this.compress = compress;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::work, "artifact-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues an artifact to be written, without waiting.
+     *
+     * @param fileName the name of the file in the folder
+     * @param data the data, which must not be modified afterwards
+     * @return whether the artifact was queued, false if it was dropped
+     */
+    public boolean write(String fileName, byte[] data)
+    {
+        if (closed || reserved.addAndGet(data.length) > maxBytes)
+        {
+            return drop(data);
+        }
+        if (!queue.offer(new Artifact(fileName, data)))
+        {
+            return drop(data);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of artifacts written so far
+     */
+    public long getWritten()
+    {
+        return written.get();
+    }
+
+    /**
+     * @return the number of artifacts dropped so far, because the queue was full, the size cap was reached, the
+     * writer was closed or writing failed
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the artifacts still queued and stops the writer thread.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            queue.put(END);
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the remaining artifacts", e);
+        }
+    }
+
+    private boolean drop(byte[] data)
+    {
+        // the size cap only counts artifacts that are actually written
+        reserved.addAndGet(-data.length);
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void work()
+    {
+        try
+        {
+            while (true)
+            {
+                Artifact artifact = queue.take();
+                if (artifact == END)
+                {
+                    return;
+                }
+                try
+                {
+                    store(artifact);
+                    written.incrementAndGet();
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // the process is going down
+        }
+    }
+
+    private void store(Artifact artifact) throws IOException
+    {
+        Path file = folder.resolve(compress ? artifact.fileName + ".gz" : artifact.fileName);
+        try (OutputStream out = compress ? new GZIPOutputStream(Files.newOutputStream(file)) : Files.newOutputStream(file))
+        {
+            out.write(artifact.data);
+        }
+    }
+
+    private static final class Artifact
+    {
+        private final String fileName;
+        private final byte[] data;
+
+        private Artifact(String fileName, byte[] data)
+        {
+            this.fileName = fileName;
+            this.data = data;
+        }
+    }
+}
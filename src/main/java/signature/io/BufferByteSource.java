@@ -0,0 +1,80 @@
+package signature.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ByteSource} over in-memory or memory-mapped buffers. Files are mapped in chunks so that documents
+ * beyond the 2 GB limit of a single {@link java.nio.MappedByteBuffer} can be mapped too.
+ */
+public class BufferByteSource implements ByteSource
+{
+    private static final long MAP_CHUNK_SIZE = 1L << 30;
+
+    private final ByteBuffer[] chunks;
+    private final long chunkSize;
+    private final long size;
+
+    private BufferByteSource(ByteBuffer[] chunks, long chunkSize, long size)
+    {
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.size = size;
+    }
+
+    /**
+     * Wraps a document held in memory, the array is not copied.
+     */
+    public static BufferByteSource wrap(byte[] document)
+    {
+        return new BufferByteSource(new ByteBuffer[] { ByteBuffer.wrap(document) }, Math.max(1, document.length), document.length);
+    }
+
+    /**
+     * Wraps a document held in the first bytes of an array, which is not copied.
+     */
+    public static BufferByteSource wrap(byte[] document, int length)
+    {
+        return new BufferByteSource(new ByteBuffer[] { ByteBuffer.wrap(document, 0, length) }, Math.max(1, length), length);
+    }
+
+    /**
+     * Maps the whole file read-only. The mapping stays valid after the channel is closed.
+     */
+    public static BufferByteSource map(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        ByteBuffer[] chunks = new ByteBuffer[(int) Math.max(1, (size + MAP_CHUNK_SIZE - 1) / MAP_CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++)
+        {
+            long position = i * MAP_CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position));
+        }
+        return new BufferByteSource(chunks, MAP_CHUNK_SIZE, size);
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst)
+    {
+        if (position >= size)
+        {
+            return -1;
+        }
+        ByteBuffer chunk = chunks[(int) (position / chunkSize)];
+        int offset = (int) (position % chunkSize);
+        int length = Math.min(dst.remaining(), chunk.limit() - offset);
+        // duplicate() so concurrent readers never share a position
+        ByteBuffer slice = chunk.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        dst.put(slice);
+        return length;
+    }
+}
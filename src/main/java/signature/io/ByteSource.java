@@ -0,0 +1,27 @@
+package signature.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the bytes of a PDF document using positional reads, so that a single source can be shared
+ * between the signatures of a document (and between threads) without any seek state.
+ */
+public interface ByteSource
+{
+    /**
+     * @return the size of the document in bytes
+     * @throws IOException if the size could not be determined
+     */
+    long size() throws IOException;
+
+    /**
+     * Reads bytes starting at the given position into the remaining space of the buffer.
+     *
+     * @param position the offset in the document to read from
+     * @param dst the buffer to fill
+     * @return the number of bytes read, possibly fewer than requested, or -1 if position is at or beyond the end
+     * @throws IOException if the document could not be read
+     */
+    int read(long position, ByteBuffer dst) throws IOException;
+}
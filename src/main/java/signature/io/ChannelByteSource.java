@@ -0,0 +1,31 @@
+package signature.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ByteSource} reading through a {@link FileChannel}, which supports concurrent positional reads.
+ * The channel is owned (and closed) by the caller.
+ */
+public class ChannelByteSource implements ByteSource
+{
+    private final FileChannel channel;
+
+    public ChannelByteSource(FileChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    @Override
+    public long size() throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public int read(long position, ByteBuffer dst) throws IOException
+    {
+        return channel.read(dst, position);
+    }
+}
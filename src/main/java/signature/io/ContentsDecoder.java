@@ -0,0 +1,235 @@
+package signature.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes the hex string /Contents of a signature dictionary directly from the document, i.e. the gap between the
+ * first and the second segment of its /ByteRange, without parsing the document or copying it into memory.
+ *
+ * /Contents placeholders are sized generously, the CMS structure is followed by zero padding that is often larger
+ * than the structure itself. Decoding stops at the length the DER header of the structure declares, so neither the
+ * padding is read nor BouncyCastle gets to parse it. {@link #decode(ByteSource, long, long)} decodes into buffers
+ * kept per thread, so that verifying a signature does not allocate for its /Contents at all.
+ */
+public final class ContentsDecoder
+{
+    /**
+     * Per-thread buffers are not kept beyond this size, an oversized /Contents gets buffers of its own.
+     */
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    private static final int HEX_CHUNK_SIZE = 8192;
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>()
+    {
+        @Override
+        protected Buffers initialValue()
+        {
+            return new Buffers();
+        }
+    };
+
+    private ContentsDecoder()
+    {
+    }
+
+    /**
+     * Equivalent to {@link org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature#getContents(byte[])},
+     * without the padding.
+     *
+     * @param source the whole PDF document
+     * @param byteRange the /ByteRange of the signature
+     * @return the decoded /Contents, a new array
+     * @throws IOException if the gap does not hold a valid hex string
+     */
+    public static byte[] decode(ByteSource source, long[] byteRange) throws IOException
+    {
+        if (byteRange.length < 4)
+        {
+            throw new IOException("/ByteRange does not exclude a /Contents gap");
+        }
+        long start = byteRange[0] + byteRange[1];
+        ByteBuffer decoded = decode(source, start, byteRange[2] - start);
+        return Arrays.copyOfRange(decoded.array(), decoded.arrayOffset() + decoded.position(),
+                decoded.arrayOffset() + decoded.limit());
+    }
+
+    /**
+     * Decodes the hex string at the given position into a buffer of the calling thread.
+     *
+     * @param source the whole PDF document
+     * @param offset the position of the hex string, optionally including its angle brackets
+     * @param length the length of the hex string
+     * @return a view of the decoded bytes up to the end of the DER structure they start with; it is only valid
+     * until the calling thread decodes the next /Contents, so it must be parsed (or copied) right away
+     * @throws IOException if the hex string is invalid
+     */
+    public static ByteBuffer decode(ByteSource source, long offset, long length) throws IOException
+    {
+        long end = Math.min(offset + length, source.size());
+        if (end - offset > 2L * Integer.MAX_VALUE)
+        {
+            throw new IOException("/Contents of " + (end - offset) + " bytes is too large");
+        }
+        Buffers buffers = BUFFERS.get();
+        byte[] decoded = buffers.decoded((int) Math.max(0, (end - offset + 1) / 2));
+        ByteBuffer hex = buffers.hex;
+
+        int count = 0;
+        int high = -1;
+        long expected = -1;
+        long position = offset;
+        decoding:
+        while (position < end)
+        {
+            hex.clear();
+            if (end - position < hex.capacity())
+            {
+                hex.limit((int) (end - position));
+            }
+            int read = source.read(position, hex);
+            if (read <= 0)
+            {
+                break;
+            }
+            for (int i = 0; i < read; i++)
+            {
+                byte b = hex.get(i);
+                long at = position + i;
+                if (b == '<' && at == offset || b == '>' && at == end - 1 || isWhitespace(b))
+                {
+                    continue;
+                }
+                int digit = Character.digit(b, 16);
+                if (digit < 0)
+                {
+                    throw new IOException("Invalid hex string in /Contents at offset " + at);
+                }
+                if (high < 0)
+                {
+                    high = digit;
+                    continue;
+                }
+                decoded[count++] = (byte) (high << 4 | digit);
+                high = -1;
+                if (expected == -1)
+                {
+                    expected = derLength(decoded, count);
+                }
+                if (count == expected)
+                {
+                    break decoding;
+                }
+            }
+            position += read;
+        }
+        if (high >= 0)
+        {
+            // odd number of digits, the last one is padded with 0 as per PDF 32000-1:2008 7.3.4.3
+            decoded[count++] = (byte) (high << 4);
+        }
+        return buffers.view(decoded, count);
+    }
+
+    /**
+     * @param contents decoded /Contents, e.g. as read by PDFBox
+     * @return a view of the contents up to the end of the DER structure they start with
+     */
+    public static ByteBuffer trim(byte[] contents)
+    {
+        long length = -1;
+        for (int count = 2; count <= contents.length && length == -1; count++)
+        {
+            length = derLength(contents, count);
+        }
+        return ByteBuffer.wrap(contents, 0, length > 0 && length <= contents.length ? (int) length : contents.length);
+    }
+
+    /**
+     * @return the bytes of the view as stream, e.g. for {@code new CMSSignedData(InputStream)}, without copying them
+     */
+    public static InputStream asInputStream(ByteBuffer view)
+    {
+        return new ByteArrayInputStream(view.array(), view.arrayOffset() + view.position(), view.remaining());
+    }
+
+    /**
+     * @param der the first bytes of a DER (or BER) encoding
+     * @param count the number of bytes available
+     * @return the length of the encoding including its header, -1 if more bytes are needed to tell, or
+     * {@link Long#MAX_VALUE} if the length is not declared (indefinite length, multi-byte tags, huge lengths)
+     */
+    private static long derLength(byte[] der, int count)
+    {
+        if (count < 2)
+        {
+            return -1;
+        }
+        if ((der[0] & 0x1f) == 0x1f)
+        {
+            return Long.MAX_VALUE;
+        }
+        int first = der[1] & 0xff;
+        if (first < 0x80)
+        {
+            return 2 + first;
+        }
+        int lengthBytes = first & 0x7f;
+        if (lengthBytes == 0 || lengthBytes > 4)
+        {
+            return Long.MAX_VALUE;
+        }
+        if (count < 2 + lengthBytes)
+        {
+            return -1;
+        }
+        long length = 0;
+        for (int i = 0; i < lengthBytes; i++)
+        {
+            length = length << 8 | der[2 + i] & 0xff;
+        }
+        return 2 + lengthBytes + length;
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    /**
+     * The buffers of one thread: a chunk of hex digits read from the source, the decoded bytes and a view of them.
+     */
+    private static final class Buffers
+    {
+        private final ByteBuffer hex = ByteBuffer.allocate(HEX_CHUNK_SIZE);
+        private byte[] decoded = new byte[0];
+        private ByteBuffer view = ByteBuffer.wrap(decoded);
+
+        private byte[] decoded(int capacity)
+        {
+            if (capacity > MAX_POOLED_SIZE)
+            {
+                return new byte[capacity];
+            }
+            if (decoded.length < capacity)
+            {
+                decoded = new byte[Math.max(capacity, Math.min(MAX_POOLED_SIZE, 2 * decoded.length))];
+                view = ByteBuffer.wrap(decoded);
+            }
+            return decoded;
+        }
+
+        private ByteBuffer view(byte[] bytes, int length)
+        {
+            if (bytes != decoded)
+            {
+                return ByteBuffer.wrap(bytes, 0, length);
+            }
+            view.clear();
+            view.limit(length);
+            return view;
+        }
+    }
+}
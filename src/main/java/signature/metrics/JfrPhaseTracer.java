@@ -0,0 +1,198 @@
+package signature.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Emits a Java Flight Recorder event per {@link Phase}, named e.g. <code>signature.Digest</code> and recorded with the
+ * fields fileSize, subFilter, digestAlgorithm and bytesHashed, so that slow verifications can be correlated with GC
+ * and I/O in the same recording.
+ *
+ * The event types are defined at runtime with <code>jdk.jfr.EventFactory</code>, as the classes of
+ * <code>jdk.jfr</code> cannot be compiled against on every Java 8; {@link #create()} falls back to
+ * {@link PhaseTracer#NONE} where they are missing. While no recording enables an event type, a phase costs one check.
+ */
+public final class JfrPhaseTracer implements PhaseTracer
+{
+    private static final String[] FIELDS = {"fileSize", "subFilter", "digestAlgorithm", "bytesHashed"};
+    private static final int FILE_SIZE = 0;
+    private static final int SUB_FILTER = 1;
+    private static final int DIGEST_ALGORITHM = 2;
+    private static final int BYTES_HASHED = 3;
+
+    private final Map<Phase, Object> factories = new EnumMap<>(Phase.class);
+    private final Map<Phase, Object> eventTypes = new EnumMap<>(Phase.class);
+    private final Method newEvent;
+    private final Method isEnabled;
+    private final Method begin;
+    private final Method set;
+    private final Method commit;
+
+    /**
+     * @return a tracer emitting Flight Recorder events, or {@link PhaseTracer#NONE} if this runtime has no
+     * <code>jdk.jfr</code>
+     */
+    public static PhaseTracer create()
+    {
+        try
+        {
+            return new JfrPhaseTracer();
+        }
+        catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+        {
+            return NONE;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JfrPhaseTracer() throws ReflectiveOperationException
+    {
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        Class<?> event = Class.forName("jdk.jfr.Event");
+        Class<?> eventType = Class.forName("jdk.jfr.EventType");
+        Class<?> name = Class.forName("jdk.jfr.Name");
+        Class<?> label = Class.forName("jdk.jfr.Label");
+        Class<?> category = Class.forName("jdk.jfr.Category");
+        Class<?> dataAmount = Class.forName("jdk.jfr.DataAmount");
+        Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+        Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+        Method createFactory = eventFactory.getMethod("create", List.class, List.class);
+        Method getEventType = eventFactory.getMethod("getEventType");
+
+        List<Object> fields = Arrays.asList(
+                field.newInstance(long.class, FIELDS[FILE_SIZE], Arrays.asList(
+                        annotation.newInstance(label, "File Size"), annotation.newInstance(dataAmount, "BYTES"))),
+                field.newInstance(String.class, FIELDS[SUB_FILTER], Collections.singletonList(
+                        annotation.newInstance(label, "SubFilter"))),
+                field.newInstance(String.class, FIELDS[DIGEST_ALGORITHM], Collections.singletonList(
+                        annotation.newInstance(label, "Digest Algorithm"))),
+                field.newInstance(long.class, FIELDS[BYTES_HASHED], Arrays.asList(
+                        annotation.newInstance(label, "Bytes Hashed"), annotation.newInstance(dataAmount, "BYTES"))));
+        for (Phase phase : Phase.values())
+        {
+            List<Object> annotations = Arrays.asList(
+                    annotation.newInstance(name, "signature." + camelCase(phase, "")),
+                    annotation.newInstance(label, camelCase(phase, " ")),
+                    annotation.newInstance(category, new String[] {"Signature"}));
+            Object factory = createFactory.invoke(null, annotations, fields);
+            factories.put(phase, factory);
+            eventTypes.put(phase, getEventType.invoke(factory));
+        }
+        newEvent = eventFactory.getMethod("newEvent");
+        isEnabled = eventType.getMethod("isEnabled");
+        begin = event.getMethod("begin");
+        set = event.getMethod("set", int.class, Object.class);
+        commit = event.getMethod("commit");
+    }
+
+    @Override
+    public Span start(Phase phase)
+    {
+        try
+        {
+            if (!(Boolean) isEnabled.invoke(eventTypes.get(phase)))
+            {
+                return Span.NONE;
+            }
+            Object event = newEvent.invoke(factories.get(phase));
+            begin.invoke(event);
+            return new JfrSpan(event);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            // tracing never fails a verification
+            return Span.NONE;
+        }
+    }
+
+    /**
+     * @return e.g. "Cms Parse" for {@link Phase#CMS_PARSE} and a blank separator
+     */
+    private static String camelCase(Phase phase, String separator)
+    {
+        StringBuilder buffy = new StringBuilder();
+        for (String word : phase.name().split("_"))
+        {
+            if (buffy.length() > 0)
+            {
+                buffy.append(separator);
+            }
+            buffy.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+        }
+        return buffy.toString();
+    }
+
+    private final class JfrSpan implements Span
+    {
+        private final Object event;
+
+        private JfrSpan(Object event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        @Override
+        public Span fileSize(long fileSize)
+        {
+            return set(FILE_SIZE, fileSize);
+        }
+
+        @Override
+        public Span subFilter(String subFilter)
+        {
+            return set(SUB_FILTER, subFilter);
+        }
+
+        @Override
+        public Span digestAlgorithm(String digestAlgorithm)
+        {
+            return set(DIGEST_ALGORITHM, digestAlgorithm);
+        }
+
+        @Override
+        public Span bytesHashed(long bytesHashed)
+        {
+            return set(BYTES_HASHED, bytesHashed);
+        }
+
+        @Override
+        public void end()
+        {
+            try
+            {
+                commit.invoke(event);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                // tracing never fails a verification
+            }
+        }
+
+        private Span set(int index, Object value)
+        {
+            try
+            {
+                set.invoke(event, index, value);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                // tracing never fails a verification
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package signature.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, cheap enough to record every verification.
+ *
+ * Buckets are log-linear: each power of two is split into {@value #SUB_BUCKETS} buckets of equal width, so that a
+ * percentile is reported with a relative error of at most 1/{@value #SUB_BUCKETS}, from nanoseconds to centuries,
+ * in a fixed array of counters. Recording is a few atomic increments; reading while recording is safe, but a
+ * snapshot of a histogram that is being recorded to may be off by the values recorded meanwhile.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos a latency, negative values are recorded as 0
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all latencies recorded
+     */
+    public long getTotal()
+    {
+        return sum.sum();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @param percentile e.g. 99 for the 99th percentile
+     * @return the highest latency of the bucket holding the given percentile, at most {@link #getMax()}, or 0 if
+     * nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                long upper = i + 1 < snapshot.length ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index)
+    {
+        int bucket = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (bucket == 0)
+        {
+            return subBucket;
+        }
+        return (long) (SUB_BUCKETS + subBucket) << (bucket - 1);
+    }
+}
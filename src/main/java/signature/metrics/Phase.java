@@ -0,0 +1,27 @@
+package signature.metrics;
+
+/**
+ * The phases signing and verification time is attributed to. They do not nest, so the times of a verification add
+ * up.
+ */
+public enum Phase
+{
+    /** opening or reading the document */
+    LOAD,
+    /** finding the signature dictionaries in the document */
+    LOCATE,
+    /** decoding /Contents and parsing the CMS structure */
+    CMS_PARSE,
+    /** reading the signed byte ranges and digesting them, which happens in a single pass */
+    DIGEST,
+    /** converting the signer certificate and setting up its verifier */
+    CERTIFICATE_CONVERSION,
+    /** checking the signature value */
+    SIGNER_VERIFY,
+    /** verifying signature and document timestamps */
+    TIMESTAMP,
+    /** chain validation and revocation checking */
+    CERTIFICATE_VALIDATION,
+    /** the round trip to a TSA for a signature timestamp while signing */
+    TIMESTAMP_REQUEST
+}
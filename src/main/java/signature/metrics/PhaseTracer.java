@@ -0,0 +1,70 @@
+package signature.metrics;
+
+/**
+ * Traces individual phases of signing and verification, e.g. as {@link JfrPhaseTracer Flight Recorder events}, as
+ * opposed to the aggregates of {@link VerificationMetrics}.
+ */
+public interface PhaseTracer
+{
+    /**
+     * The tracer of verifiers that trace nothing.
+     */
+    PhaseTracer NONE = phase -> Span.NONE;
+
+    /**
+     * @return the span of the phase starting now, to be ended once the phase is over
+     */
+    Span start(Phase phase);
+
+    /**
+     * One phase of one signature or document. The fields are optional; where one is costly to compute, check
+     * {@link #isEnabled()} first.
+     */
+    interface Span
+    {
+        /**
+         * The span of a phase nobody traces.
+         */
+        Span NONE = new Span()
+        {
+        };
+
+        /**
+         * @return whether the span is recorded, i.e. its fields are worth computing
+         */
+        default boolean isEnabled()
+        {
+            return false;
+        }
+
+        default Span fileSize(long fileSize)
+        {
+            return this;
+        }
+
+        default Span subFilter(String subFilter)
+        {
+            return this;
+        }
+
+        /**
+         * @param digestAlgorithm the name of the digest algorithm, or of several separated by commas
+         */
+        default Span digestAlgorithm(String digestAlgorithm)
+        {
+            return this;
+        }
+
+        default Span bytesHashed(long bytesHashed)
+        {
+            return this;
+        }
+
+        /**
+         * Ends the phase.
+         */
+        default void end()
+        {
+        }
+    }
+}
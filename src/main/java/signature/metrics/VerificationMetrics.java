@@ -0,0 +1,168 @@
+package signature.metrics;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of verification metrics: a {@link LatencyHistogram} per {@link Phase} and a counter per subfilter and
+ * {@link Outcome}. One registry may be shared by any number of verifiers and threads.
+ *
+ * Phases are timed by passing the time returned by {@link #start()} to {@link #stop(Phase, long)}, which returns the
+ * start of the next phase:
+ * <pre>
+ * long time = metrics.start();
+ * locate();
+ * time = metrics.stop(Phase.LOCATE, time);
+ * digest();
+ * metrics.stop(Phase.DIGEST, time);
+ * </pre>
+ * {@link #NONE} does not even read the clock.
+ */
+public final class VerificationMetrics
+{
+    /**
+     * The metrics of verifiers that record none.
+     */
+    public static final VerificationMetrics NONE = new VerificationMetrics(false);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    /**
+     * The subfilters of PDF 32000-1:2008 12.8.3 and ETSI EN 319 142-1. The outcomes of any other subfilter, which
+     * comes straight from the document, are counted together so that the number of metrics stays bounded.
+     */
+    private static final Set<String> SUBFILTERS = new HashSet<>(Arrays.asList("adbe.pkcs7.detached", "adbe.pkcs7.sha1",
+            "adbe.x509.rsa.sha1", "ETSI.CAdES.detached", "ETSI.RFC3161"));
+
+    public enum Outcome
+    {
+        /** the signature verified */
+        VERIFIED,
+        /** the signature was checked and failed */
+        FAILED,
+        /** checking the signature threw an exception */
+        ERROR
+    }
+
+    private final boolean enabled;
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    public VerificationMetrics()
+    {
+        this(true);
+    }
+
+    private VerificationMetrics(boolean enabled)
+    {
+        this.enabled = enabled;
+        // the map is complete before the registry is published and never modified after
+        for (Phase phase : Phase.values())
+        {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @return the time a phase starts at, to be passed to {@link #stop(Phase, long)}
+     */
+    public long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start for the given phase.
+     *
+     * @param start the value of {@link #start()} or of the previous stop
+     * @return the time the next phase starts at
+     */
+    public long stop(Phase phase, long start)
+    {
+        if (!enabled)
+        {
+            return 0;
+        }
+        long now = System.nanoTime();
+        phases.get(phase).record(now - start);
+        return now;
+    }
+
+    /**
+     * Counts the outcome of one signature.
+     *
+     * @param subFilter the /SubFilter of the signature, or null if it has none; unknown subfilters are counted as
+     *                  <code>other</code>
+     */
+    public void count(String subFilter, Outcome outcome)
+    {
+        if (enabled)
+        {
+            outcomes.computeIfAbsent(key(subFilter, outcome), k -> new LongAdder()).increment();
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase phase)
+    {
+        return phases.get(phase);
+    }
+
+    /**
+     * @param subFilter the /SubFilter, or null for signatures without one
+     * @return the number of signatures with the given subfilter and outcome; for an unknown subfilter, the number
+     * of signatures with any unknown subfilter
+     */
+    public long getCount(String subFilter, Outcome outcome)
+    {
+        LongAdder count = outcomes.get(key(subFilter, outcome));
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Reads all metrics, e.g. to export them to a monitoring system. Latencies are in nanoseconds; the names are
+     * <ul>
+     * <li><code>phase.&lt;phase&gt;.count</code>, <code>.total</code>, <code>.max</code>, <code>.p50</code>,
+     * <code>.p90</code>, <code>.p99</code> and <code>.p99.9</code> for each phase, e.g. <code>phase.digest.p99</code>,
+     * </li>
+     * <li><code>outcome.&lt;subfilter&gt;.&lt;outcome&gt;</code> for each subfilter and outcome seen so far, e.g.
+     * <code>outcome.adbe.pkcs7.detached.verified</code>; signatures without subfilter count as <code>none</code>,
+     * signatures with a subfilter other than the standard ones as <code>other</code>.</li>
+     * </ul>
+     *
+     * @return the metrics by name, the phases in the order of {@link Phase}, the outcomes sorted by name
+     */
+    public Map<String, Long> scrape()
+    {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet())
+        {
+            String prefix = "phase." + entry.getKey().name().toLowerCase(Locale.ROOT) + ".";
+            LatencyHistogram histogram = entry.getValue();
+            metrics.put(prefix + "count", histogram.getCount());
+            metrics.put(prefix + "total", histogram.getTotal());
+            metrics.put(prefix + "max", histogram.getMax());
+            for (double percentile : PERCENTILES)
+            {
+                String name = percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+                metrics.put(prefix + "p" + name, histogram.getValueAtPercentile(percentile));
+            }
+        }
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((key, count) -> counts.put("outcome." + key, count.sum()));
+        metrics.putAll(counts);
+        return metrics;
+    }
+
+    private static String key(String subFilter, Outcome outcome)
+    {
+        return (subFilter == null ? "none" : SUBFILTERS.contains(subFilter) ? subFilter : "other") + "." + outcome.name().toLowerCase(Locale.ROOT);
+    }
+}
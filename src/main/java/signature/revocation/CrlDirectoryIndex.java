@@ -0,0 +1,161 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Checks revocation against the CRLs mirrored to a local directory.
+ *
+ * Every {@code .crl} or {@code .der} file in the directory is streamed into a compact off-heap index of its revoked
+ * serial numbers (see {@link SerialIndex}), so that even CRLs with millions of entries take a few dozen megabytes
+ * outside the heap and a lookup costs a bloom filter probe or a binary search. {@link #refresh()} only re-reads the
+ * files whose size or modification time changed since they were indexed, and drops the files that were deleted;
+ * lookups keep using the previous state until the refresh completed.
+ *
+ * A certificate is good if a CRL of its issuer that was current at the time of interest (issued after it, or with
+ * a next update after it) does not list it as revoked at that time. Indirect CRLs are not supported.
+ */
+public class CrlDirectoryIndex implements RevocationChecker
+{
+    private final Path directory;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<Path, CrlFile>emptyMap());
+
+    /**
+     * Indexes all CRLs in the directory.
+     *
+     * @param directory the directory the CRLs are mirrored to
+     * @throws IOException if the directory or one of the CRLs could not be read
+     */
+    public CrlDirectoryIndex(Path directory) throws IOException
+    {
+        this.directory = directory;
+        refresh();
+    }
+
+    /**
+     * Brings the index up to date with the directory.
+     *
+     * @return the number of CRL files that were (re-)indexed
+     * @throws IOException if the directory or one of the changed CRLs could not be read, the index is left unchanged
+     */
+    public synchronized int refresh() throws IOException
+    {
+        Map<Path, CrlFile> previous = snapshot.files;
+        Map<Path, CrlFile> files = new HashMap<>();
+        int loaded = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.{crl,der,CRL,DER}"))
+        {
+            for (Path path : entries)
+            {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile())
+                {
+                    continue;
+                }
+                CrlFile file = previous.get(path);
+                if (file == null || !file.isCurrent(attributes))
+                {
+                    file = CrlFile.load(path);
+                    loaded++;
+                }
+                files.put(path, file);
+            }
+        }
+        snapshot = new Snapshot(files);
+        return loaded;
+    }
+
+    /**
+     * @return the number of indexed CRL files
+     */
+    public int getCrlCount()
+    {
+        return snapshot.files.size();
+    }
+
+    /**
+     * @return the number of revoked serials over all indexed CRLs
+     */
+    public long getEntryCount()
+    {
+        long count = 0;
+        for (CrlFile file : snapshot.files.values())
+        {
+            count += file.getSerials().size();
+        }
+        return count;
+    }
+
+    @Override
+    public RevocationStatus check(X509Certificate certificate, X509Certificate issuer, Date time)
+    {
+        X500Principal issuerName = issuer != null ? issuer.getSubjectX500Principal() : certificate.getIssuerX500Principal();
+        return check(issuerName, certificate.getSerialNumber(), time);
+    }
+
+    /**
+     * @param issuerName the name of the certificate issuer
+     * @param serialNumber the serial number of the certificate
+     * @param time the time of interest
+     * @return the status of the certificate at the given time
+     */
+    public RevocationStatus check(X500Principal issuerName, BigInteger serialNumber, Date time)
+    {
+        List<CrlFile> crls = snapshot.byIssuer.get(issuerName);
+        if (crls == null)
+        {
+            return RevocationStatus.unknown("no CRL for issuer " + issuerName);
+        }
+        boolean current = false;
+        for (CrlFile crl : crls)
+        {
+            long revoked = crl.getSerials().lookup(serialNumber);
+            if (revoked != SerialIndex.NOT_REVOKED && revoked <= time.getTime())
+            {
+                return RevocationStatus.revoked(new Date(revoked));
+            }
+            current |= crl.getThisUpdate() >= time.getTime() || crl.getNextUpdate() > time.getTime();
+        }
+        if (!current)
+        {
+            return RevocationStatus.unknown("no CRL of issuer " + issuerName + " current at " + time);
+        }
+        return RevocationStatus.good();
+    }
+
+    /**
+     * The indexed files and the same files grouped by issuer, replaced as a whole on refresh.
+     */
+    private static final class Snapshot
+    {
+        private final Map<Path, CrlFile> files;
+        private final Map<X500Principal, List<CrlFile>> byIssuer = new HashMap<>();
+
+        private Snapshot(Map<Path, CrlFile> files)
+        {
+            this.files = files;
+            for (CrlFile file : files.values())
+            {
+                List<CrlFile> crls = byIssuer.get(file.getIssuer());
+                if (crls == null)
+                {
+                    crls = new ArrayList<>();
+                    byIssuer.put(file.getIssuer(), crls);
+                }
+                crls.add(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package signature.revocation;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * The index of one DER encoded CRL file, together with the file attributes it was built from.
+ *
+ * The CRL is streamed rather than decoded as a whole: only the issuer, the update times and the serial number and
+ * revocation date of each entry are read, everything else (entry and CRL extensions, the signature) is skipped.
+ * The signature is not verified; the CRL mirror is trusted to only store CRLs it verified when downloading them.
+ */
+final class CrlFile
+{
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final X500Principal issuer;
+    private final long thisUpdate;
+    private final long nextUpdate;
+    private final SerialIndex serials;
+
+    private CrlFile(Path path, BasicFileAttributes attributes, X500Principal issuer, long thisUpdate, long nextUpdate, SerialIndex serials)
+    {
+        this.path = path;
+        this.size = attributes.size();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.issuer = issuer;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.serials = serials;
+    }
+
+    static CrlFile load(Path path) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024))
+        {
+            DerReader der = new DerReader(in);
+            // CertificateList ::= SEQUENCE { tbsCertList, signatureAlgorithm, signatureValue }
+            der.expectTag(DerReader.SEQUENCE);
+            der.readLength();
+            der.expectTag(DerReader.SEQUENCE);
+            long tbsEnd = der.readLength();
+            tbsEnd += der.position();
+
+            int tag = der.readTag();
+            if (tag == DerReader.INTEGER)
+            {
+                // version
+                der.skip(der.readLength());
+                tag = der.readTag();
+            }
+            // signature AlgorithmIdentifier
+            checkTag(tag, DerReader.SEQUENCE, der);
+            der.skip(der.readLength());
+
+            der.expectTag(DerReader.SEQUENCE);
+            X500Principal issuer = new X500Principal(der.readEncoding(DerReader.SEQUENCE, der.readLength()));
+
+            tag = der.readTag();
+            long thisUpdate = der.readTime(tag, der.readLength());
+            long nextUpdate = Long.MAX_VALUE;
+
+            SerialIndex.Builder serials = new SerialIndex.Builder();
+            tag = der.position() < tbsEnd ? der.readTag() : -1;
+            if (tag == DerReader.UTC_TIME || tag == DerReader.GENERALIZED_TIME)
+            {
+                nextUpdate = der.readTime(tag, der.readLength());
+                tag = der.position() < tbsEnd ? der.readTag() : -1;
+            }
+            if (tag == DerReader.SEQUENCE)
+            {
+                long entriesEnd = der.readLength();
+                entriesEnd += der.position();
+                while (der.position() < entriesEnd)
+                {
+                    // SEQUENCE { userCertificate, revocationDate, crlEntryExtensions OPTIONAL }
+                    der.expectTag(DerReader.SEQUENCE);
+                    long entryEnd = der.readLength();
+                    entryEnd += der.position();
+                    der.expectTag(DerReader.INTEGER);
+                    byte[] serial = der.readBytes(der.readLength());
+                    tag = der.readTag();
+                    serials.add(serial, der.readTime(tag, der.readLength()));
+                    der.skip(entryEnd - der.position());
+                }
+            }
+            // the CRL extensions, the signature algorithm and the signature are of no interest
+            return new CrlFile(path, attributes, issuer, thisUpdate, nextUpdate, serials.build());
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            // IllegalArgumentException: X500Principal rejecting the issuer
+            throw new IOException("Unable to read CRL " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void checkTag(int tag, int expected, DerReader der) throws IOException
+    {
+        if (tag != expected)
+        {
+            throw new IOException(String.format("Expected tag 0x%02x but found 0x%02x at offset %d", expected, tag, der.position() - 1));
+        }
+    }
+
+    /**
+     * @return true if the file still has the size and modification time the index was built from
+     */
+    boolean isCurrent(BasicFileAttributes attributes)
+    {
+        return attributes.size() == size && attributes.lastModifiedTime().toMillis() == lastModified;
+    }
+
+    Path getPath()
+    {
+        return path;
+    }
+
+    X500Principal getIssuer()
+    {
+        return issuer;
+    }
+
+    long getThisUpdate()
+    {
+        return thisUpdate;
+    }
+
+    /**
+     * @return the next update time, or {@link Long#MAX_VALUE} if the CRL has none
+     */
+    long getNextUpdate()
+    {
+        return nextUpdate;
+    }
+
+    SerialIndex getSerials()
+    {
+        return serials;
+    }
+}
@@ -0,0 +1,227 @@
+package signature.revocation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A minimal forward-only DER reader, enough to stream through a CRL without materialising its entries.
+ */
+final class DerReader
+{
+    static final int INTEGER = 0x02;
+    static final int SEQUENCE = 0x30;
+    static final int UTC_TIME = 0x17;
+    static final int GENERALIZED_TIME = 0x18;
+
+    private final InputStream in;
+    private long position;
+
+    DerReader(InputStream in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * @return the offset of the next byte
+     */
+    long position()
+    {
+        return position;
+    }
+
+    /**
+     * @return the next tag, or -1 at the end of the input
+     */
+    int readTag() throws IOException
+    {
+        int tag = in.read();
+        if (tag < 0)
+        {
+            return -1;
+        }
+        position++;
+        if ((tag & 0x1f) == 0x1f)
+        {
+            throw new IOException("High tag numbers not supported at offset " + (position - 1));
+        }
+        return tag;
+    }
+
+    /**
+     * Reads a tag and fails unless it is the expected one.
+     */
+    void expectTag(int expected) throws IOException
+    {
+        int tag = readTag();
+        if (tag != expected)
+        {
+            throw new IOException(String.format("Expected tag 0x%02x but found 0x%02x at offset %d", expected, tag, position - 1));
+        }
+    }
+
+    long readLength() throws IOException
+    {
+        int first = readByte();
+        if (first < 0x80)
+        {
+            return first;
+        }
+        int count = first & 0x7f;
+        if (count == 0)
+        {
+            throw new IOException("Indefinite length not allowed in DER at offset " + (position - 1));
+        }
+        if (count > 7)
+        {
+            throw new IOException("Length too large at offset " + (position - 1));
+        }
+        long length = 0;
+        for (int i = 0; i < count; i++)
+        {
+            length = length << 8 | readByte();
+        }
+        return length;
+    }
+
+    byte[] readBytes(long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Value too large at offset " + position);
+        }
+        byte[] bytes = new byte[(int) length];
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read < 0)
+            {
+                throw new EOFException("Truncated DER at offset " + position);
+            }
+            offset += read;
+            position += read;
+        }
+        return bytes;
+    }
+
+    void skip(long length) throws IOException
+    {
+        long remaining = length;
+        while (remaining > 0)
+        {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0)
+            {
+                // InputStream.skip may give up early, read instead to tell a short skip from the end of the input
+                readByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+            position += skipped;
+        }
+    }
+
+    /**
+     * Reads the value of an element whose tag and length have been read, and returns its complete encoding.
+     */
+    byte[] readEncoding(int tag, long length) throws IOException
+    {
+        ByteArrayOutputStream encoding = new ByteArrayOutputStream();
+        encoding.write(tag);
+        if (length < 0x80)
+        {
+            encoding.write((int) length);
+        }
+        else
+        {
+            int count = (64 - Long.numberOfLeadingZeros(length) + 7) / 8;
+            encoding.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--)
+            {
+                encoding.write((int) (length >>> (8 * i)));
+            }
+        }
+        encoding.write(readBytes(length));
+        return encoding.toByteArray();
+    }
+
+    /**
+     * Reads the value of a UTCTime or GeneralizedTime whose tag and length have been read.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    long readTime(int tag, long length) throws IOException
+    {
+        String value = new String(readBytes(length), "US-ASCII");
+        try
+        {
+            String text = value;
+            int year;
+            if (tag == UTC_TIME)
+            {
+                // RFC 5280: YY >= 50 means 19YY
+                year = Integer.parseInt(text.substring(0, 2));
+                year += year >= 50 ? 1900 : 2000;
+                text = text.substring(2);
+            }
+            else if (tag == GENERALIZED_TIME)
+            {
+                year = Integer.parseInt(text.substring(0, 4));
+                text = text.substring(4);
+            }
+            else
+            {
+                throw new IOException(String.format("Expected a time but found tag 0x%02x at offset %d", tag, position));
+            }
+            int month = Integer.parseInt(text.substring(0, 2));
+            int day = Integer.parseInt(text.substring(2, 4));
+            int hour = Integer.parseInt(text.substring(4, 6));
+            int minute = Integer.parseInt(text.substring(6, 8));
+            int second = 0;
+            int index = 8;
+            if (index + 1 < text.length() && Character.isDigit(text.charAt(index)))
+            {
+                second = Integer.parseInt(text.substring(index, index + 2));
+                index += 2;
+            }
+            long nanos = 0;
+            if (index < text.length() && (text.charAt(index) == '.' || text.charAt(index) == ','))
+            {
+                int end = index + 1;
+                while (end < text.length() && Character.isDigit(text.charAt(end)))
+                {
+                    end++;
+                }
+                String fraction = (text.substring(index + 1, end) + "000000000").substring(0, 9);
+                nanos = Long.parseLong(fraction);
+                index = end;
+            }
+            ZoneOffset offset = ZoneOffset.UTC;
+            if (index < text.length() && text.charAt(index) != 'Z')
+            {
+                offset = ZoneOffset.of(text.substring(index, index + 3) + ":" + text.substring(index + 3, index + 5));
+            }
+            return LocalDateTime.of(year, month, day, hour, minute, second, (int) nanos).toInstant(offset).toEpochMilli();
+        }
+        catch (RuntimeException e)
+        {
+            // NumberFormatException, StringIndexOutOfBoundsException, DateTimeException
+            throw new IOException("Invalid time '" + value + "' at offset " + position, e);
+        }
+    }
+
+    private int readByte() throws IOException
+    {
+        int b = in.read();
+        if (b < 0)
+        {
+            throw new EOFException("Truncated DER at offset " + position);
+        }
+        position++;
+        return b;
+    }
+}
@@ -0,0 +1,61 @@
+package signature.revocation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/**
+ * Posts OCSP requests over HTTP as per RFC 6960, appendix A.
+ */
+public class HttpOcspClient implements OcspClient
+{
+    private final int timeout;
+
+    /**
+     * @param timeout the connect and read timeout in milliseconds
+     */
+    public HttpOcspClient(int timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public byte[] send(URI responder, byte[] request) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) responder.toURL().openConnection();
+        try
+        {
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/ocsp-request");
+            connection.setRequestProperty("Accept", "application/ocsp-response");
+            try (OutputStream out = connection.getOutputStream())
+            {
+                out.write(request);
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+            {
+                throw new IOException("OCSP responder " + responder + " answered HTTP " + connection.getResponseCode());
+            }
+            try (InputStream in = connection.getInputStream())
+            {
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int read; (read = in.read(buffer)) > 0; )
+                {
+                    response.write(buffer, 0, read);
+                }
+                return response.toByteArray();
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.PrivateKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+/**
+ * An in-process stand-in for the OCSP responder of one issuer, so that OCSP checking, its cache hit rate and its
+ * latency can be tested and benchmarked offline.
+ *
+ * It answers for the certificates of the issuer it was created for, with "revoked" for the serials passed to
+ * {@link #revoke(BigInteger, Date)} and "good" for all others, signing the responses with the issuer key. An
+ * artificial latency can be configured to simulate the network round trip. Requests about other issuers are
+ * answered with "unknown".
+ */
+public class LocalOcspResponder implements OcspClient
+{
+    private final X509CertificateHolder issuer;
+    private final ContentSigner signer;
+    private final RespID responderId;
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final Map<BigInteger, Date> revoked = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long validity = TimeUnit.HOURS.toMillis(1);
+    private volatile long latency;
+
+    /**
+     * @param issuer the certificate of the issuer to answer for
+     * @param issuerKey the private key of the issuer, which signs the responses
+     */
+    public LocalOcspResponder(X509Certificate issuer, PrivateKey issuerKey) throws CertificateEncodingException, OperatorCreationException
+    {
+        this.issuer = new JcaX509CertificateHolder(issuer);
+        this.signer = new JcaContentSignerBuilder("SHA256with" + ("EC".equals(issuerKey.getAlgorithm()) ? "ECDSA" : issuerKey.getAlgorithm())).build(issuerKey);
+        this.responderId = new RespID(this.issuer.getSubject());
+        this.digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().build();
+    }
+
+    /**
+     * Marks a serial number as revoked at the given time.
+     */
+    public void revoke(BigInteger serial, Date revocationTime)
+    {
+        revoked.put(serial, revocationTime);
+    }
+
+    /**
+     * @param validity the time from thisUpdate to nextUpdate of the responses in milliseconds, 0 for responses
+     *                 without nextUpdate
+     */
+    public void setValidity(long validity)
+    {
+        this.validity = validity;
+    }
+
+    /**
+     * @param latency the time each request takes in milliseconds
+     */
+    public void setLatency(long latency)
+    {
+        this.latency = latency;
+    }
+
+    /**
+     * @return the number of requests answered
+     */
+    public long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    @Override
+    public byte[] send(URI responder, byte[] request) throws IOException
+    {
+        requests.incrementAndGet();
+        if (latency > 0)
+        {
+            try
+            {
+                Thread.sleep(latency);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        try
+        {
+            OCSPReq ocspRequest = new OCSPReq(request);
+            Date now = new Date();
+            Date nextUpdate = validity > 0 ? new Date(now.getTime() + validity) : null;
+            BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(responderId);
+            for (Req single : ocspRequest.getRequestList())
+            {
+                CertificateID id = single.getCertID();
+                CertificateStatus status;
+                if (!id.matchesIssuer(issuer, digestCalculatorProvider))
+                {
+                    status = new UnknownStatus();
+                }
+                else
+                {
+                    Date revocationTime = revoked.get(id.getSerialNumber());
+                    status = revocationTime == null ? CertificateStatus.GOOD : new RevokedStatus(revocationTime, CRLReason.unspecified);
+                }
+                builder.addResponse(id, status, now, nextUpdate, null);
+            }
+            BasicOCSPResp response;
+            synchronized (signer)
+            {
+                // a ContentSigner is stateful
+                response = builder.build(signer, new X509CertificateHolder[] { issuer }, now);
+            }
+            return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, response).getEncoded();
+        }
+        catch (OCSPException e)
+        {
+            throw new IOException("Unable to answer OCSP request: " + e.getMessage(), e);
+        }
+    }
+}
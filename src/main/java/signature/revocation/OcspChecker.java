@@ -0,0 +1,328 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.CertException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import signature.BoundedCache;
+import signature.VerificationContext;
+
+/**
+ * Checks revocation by OCSP, caching the responses.
+ *
+ * Responses are cached by (issuer, serial number) until their nextUpdate, or for a configurable time to live if
+ * the responder gives none, and evicted least recently used beyond the cache size. Concurrent lookups of the same
+ * certificate are coalesced: only one thread queries the responder, the others wait for its response.
+ *
+ * Responses must be signed by the issuer itself or by a responder certificate the issuer delegated OCSP signing
+ * to (RFC 6960, section 4.2.2.2). A certificate revoked after the time of interest counts as good at that time.
+ */
+public class OcspChecker implements RevocationChecker
+{
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.HOURS.toMillis(1);
+
+    private final VerificationContext context;
+    private final OcspClient client;
+    private final URI responder;
+    private final long timeToLive;
+    private final BoundedCache<Key, Response> cache;
+    private final ConcurrentHashMap<Key, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Queries the responders named in the certificates, with the default cache size and time to live.
+     */
+    public OcspChecker(VerificationContext context, OcspClient client)
+    {
+        this(context, client, null, DEFAULT_CACHE_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param context verifies the response signatures
+     * @param client sends the requests
+     * @param responder the responder to query for all certificates, or null for the one named in each certificate
+     * @param cacheSize the maximum number of cached responses
+     * @param timeToLive how long to cache responses without nextUpdate, in milliseconds
+     */
+    public OcspChecker(VerificationContext context, OcspClient client, URI responder, int cacheSize, long timeToLive)
+    {
+        this.context = context;
+        this.client = client;
+        this.responder = responder;
+        this.timeToLive = timeToLive;
+        this.cache = new BoundedCache<>(cacheSize);
+    }
+
+    @Override
+    public RevocationStatus check(X509Certificate certificate, X509Certificate issuer, Date time) throws IOException
+    {
+        if (issuer == null)
+        {
+            return RevocationStatus.unknown("OCSP requires the issuer certificate of " + certificate.getSubjectX500Principal());
+        }
+        URI uri = responder != null ? responder : getResponder(certificate);
+        if (uri == null)
+        {
+            return RevocationStatus.unknown("no OCSP responder for " + certificate.getSubjectX500Principal());
+        }
+
+        Key key = new Key(issuer, certificate.getSerialNumber());
+        Response response = cache.getIfPresent(key);
+        if (response == null || response.expires <= System.currentTimeMillis())
+        {
+            response = fetch(key, uri, certificate, issuer);
+        }
+        return response.statusAt(time);
+    }
+
+    /**
+     * Queries the responder, unless another thread is doing so for the same certificate already.
+     */
+    private Response fetch(Key key, URI uri, X509Certificate certificate, X509Certificate issuer) throws IOException
+    {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        CompletableFuture<Response> existing = pending.putIfAbsent(key, future);
+        if (existing != null)
+        {
+            try
+            {
+                return existing.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for OCSP response", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IOException("OCSP request failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        try
+        {
+            Response response = query(uri, certificate, issuer);
+            cache.put(key, response);
+            future.complete(response);
+            return response;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            pending.remove(key, future);
+        }
+    }
+
+    private Response query(URI uri, X509Certificate certificate, X509Certificate issuer) throws IOException
+    {
+        requests.incrementAndGet();
+        try
+        {
+            X509CertificateHolder issuerHolder = new JcaX509CertificateHolder(issuer);
+            CertificateID id = new CertificateID(context.getDigestCalculatorProvider().get(CertificateID.HASH_SHA1),
+                    issuerHolder, certificate.getSerialNumber());
+            OCSPResp ocspResponse = new OCSPResp(client.send(uri, new OCSPReqBuilder().addRequest(id).build().getEncoded()));
+            if (ocspResponse.getStatus() != OCSPResp.SUCCESSFUL)
+            {
+                throw new IOException("OCSP responder " + uri + " answered with status " + ocspResponse.getStatus());
+            }
+            BasicOCSPResp basic = (BasicOCSPResp) ocspResponse.getResponseObject();
+            if (!isSignedByIssuerOrDelegate(basic, issuerHolder))
+            {
+                throw new IOException("OCSP response from " + uri + " is not signed by the issuer or its delegate");
+            }
+            for (SingleResp single : basic.getResponses())
+            {
+                if (single.getCertID().equals(id))
+                {
+                    Date nextUpdate = single.getNextUpdate();
+                    long expires = nextUpdate != null ? nextUpdate.getTime() : System.currentTimeMillis() + timeToLive;
+                    return new Response(single.getCertStatus(), expires);
+                }
+            }
+            throw new IOException("OCSP response from " + uri + " does not cover serial " + certificate.getSerialNumber());
+        }
+        catch (OCSPException | OperatorCreationException | CertificateException e)
+        {
+            throw new IOException("Invalid OCSP response from " + uri + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isSignedByIssuerOrDelegate(BasicOCSPResp response, X509CertificateHolder issuer)
+            throws OCSPException, OperatorCreationException, CertificateException
+    {
+        if (response.isSignatureValid(context.createContentVerifierProvider(issuer)))
+        {
+            return true;
+        }
+        for (X509CertificateHolder candidate : response.getCerts())
+        {
+            try
+            {
+                ExtendedKeyUsage usage = ExtendedKeyUsage.fromExtensions(candidate.getExtensions());
+                if (candidate.getIssuer().equals(issuer.getSubject())
+                        && usage != null && usage.hasKeyPurposeId(KeyPurposeId.id_kp_OCSPSigning)
+                        && candidate.isSignatureValid(context.createContentVerifierProvider(issuer))
+                        && response.isSignatureValid(context.createContentVerifierProvider(candidate)))
+                {
+                    return true;
+                }
+            }
+            catch (CertException e)
+            {
+                // not a valid delegate, try the next candidate
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the OCSP responder from the authority information access extension, or null
+     */
+    private static URI getResponder(X509Certificate certificate)
+    {
+        byte[] extension = certificate.getExtensionValue(Extension.authorityInfoAccess.getId());
+        if (extension == null)
+        {
+            return null;
+        }
+        AuthorityInformationAccess access = AuthorityInformationAccess.getInstance(ASN1OctetString.getInstance(extension).getOctets());
+        for (AccessDescription description : access.getAccessDescriptions())
+        {
+            GeneralName location = description.getAccessLocation();
+            if (AccessDescription.id_ad_ocsp.equals(description.getAccessMethod())
+                    && location.getTagNo() == GeneralName.uniformResourceIdentifier)
+            {
+                try
+                {
+                    return new URI(location.getName().toString());
+                }
+                catch (URISyntaxException e)
+                {
+                    // try the next one
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of requests sent to responders
+     */
+    public long getRequestCount()
+    {
+        return requests.get();
+    }
+
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+    public int getCacheSize()
+    {
+        return cache.size();
+    }
+
+    private static final class Response
+    {
+        private final CertificateStatus status;
+        private final long expires;
+
+        private Response(CertificateStatus status, long expires)
+        {
+            this.status = status;
+            this.expires = expires;
+        }
+
+        private RevocationStatus statusAt(Date time)
+        {
+            if (status == CertificateStatus.GOOD)
+            {
+                return RevocationStatus.good();
+            }
+            if (status instanceof RevokedStatus)
+            {
+                Date revocationTime = ((RevokedStatus) status).getRevocationTime();
+                return revocationTime.after(time) ? RevocationStatus.good() : RevocationStatus.revoked(revocationTime);
+            }
+            return RevocationStatus.unknown("OCSP responder does not know the certificate");
+        }
+    }
+
+    /**
+     * (issuer, serial), with the issuer represented by the SHA-256 hash of its certificate.
+     */
+    private static final class Key
+    {
+        private final byte[] issuer;
+        private final BigInteger serial;
+
+        private Key(X509Certificate issuer, BigInteger serial) throws IOException
+        {
+            try
+            {
+                this.issuer = MessageDigest.getInstance("SHA-256").digest(issuer.getEncoded());
+            }
+            catch (CertificateEncodingException | NoSuchAlgorithmException e)
+            {
+                throw new IOException("Unable to hash issuer certificate", e);
+            }
+            this.serial = serial;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Key && Arrays.equals(issuer, ((Key) other).issuer) && serial.equals(((Key) other).serial);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Arrays.hashCode(issuer) + serial.hashCode();
+        }
+    }
+}
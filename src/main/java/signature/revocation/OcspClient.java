@@ -0,0 +1,18 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Sends OCSP requests, see {@link HttpOcspClient} and {@link LocalOcspResponder}.
+ */
+public interface OcspClient
+{
+    /**
+     * @param responder the responder location, from the certificate's authority information access or configured
+     * @param request the DER encoded OCSPRequest
+     * @return the DER encoded OCSPResponse
+     * @throws IOException if the responder could not be reached
+     */
+    byte[] send(URI responder, byte[] request) throws IOException;
+}
@@ -0,0 +1,44 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Determines whether certificates were revoked at a given time.
+ */
+public interface RevocationChecker
+{
+    /**
+     * @param certificate the certificate to check
+     * @param issuer the certificate of its issuer, or null if not known
+     * @param time the time of interest, usually the signing time; a certificate revoked after it counts as good
+     * @return the status of the certificate at the given time
+     * @throws IOException if the revocation information could not be read
+     */
+    RevocationStatus check(X509Certificate certificate, X509Certificate issuer, Date time) throws IOException;
+
+    /**
+     * Checks every certificate of a path.
+     *
+     * @param path the certificates from the leaf towards the root, each issued by the next
+     * @param anchor the issuer of the last certificate of the path, or null if not known
+     * @param time the time of interest
+     * @return the first status that is not good, or good if all certificates are
+     * @throws IOException if the revocation information could not be read
+     */
+    default RevocationStatus checkPath(List<X509Certificate> path, X509Certificate anchor, Date time) throws IOException
+    {
+        for (int i = 0; i < path.size(); i++)
+        {
+            X509Certificate issuer = i + 1 < path.size() ? path.get(i + 1) : anchor;
+            RevocationStatus status = check(path.get(i), issuer, time);
+            if (!status.isGood())
+            {
+                return status;
+            }
+        }
+        return RevocationStatus.good();
+    }
+}
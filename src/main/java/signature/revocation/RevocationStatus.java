@@ -0,0 +1,85 @@
+package signature.revocation;
+
+import java.util.Date;
+
+/**
+ * The revocation status of a certificate at a given time.
+ */
+public final class RevocationStatus
+{
+    public enum Status
+    {
+        GOOD, REVOKED, UNKNOWN
+    }
+
+    private static final RevocationStatus GOOD = new RevocationStatus(Status.GOOD, null, null);
+
+    private final Status status;
+    private final Date revocationTime;
+    private final String reason;
+
+    private RevocationStatus(Status status, Date revocationTime, String reason)
+    {
+        this.status = status;
+        this.revocationTime = revocationTime;
+        this.reason = reason;
+    }
+
+    public static RevocationStatus good()
+    {
+        return GOOD;
+    }
+
+    public static RevocationStatus revoked(Date revocationTime)
+    {
+        return new RevocationStatus(Status.REVOKED, revocationTime, null);
+    }
+
+    /**
+     * @param reason why the status could not be determined, e.g. "no CRL for issuer ..."
+     */
+    public static RevocationStatus unknown(String reason)
+    {
+        return new RevocationStatus(Status.UNKNOWN, null, reason);
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    public boolean isGood()
+    {
+        return status == Status.GOOD;
+    }
+
+    /**
+     * @return the time the certificate was revoked, or null if it is not revoked
+     */
+    public Date getRevocationTime()
+    {
+        return revocationTime == null ? null : new Date(revocationTime.getTime());
+    }
+
+    /**
+     * @return why the status is unknown, or null
+     */
+    public String getReason()
+    {
+        return reason;
+    }
+
+    @Override
+    public String toString()
+    {
+        switch (status)
+        {
+            case REVOKED:
+                return "revoked since " + revocationTime;
+            case UNKNOWN:
+                return "unknown (" + reason + ")";
+            default:
+                return "good";
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package signature.revocation;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The revoked serial numbers of one CRL, kept off-heap as a sorted array of fixed-width records with a bloom filter
+ * in front.
+ *
+ * Each record holds the serial number as a 20 byte unsigned big-endian value (RFC 5280 limits serials to 20 octets)
+ * followed by the revocation time, 28 bytes in total instead of the several hundred bytes an
+ * {@link java.security.cert.X509CRLEntry} takes on the heap. A lookup of a serial that is not revoked, by far the
+ * most common case, is usually answered by the bloom filter alone; otherwise it is a binary search.
+ *
+ * Serial numbers that do not fit a record (negative or over-long ones, which some CAs issued anyway) are kept in a
+ * small map on the heap.
+ */
+final class SerialIndex
+{
+    static final long NOT_REVOKED = Long.MIN_VALUE;
+
+    private static final int SERIAL_SIZE = 20;
+    private static final int RECORD_SIZE = SERIAL_SIZE + 8;
+    private static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+
+    private final ByteBuffer records;
+    private final int count;
+    private final LongBuffer bloom;
+    private final long bloomBits;
+    private final Map<BigInteger, Long> overflow;
+
+    private SerialIndex(ByteBuffer records, int count, LongBuffer bloom, Map<BigInteger, Long> overflow)
+    {
+        this.records = records;
+        this.count = count;
+        this.bloom = bloom;
+        this.bloomBits = 64L * bloom.capacity();
+        this.overflow = overflow;
+    }
+
+    /**
+     * @return the number of revoked serials
+     */
+    int size()
+    {
+        return count + overflow.size();
+    }
+
+    /**
+     * @param serial the serial number to look up
+     * @return the revocation time in milliseconds since the epoch, or {@link #NOT_REVOKED}
+     */
+    long lookup(BigInteger serial)
+    {
+        byte[] key = toRecordKey(serial);
+        if (key == null)
+        {
+            Long time = overflow.get(serial);
+            return time == null ? NOT_REVOKED : time;
+        }
+        long k0 = getLong(key, 0);
+        long k1 = getLong(key, 8);
+        int k2 = getInt(key, 16);
+        if (!mightContain(k0, k1, k2))
+        {
+            return NOT_REVOKED;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, k0, k1, k2);
+            if (comparison < 0)
+            {
+                low = middle + 1;
+            }
+            else if (comparison > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return records.getLong(middle * RECORD_SIZE + SERIAL_SIZE);
+            }
+        }
+        return NOT_REVOKED;
+    }
+
+    private boolean mightContain(long k0, long k1, int k2)
+    {
+        long h1 = mix(k0 ^ Long.rotateLeft(k1, 21) ^ ((long) k2 << 32));
+        long h2 = mix(h1 ^ k1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++)
+        {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bloomBits);
+            if ((bloom.get((int) (bit >>> 6)) & 1L << bit) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compare(int record, long k0, long k1, int k2)
+    {
+        int offset = record * RECORD_SIZE;
+        int comparison = Long.compareUnsigned(records.getLong(offset), k0);
+        if (comparison == 0)
+        {
+            comparison = Long.compareUnsigned(records.getLong(offset + 8), k1);
+        }
+        if (comparison == 0)
+        {
+            comparison = Integer.compareUnsigned(records.getInt(offset + 16), k2);
+        }
+        return comparison;
+    }
+
+    /**
+     * @return the serial as a left-padded 20 byte unsigned value, or null if it does not fit
+     */
+    private static byte[] toRecordKey(BigInteger serial)
+    {
+        if (serial.signum() < 0 || serial.bitLength() > 8 * SERIAL_SIZE)
+        {
+            return null;
+        }
+        byte[] bytes = serial.toByteArray();
+        byte[] key = new byte[SERIAL_SIZE];
+        int length = Math.min(bytes.length, SERIAL_SIZE);
+        System.arraycopy(bytes, bytes.length - length, key, SERIAL_SIZE - length, length);
+        return key;
+    }
+
+    private static long getLong(byte[] bytes, int offset)
+    {
+        return (long) getInt(bytes, offset) << 32 | getInt(bytes, offset + 4) & 0xffffffffL;
+    }
+
+    private static int getInt(byte[] bytes, int offset)
+    {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Collects the entries of a CRL into a growing off-heap buffer, then sorts it in place.
+     */
+    static final class Builder
+    {
+        private ByteBuffer records = ByteBuffer.allocateDirect(1024 * RECORD_SIZE);
+        private int count;
+        private final Map<BigInteger, Long> overflow = new HashMap<>();
+
+        /**
+         * @param serial the content octets of the DER INTEGER
+         * @param revocationTime the revocation time in milliseconds since the epoch
+         */
+        void add(byte[] serial, long revocationTime) throws IOException
+        {
+            if (serial.length == 0)
+            {
+                throw new IOException("Empty serial number in CRL entry");
+            }
+            int start = 0;
+            while (start < serial.length - 1 && serial[start] == 0)
+            {
+                start++;
+            }
+            if (serial[0] < 0 || serial.length - start > SERIAL_SIZE)
+            {
+                overflow.put(new BigInteger(serial), revocationTime);
+                return;
+            }
+            if (count == MAX_RECORDS)
+            {
+                throw new IOException("CRL exceeds " + MAX_RECORDS + " entries");
+            }
+            if ((count + 1) * RECORD_SIZE > records.capacity())
+            {
+                ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min((long) records.capacity() * 2, (long) MAX_RECORDS * RECORD_SIZE));
+                records.flip();
+                grown.put(records);
+                records = grown;
+            }
+            int offset = count * RECORD_SIZE;
+            int length = serial.length - start;
+            for (int i = 0; i < SERIAL_SIZE - length; i++)
+            {
+                records.put(offset + i, (byte) 0);
+            }
+            for (int i = 0; i < length; i++)
+            {
+                records.put(offset + SERIAL_SIZE - length + i, serial[start + i]);
+            }
+            records.putLong(offset + SERIAL_SIZE, revocationTime);
+            count++;
+            records.position(count * RECORD_SIZE);
+        }
+
+        SerialIndex build()
+        {
+            ByteBuffer sorted = records;
+            if (sorted.capacity() > count * RECORD_SIZE + 64 * RECORD_SIZE)
+            {
+                // don't keep the slack of the doubling around for the lifetime of the index
+                sorted = ByteBuffer.allocateDirect(Math.max(RECORD_SIZE, count * RECORD_SIZE));
+                records.flip();
+                sorted.put(records);
+            }
+            heapSort(sorted, count);
+
+            long bits = Math.max(64, (long) count * BITS_PER_ENTRY);
+            LongBuffer bloom = ByteBuffer.allocateDirect((int) ((bits + 63) / 64) * 8).asLongBuffer();
+            SerialIndex index = new SerialIndex(sorted, count, bloom, overflow);
+            for (int i = 0; i < count; i++)
+            {
+                index.addToBloom(i);
+            }
+            records = null;
+            return index;
+        }
+    }
+
+    private void addToBloom(int record)
+    {
+        int offset = record * RECORD_SIZE;
+        long k0 = records.getLong(offset);
+        long k1 = records.getLong(offset + 8);
+        int k2 = records.getInt(offset + 16);
+        long h1 = mix(k0 ^ Long.rotateLeft(k1, 21) ^ ((long) k2 << 32));
+        long h2 = mix(h1 ^ k1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++)
+        {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bloomBits);
+            int word = (int) (bit >>> 6);
+            bloom.put(word, bloom.get(word) | 1L << bit);
+        }
+    }
+
+    /**
+     * Sorts the records by serial in place, without any per-record heap allocation.
+     */
+    private static void heapSort(ByteBuffer records, int count)
+    {
+        for (int i = count / 2 - 1; i >= 0; i--)
+        {
+            siftDown(records, i, count);
+        }
+        for (int end = count - 1; end > 0; end--)
+        {
+            swap(records, 0, end);
+            siftDown(records, 0, end);
+        }
+    }
+
+    private static void siftDown(ByteBuffer records, int root, int count)
+    {
+        while (2 * root + 1 < count)
+        {
+            int child = 2 * root + 1;
+            if (child + 1 < count && compareRecords(records, child, child + 1) < 0)
+            {
+                child++;
+            }
+            if (compareRecords(records, root, child) >= 0)
+            {
+                return;
+            }
+            swap(records, root, child);
+            root = child;
+        }
+    }
+
+    private static int compareRecords(ByteBuffer records, int i, int j)
+    {
+        int x = i * RECORD_SIZE;
+        int y = j * RECORD_SIZE;
+        int comparison = Long.compareUnsigned(records.getLong(x), records.getLong(y));
+        if (comparison == 0)
+        {
+            comparison = Long.compareUnsigned(records.getLong(x + 8), records.getLong(y + 8));
+        }
+        if (comparison == 0)
+        {
+            comparison = Integer.compareUnsigned(records.getInt(x + 16), records.getInt(y + 16));
+        }
+        return comparison;
+    }
+
+    private static void swap(ByteBuffer records, int i, int j)
+    {
+        int x = i * RECORD_SIZE;
+        int y = j * RECORD_SIZE;
+        long x0 = records.getLong(x);
+        long x1 = records.getLong(x + 8);
+        int x2 = records.getInt(x + 16);
+        long x3 = records.getLong(x + SERIAL_SIZE);
+        records.putLong(x, records.getLong(y));
+        records.putLong(x + 8, records.getLong(y + 8));
+        records.putInt(x + 16, records.getInt(y + 16));
+        records.putLong(x + SERIAL_SIZE, records.getLong(y + SERIAL_SIZE));
+        records.putLong(y, x0);
+        records.putLong(y + 8, x1);
+        records.putInt(y + 16, x2);
+        records.putLong(y + SERIAL_SIZE, x3);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.mkl.ValidateSignature;
+import signature.SignatureResult;
+import signature.io.ArtifactWriter;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class ArtifactWriterTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dropsArtifactsBeyondTheSizeCap() throws Exception
+    {
+        Path target = folder.getRoot().toPath();
+        ArtifactWriter writer = new ArtifactWriter(target, 8, 10, true);
+        try
+        {
+            assertThat(writer.write("first.der", new byte[] {1, 2, 3, 4, 5, 6}), is(true));
+            assertThat(writer.write("second.der", new byte[] {1, 2, 3, 4, 5, 6}), is(false));
+            assertThat(writer.write("third.der", new byte[] {1, 2, 3, 4}), is(true));
+        }
+        finally
+        {
+            writer.close();
+        }
+        assertThat(writer.getWritten(), equalTo(2L));
+        assertThat(writer.getDropped(), equalTo(1L));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(target.resolve("first.der.gz"))))
+        {
+            byte[] data = new byte[8];
+            assertThat(in.read(data), equalTo(6));
+        }
+        assertThat(Files.exists(target.resolve("second.der.gz")), is(false));
+    }
+
+    /**
+     * Passing signatures neither render nor store anything, the artifacts of a failing one are stored.
+     */
+    @Test
+    public void storesTheArtifactsOfFailedSignaturesOnly() throws Exception
+    {
+        File results = folder.newFolder("results");
+        ValidateSignature validateSignature = new ValidateSignature(results);
+        ArtifactWriter writer = new ArtifactWriter(results.toPath());
+        validateSignature.setArtifactWriter(writer);
+
+        Map<String, SignatureResult> passed = validateSignature.validateSignaturesImproved(
+                Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf"), "passed-%s.cms");
+        Map<String, SignatureResult> failed = validateSignature.validateSignaturesImproved(
+                Paths.get("src", "test", "resources", "mkl", "pkcs7DetachedFailure.pdf"), "failed-%s.cms");
+        writer.close();
+
+        SignatureResult result = passed.values().iterator().next();
+        assertThat(result.isVerified(), is(true));
+        assertThat(result.getDiagnostics(), notNullValue());
+        assertThat(result.getDiagnostics().dump(), containsString("Signature contents"));
+        assertThat(Files.exists(results.toPath().resolve("passed-1.cms")), is(false));
+
+        assertThat(failed.values().iterator().next().isVerified(), is(false));
+        assertThat(Files.exists(results.toPath().resolve("failed-1.cms")), is(true));
+    }
+
+    /**
+     * Without a writer the artifacts of a failing signature are stored before validation returns.
+     */
+    @Test
+    public void storesArtifactsSynchronouslyByDefault() throws Exception
+    {
+        File results = folder.newFolder("results");
+        ValidateSignature validateSignature = new ValidateSignature(results);
+
+        Map<String, SignatureResult> failed = validateSignature.validateSignaturesImproved(
+                Paths.get("src", "test", "resources", "mkl", "pkcs7DetachedFailure.pdf"), "failed-%s.cms");
+
+        assertThat(failed.values().iterator().next().isVerified(), is(false));
+        assertThat(Files.exists(results.toPath().resolve("failed-1.cms")), is(true));
+    }
+}
@@ -0,0 +1,73 @@
+import org.junit.After;
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.SignatureResult;
+import signature.VerificationListener;
+
+import java.io.File;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
+
+public class AsyncVerificationTest
+{
+    private final ExecutorService io = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "io"));
+    private final ExecutorService cpu = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "cpu"));
+
+    @After
+    public void shutdown()
+    {
+        io.shutdown();
+        cpu.shutdown();
+    }
+
+    @Test
+    public void verifiesOnTheSuppliedExecutors() throws Exception
+    {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setVerificationListener(new VerificationListener()
+        {
+            @Override
+            public void signatureChecked(String name, boolean valid, Throwable cause)
+            {
+                threads.add(Thread.currentThread().getName());
+            }
+        });
+        File document = Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile();
+
+        Map<String, SignatureResult> results = verifier.extractSignaturesAsync(document, io, cpu).get(30, TimeUnit.SECONDS);
+
+        assertThat(results.toString(), equalTo(new SignatureVerifier().extractSignatures(document).toString()));
+        assertThat(threads, everyItem(startsWith("cpu")));
+    }
+
+    @Test
+    public void failsTheFutureInsteadOfThrowing() throws Exception
+    {
+        File missing = Paths.get("src", "test", "resources", "missing.pdf").toFile();
+        try
+        {
+            new SignatureVerifier().extractSignaturesAsync(missing, io, cpu).get(30, TimeUnit.SECONDS);
+            fail("The future should have failed");
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause(), instanceOf(NoSuchFileException.class));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.BatchVerifier;
+import signature.DocumentResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class BatchVerifierTest
+{
+    private static final Path FIXTURES = Paths.get("src", "test", "resources");
+
+    @Test
+    public void yieldsOneResultPerDocument() throws Exception
+    {
+        final SignatureVerifier signatureVerifier = new SignatureVerifier();
+        Set<Path> expected;
+        try (Stream<Path> files = Files.walk(FIXTURES))
+        {
+            expected = files.filter(path -> path.toString().endsWith(".pdf")).collect(Collectors.toSet());
+        }
+
+        List<DocumentResult> results;
+        try (Stream<DocumentResult> stream = new BatchVerifier(path -> signatureVerifier.extractSignatures(path.toFile()), 3).verify(FIXTURES))
+        {
+            results = stream.collect(Collectors.toList());
+        }
+
+        Set<Path> verified = new HashSet<>();
+        for (DocumentResult result : results)
+        {
+            verified.add(result.getDocument());
+            if (result.getDocument().endsWith("text_sigAdobeDC.2.pdf"))
+            {
+                assertThat(result.toString(), result.isVerified(), is(true));
+            }
+            if (result.getDocument().endsWith("text_sigNitro11.2.pdf"))
+            {
+                // a failing document yields its failure instead of aborting the batch
+                assertThat(result.getFailure(), notNullValue());
+            }
+        }
+        assertThat(results.size(), equalTo(expected.size()));
+        assertThat(verified, equalTo(expected));
+    }
+}
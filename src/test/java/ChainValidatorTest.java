@@ -0,0 +1,51 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.ChainValidator;
+import signature.SignatureResult;
+
+import java.io.File;
+import java.security.cert.TrustAnchor;
+import java.util.Collections;
+import java.util.Map;
+
+import static matcher.SignatureResultVerifiedMatcher.failedToVerify;
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+
+public class ChainValidatorTest
+{
+    private static final File BOUNCY_CASTLE_SIGNED = new File("src/test/resources/text_sigBCc.2.pdf");
+    private static final File ADOBE_SIGNED = new File("src/test/resources/text_sigAdobeDC.2.pdf");
+
+    @Test
+    public void validatedPathIsReused() throws Exception
+    {
+        ChainValidator chainValidator = ChainValidator.fromKeyStore(TestKeys.keyStore());
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setChainValidator(chainValidator);
+
+        assertThat(verifier.extractSignatures(BOUNCY_CASTLE_SIGNED).values(), everyItem(verified()));
+        assertThat(verifier.extractSignatures(BOUNCY_CASTLE_SIGNED).values(), everyItem(verified()));
+
+        assertThat(chainValidator.getCacheSize(), equalTo(1));
+        assertThat(chainValidator.getHitCount(), equalTo(1L));
+    }
+
+    @Test
+    public void untrustedSignerFailsVerification() throws Exception
+    {
+        SignatureVerifier verifier = new SignatureVerifier();
+        SignatureResult adobe = verifier.extractSignatures(ADOBE_SIGNED).values().iterator().next();
+        ChainValidator chainValidator = new ChainValidator(Collections.singleton(new TrustAnchor(adobe.getCertificate(), null)));
+        verifier.setChainValidator(chainValidator);
+
+        Map<String, SignatureResult> results = verifier.extractSignatures(BOUNCY_CASTLE_SIGNED);
+
+        assertThat(results.values(), everyItem(failedToVerify()));
+        assertThat(results.values().iterator().next().getDiagMessage(), containsString("chain validation failed"));
+        assertThat(chainValidator.getCacheSize(), equalTo(0));
+    }
+}
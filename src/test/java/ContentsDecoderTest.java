@@ -0,0 +1,56 @@
+import org.junit.Test;
+import signature.io.BufferByteSource;
+import signature.io.ContentsDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ContentsDecoderTest
+{
+    /**
+     * A DER SEQUENCE of 3 content bytes followed by zero padding, split by whitespace.
+     */
+    private static final byte[] PADDED = "xx<30 03 0201\n05 0000000000>yy".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void stopsAtTheDeclaredLength() throws IOException
+    {
+        ByteBuffer decoded = ContentsDecoder.decode(BufferByteSource.wrap(PADDED), 2, PADDED.length - 4);
+        assertThat(bytes(decoded), equalTo(new byte[] {0x30, 0x03, 0x02, 0x01, 0x05}));
+        assertThat(ContentsDecoder.decode(BufferByteSource.wrap(PADDED), new long[] {0, 2, PADDED.length - 2, 2}),
+                equalTo(new byte[] {0x30, 0x03, 0x02, 0x01, 0x05}));
+    }
+
+    @Test
+    public void reusesTheBufferOfTheThread() throws IOException
+    {
+        ByteBuffer first = ContentsDecoder.decode(BufferByteSource.wrap(PADDED), 2, PADDED.length - 4);
+        ByteBuffer second = ContentsDecoder.decode(BufferByteSource.wrap(PADDED), 2, PADDED.length - 4);
+        assertThat(second, sameInstance(first));
+    }
+
+    @Test
+    public void trimsDecodedContents()
+    {
+        assertThat(bytes(ContentsDecoder.trim(new byte[] {0x04, 0x01, 0x07, 0, 0, 0})),
+                equalTo(new byte[] {0x04, 0x01, 0x07}));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidHex() throws IOException
+    {
+        byte[] invalid = "<30 0x>".getBytes(StandardCharsets.US_ASCII);
+        ContentsDecoder.decode(BufferByteSource.wrap(invalid), 0, invalid.length);
+    }
+
+    private static byte[] bytes(ByteBuffer view)
+    {
+        return Arrays.copyOfRange(view.array(), view.arrayOffset() + view.position(), view.arrayOffset() + view.limit());
+    }
+}
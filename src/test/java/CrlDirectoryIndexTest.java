@@ -0,0 +1,191 @@
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureVerifier;
+import pdfbox.mkl.ValidateSignature;
+import signature.SignatureResult;
+import signature.revocation.CrlDirectoryIndex;
+import signature.revocation.RevocationStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.PrivateKey;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static matcher.SignatureResultVerifiedMatcher.failedToVerify;
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasItem;
+
+public class CrlDirectoryIndexTest
+{
+    private static final File BOUNCY_CASTLE_SIGNED = new File("src/test/resources/text_sigBCc.2.pdf");
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private X509Certificate issuer;
+    private PrivateKey issuerKey;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        issuer = TestKeys.signerCertificate();
+        issuerKey = TestKeys.signerKey();
+    }
+
+    @Test
+    public void lookupsMatchTheCrl() throws Exception
+    {
+        Random random = new Random(42);
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), new Date());
+        Set<BigInteger> revoked = new LinkedHashSet<>();
+        while (revoked.size() < 5000)
+        {
+            BigInteger serial = new BigInteger(1 + random.nextInt(160), random);
+            if (revoked.add(serial))
+            {
+                builder.addCRLEntry(serial, new Date(revoked.size() * DAY), 0);
+            }
+        }
+        // over-long serials end up in the on-heap overflow map
+        BigInteger overLong = BigInteger.ONE.shiftLeft(170);
+        builder.addCRLEntry(overLong, new Date(0), 0);
+        X509CRL crl = write(builder, "ca.crl");
+
+        CrlDirectoryIndex index = new CrlDirectoryIndex(folder.getRoot().toPath());
+        assertThat(index.getEntryCount(), equalTo(5001L));
+        for (BigInteger serial : revoked)
+        {
+            assertThat(revocationTime(index, serial), equalTo(crl.getRevokedCertificate(serial).getRevocationDate()));
+        }
+        assertThat(revocationTime(index, overLong), equalTo(new Date(0)));
+        for (int i = 0; i < 5000; i++)
+        {
+            BigInteger serial = new BigInteger(160, random);
+            assertThat(revocationTime(index, serial), equalTo(crl.getRevokedCertificate(serial) == null ? null : crl.getRevokedCertificate(serial).getRevocationDate()));
+        }
+    }
+
+    @Test
+    public void revokedSignerFailsVerification() throws Exception
+    {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), new Date());
+        builder.addCRLEntry(issuer.getSerialNumber(), new Date(0), 0);
+        write(builder, "ca.crl");
+
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setRevocationChecker(new CrlDirectoryIndex(folder.getRoot().toPath()));
+        Map<String, SignatureResult> results = verifier.extractSignatures(BOUNCY_CASTLE_SIGNED);
+
+        assertThat(results.values(), everyItem(failedToVerify()));
+        assertThat(results.values().iterator().next().getDiagMessage(), containsString("revoked"));
+    }
+
+    /**
+     * A revoked key can claim any /M, so only a verified signature timestamp before the revocation keeps the
+     * signature valid.
+     */
+    @Test
+    public void revocationAfterTimeStampDoesNotMatter() throws Exception
+    {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), new Date());
+        builder.addCRLEntry(issuer.getSerialNumber(), new Date(System.currentTimeMillis() - DAY), 0);
+        write(builder, "ca.crl");
+
+        // within the validity of the key store certificate, long before the revocation
+        final Date signingTime = new GregorianCalendar(2017, Calendar.JUNE, 1).getTime();
+        final TestKeys.TimeStampAuthority tsa = new TestKeys.TimeStampAuthority();
+        PDSignature signature = new PDSignature();
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+        signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
+        signature.setName("timeStamped");
+        File timeStamped = folder.newFile("timeStamped.pdf");
+        TestKeys.addSignature(BOUNCY_CASTLE_SIGNED, timeStamped, signature, content -> {
+            try
+            {
+                return TestKeys.signDetached(IOUtils.toByteArray(content), signingTime, tsa);
+            }
+            catch (Exception e)
+            {
+                throw new IOException(e);
+            }
+        });
+
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setRevocationChecker(new CrlDirectoryIndex(folder.getRoot().toPath()));
+
+        Map<String, SignatureResult> results = verifier.extractSignatures(timeStamped);
+        assertThat(results, hasEntry(equalTo("timeStamped"), verified()));
+        // the /M of the fixture signature is before the revocation as well, but only claimed by the signer
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.values(), hasItem(failedToVerify()));
+
+        ValidateSignature validateSignature = new ValidateSignature(null);
+        validateSignature.setRevocationChecker(new CrlDirectoryIndex(folder.getRoot().toPath()));
+        results = validateSignature.validateSignaturesImproved(timeStamped.toPath(), null);
+        assertThat(results, hasEntry(equalTo("timeStamped"), verified()));
+        assertThat(results.values(), hasItem(failedToVerify()));
+    }
+
+    @Test
+    public void refreshOnlyReloadsChangedFiles() throws Exception
+    {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), new Date());
+        write(builder, "a.crl");
+        write(builder, "b.crl");
+        CrlDirectoryIndex index = new CrlDirectoryIndex(folder.getRoot().toPath());
+        assertThat(index.getCrlCount(), equalTo(2));
+        assertThat(index.refresh(), equalTo(0));
+
+        builder.addCRLEntry(BigInteger.TEN, new Date(0), 0);
+        write(builder, "b.crl");
+        // the rewritten file may well have the same size, make sure its modification time differs
+        Files.setLastModifiedTime(folder.getRoot().toPath().resolve("b.crl"), FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        assertThat(index.refresh(), equalTo(1));
+        assertThat(revocationTime(index, BigInteger.TEN), equalTo(new Date(0)));
+
+        Files.delete(folder.getRoot().toPath().resolve("a.crl"));
+        assertThat(index.refresh(), equalTo(0));
+        assertThat(index.getCrlCount(), equalTo(1));
+    }
+
+    private X509CRL write(X509v2CRLBuilder builder, String name) throws Exception
+    {
+        X509CRL crl = new JcaX509CRLConverter().getCRL(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(issuerKey)));
+        Files.write(folder.getRoot().toPath().resolve(name), crl.getEncoded());
+        return crl;
+    }
+
+    /**
+     * @return the revocation time of a certificate with the given serial issued by the test issuer, or null
+     */
+    private Date revocationTime(CrlDirectoryIndex index, BigInteger serial)
+    {
+        RevocationStatus status = index.check(issuer.getSubjectX500Principal(), serial, new Date(Long.MAX_VALUE / 2));
+        return status.getRevocationTime();
+    }
+}
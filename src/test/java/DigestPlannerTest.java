@@ -0,0 +1,63 @@
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.junit.Test;
+import signature.ByteRangeContent;
+import signature.DigestPlanner;
+import signature.io.ChannelByteSource;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class DigestPlannerTest
+{
+    private static final Path FIXTURE = Paths.get("src", "test", "resources", "text_sigBCc_sigNitro11.2.pdf");
+
+    private static final List<ASN1ObjectIdentifier> ALGORITHMS = Arrays.asList(OIWObjectIdentifiers.idSHA1, NISTObjectIdentifiers.id_sha256);
+
+    /**
+     * Nested, incremental-signature-like ranges, an unsorted range and a range beyond the end of the document must
+     * digest exactly like digesting each range on its own.
+     */
+    @Test
+    public void singlePassMatchesIndividualDigests() throws Exception
+    {
+        long[][] byteRanges = {
+            { 0, 100, 200, 300 },
+            { 0, 1444, 20390, 518 },
+            { 0, 400, 500, 15000 },
+            { 0, 20908 },
+            { 0, 1444, 20390, 1000 },
+            { 500, 100, 0, 100 },
+            { 50, 10, 70, 10, 90, 10 }
+        };
+
+        try (FileChannel channel = FileChannel.open(FIXTURE, StandardOpenOption.READ))
+        {
+            DigestPlanner planner = new DigestPlanner(null);
+            List<DigestPlanner.Request> requests = new ArrayList<>();
+            for (long[] byteRange : byteRanges)
+            {
+                requests.add(planner.add(byteRange, ALGORITHMS));
+            }
+            planner.digest(new ChannelByteSource(channel));
+
+            for (DigestPlanner.Request request : requests)
+            {
+                ByteRangeContent content = new ByteRangeContent(channel, request.getByteRange());
+                assertArrayEquals(Arrays.toString(request.getByteRange()), content.digest(MessageDigest.getInstance("SHA-1")),
+                        request.getDigest(OIWObjectIdentifiers.idSHA1));
+                assertArrayEquals(Arrays.toString(request.getByteRange()), content.digest(MessageDigest.getInstance("SHA-256")),
+                        request.getDigest(NISTObjectIdentifiers.id_sha256));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.tsp.TSPException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureVerifier;
+import pdfbox.mkl.ValidateSignature;
+import signature.SignatureResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Map;
+
+import static matcher.SignatureResultVerifiedMatcher.failedToVerify;
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasEntry;
+
+/**
+ * PAdES documents: ETSI.CAdES.detached signatures and stacked ETSI.RFC3161 document timestamps, as in long-term
+ * archive documents, signed in-process with the test key store and a throwaway TSA.
+ */
+public class DocumentTimeStampTest
+{
+    private static final File FIXTURE = new File("src/test/resources/text_sigBCa.2.pdf");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestKeys.TimeStampAuthority tsa;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        tsa = new TestKeys.TimeStampAuthority();
+    }
+
+    @Test
+    public void stackedDocumentTimeStamps() throws Exception
+    {
+        File pdf = addDocumentTimeStamp(addDocumentTimeStamp(addDocumentTimeStamp(FIXTURE, "ts1", false), "ts2", false), "ts3", false);
+
+        Map<String, SignatureResult> results = new SignatureVerifier().extractSignatures(pdf);
+        assertThat(results.size(), equalTo(4));
+        assertThat(results.values(), everyItem(verified()));
+        assertThat(results.get("ts3").getCertificate(), equalTo(tsa.certificate));
+
+        assertThat(validate(pdf).values(), everyItem(verified()));
+    }
+
+    @Test
+    public void documentTimeStampOverOtherData() throws Exception
+    {
+        File pdf = addDocumentTimeStamp(addDocumentTimeStamp(FIXTURE, "ts1", false), "ts2", true);
+
+        Map<String, SignatureResult> results = new SignatureVerifier().extractSignatures(pdf);
+        assertThat(results, hasEntry(equalTo("ts1"), verified()));
+        assertThat(results, hasEntry(equalTo("ts2"), failedToVerify()));
+
+        assertThat(validate(pdf), hasEntry(equalTo("ts2"), failedToVerify()));
+    }
+
+    @Test
+    public void cadesSignatureWithDocumentTimeStamp() throws Exception
+    {
+        File pdf = addDocumentTimeStamp(addCadesSignature(FIXTURE, false), "ts", false);
+
+        Map<String, SignatureResult> results = new SignatureVerifier().extractSignatures(pdf);
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.values(), everyItem(verified()));
+
+        assertThat(validate(pdf).values(), everyItem(verified()));
+    }
+
+    /**
+     * /M is optional, a signature timestamp provides the signing time instead.
+     */
+    @Test
+    public void cadesSignatureWithTimeStampInsteadOfSignDate() throws Exception
+    {
+        File pdf = addCadesSignature(FIXTURE, true);
+
+        assertThat(new SignatureVerifier().extractSignatures(pdf), hasEntry(equalTo("cades"), verified()));
+        assertThat(validate(pdf), hasEntry(equalTo("cades"), verified()));
+    }
+
+    private Map<String, SignatureResult> validate(File pdf) throws Exception
+    {
+        return new ValidateSignature(folder.getRoot()).validateSignaturesImproved(Files.readAllBytes(pdf.toPath()), pdf.getName() + "-%s.cms");
+    }
+
+    /**
+     * @param timeStamped whether to add a signature timestamp token instead of /M
+     */
+    private File addCadesSignature(File pdf, final boolean timeStamped) throws IOException
+    {
+        PDSignature signature = new PDSignature();
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+        signature.setSubFilter(COSName.getPDFName("ETSI.CAdES.detached"));
+        signature.setName("cades");
+        // within the validity of the key store certificate
+        final Calendar signDate = new GregorianCalendar(2017, Calendar.JUNE, 1);
+        if (!timeStamped)
+        {
+            signature.setSignDate(signDate);
+        }
+        return sign(pdf, signature, content -> {
+            try
+            {
+                return TestKeys.signDetached(IOUtils.toByteArray(content), signDate.getTime(), timeStamped ? tsa : null);
+            }
+            catch (GeneralSecurityException | OperatorCreationException | CMSException | TSPException e)
+            {
+                throw new IOException(e);
+            }
+        });
+    }
+
+    /**
+     * @param otherData whether to time stamp other data than the signed byte range
+     */
+    private File addDocumentTimeStamp(File pdf, String name, final boolean otherData) throws IOException
+    {
+        PDSignature signature = new PDSignature();
+        signature.setType(COSName.getPDFName("DocTimeStamp"));
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+        signature.setSubFilter(COSName.getPDFName("ETSI.RFC3161"));
+        signature.setName(name);
+        return sign(pdf, signature, content -> {
+            try
+            {
+                byte[] data = otherData ? new byte[] { 1, 2, 3 } : IOUtils.toByteArray(content);
+                return tsa.stamp(data, new Date());
+            }
+            catch (Exception e)
+            {
+                throw new IOException(e);
+            }
+        });
+    }
+
+    private File sign(File pdf, PDSignature signature, SignatureInterface signer) throws IOException
+    {
+        File signed = folder.newFile();
+        TestKeys.addSignature(pdf, signed, signature, signer);
+        return signed;
+    }
+}
@@ -0,0 +1,114 @@
+import org.junit.Before;
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.SignatureResult;
+import signature.VerificationContext;
+import signature.revocation.LocalOcspResponder;
+import signature.revocation.OcspChecker;
+
+import java.io.File;
+import java.net.URI;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static matcher.SignatureResultVerifiedMatcher.failedToVerify;
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+public class OcspCheckerTest
+{
+    private static final File BOUNCY_CASTLE_SIGNED = new File("src/test/resources/text_sigBCc.2.pdf");
+    private static final URI RESPONDER = URI.create("http://localhost/ocsp");
+
+    private X509Certificate issuer;
+    private LocalOcspResponder responder;
+    private OcspChecker checker;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        issuer = TestKeys.signerCertificate();
+        responder = new LocalOcspResponder(issuer, TestKeys.signerKey());
+        checker = new OcspChecker(new VerificationContext(), responder, RESPONDER, 100, OcspChecker.DEFAULT_TIME_TO_LIVE);
+    }
+
+    @Test
+    public void responsesAreCachedUntilNextUpdate() throws Exception
+    {
+        assertThat(checker.check(issuer, issuer, new Date()).isGood(), is(true));
+        assertThat(checker.check(issuer, issuer, new Date()).isGood(), is(true));
+        assertThat(responder.getRequestCount(), equalTo(1L));
+
+        // a response whose nextUpdate has passed is fetched again
+        responder.setValidity(1);
+        OcspChecker expiring = new OcspChecker(new VerificationContext(), responder, RESPONDER, 100, OcspChecker.DEFAULT_TIME_TO_LIVE);
+        expiring.check(issuer, issuer, new Date());
+        Thread.sleep(5);
+        expiring.check(issuer, issuer, new Date());
+        assertThat(expiring.getRequestCount(), equalTo(2L));
+    }
+
+    @Test
+    public void concurrentLookupsAreCoalesced() throws Exception
+    {
+        responder.setLatency(200);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+            {
+                futures.add(executor.submit(new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call() throws Exception
+                    {
+                        return checker.check(issuer, issuer, new Date()).isGood();
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures)
+            {
+                assertThat(future.get(), is(true));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertThat(responder.getRequestCount(), equalTo(1L));
+    }
+
+    @Test
+    public void revokedSignerFailsVerification() throws Exception
+    {
+        responder.revoke(issuer.getSerialNumber(), new Date(0));
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setRevocationChecker(checker);
+
+        Map<String, SignatureResult> results = verifier.extractSignatures(BOUNCY_CASTLE_SIGNED);
+
+        assertThat(results.values(), everyItem(failedToVerify()));
+        assertThat(results.values().iterator().next().getDiagMessage(), containsString("revoked"));
+    }
+
+    @Test
+    public void goodSignerPassesVerification() throws Exception
+    {
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setRevocationChecker(checker);
+
+        assertThat(verifier.extractSignatures(BOUNCY_CASTLE_SIGNED).values(), everyItem(verified()));
+    }
+}
@@ -0,0 +1,129 @@
+import fixture.GenerateSyntheticCorpus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureVerifier;
+import pdfbox.mkl.ValidateSignature;
+import signature.OrderedExecution;
+import signature.SignatureResult;
+import signature.VerificationListener;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class ParallelVerificationTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resultsAreCollectedInTaskOrder() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+            {
+                final int task = i;
+                tasks.add(() ->
+                {
+                    // the first tasks finish last
+                    Thread.sleep(5 * (8 - task));
+                    return task;
+                });
+            }
+            assertThat(OrderedExecution.invokeAll(executor, tasks), equalTo(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7)));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void theCallerRunsWhatTheExecutorRejects() throws Exception
+    {
+        List<Callable<String>> tasks = Arrays.asList(() -> Thread.currentThread().getName(), () -> Thread.currentThread().getName());
+        List<String> threads = OrderedExecution.invokeAll(command ->
+        {
+            throw new RejectedExecutionException();
+        }, tasks);
+        assertThat(threads, everyItem(equalTo(Thread.currentThread().getName())));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void theFirstFailureIsThrown() throws Exception
+    {
+        OrderedExecution.invokeAll(Runnable::run, Arrays.<Callable<String>>asList(() -> "fine", () ->
+        {
+            throw new IllegalStateException("broken");
+        }));
+    }
+
+    /**
+     * A co-signed document verifies the same in parallel as sequentially, and is reported in document order.
+     */
+    @Test
+    public void verifiesTheSignaturesOfADocumentInParallel() throws Exception
+    {
+        Path document = new GenerateSyntheticCorpus(folder.getRoot().toPath())
+                .generate(GenerateSyntheticCorpus.Shape.of("cosigned", 1, 0, 6));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Boolean> checked = Collections.synchronizedList(new ArrayList<>());
+            SignatureVerifier verifier = new SignatureVerifier();
+            verifier.setExecutor(executor);
+            verifier.setVerificationListener(new VerificationListener()
+            {
+                @Override
+                public void signatureChecked(String name, boolean valid, Throwable cause)
+                {
+                    checked.add(valid);
+                }
+            });
+            Map<String, SignatureResult> parallel = verifier.extractSignatures(document.toFile());
+            Map<String, SignatureResult> sequential = new SignatureVerifier().extractSignatures(document.toFile());
+
+            assertThat(checked, hasSize(6));
+            assertThat(checked, everyItem(is(true)));
+            assertThat(parallel.toString(), equalTo(sequential.toString()));
+
+            List<Integer> found = new ArrayList<>();
+            ValidateSignature validateSignature = new ValidateSignature(null);
+            validateSignature.setExecutor(executor);
+            validateSignature.setVerificationListener(new VerificationListener()
+            {
+                @Override
+                public void signatureFound(int index, String name, String subFilter, Calendar signDate)
+                {
+                    found.add(index);
+                }
+            });
+            Map<String, SignatureResult> validated = validateSignature.validateSignaturesImproved(document, null);
+            assertThat(found, equalTo(Arrays.asList(1, 2, 3, 4, 5, 6)));
+            assertThat(validated.values().iterator().next().isVerified(), is(true));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
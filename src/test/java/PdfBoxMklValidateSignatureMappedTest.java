@@ -0,0 +1,31 @@
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+
+import static matcher.SignatureResultVerifiedMatcher.failedToVerify;
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasValue;
+
+/**
+ * Runs {@link PdfBoxMklValidateSignatureTest} through the memory-mapped {@link java.nio.file.Path} entry point,
+ * which must yield the same results as the {@code byte[]} one.
+ */
+@RunWith(Parameterized.class)
+public class PdfBoxMklValidateSignatureMappedTest extends PdfBoxMklValidateSignatureTest
+{
+    @Test
+    @Override
+    public void validateSignature() throws Exception
+    {
+        assertThat(validateSignature.validateSignaturesImproved(pdfFixture.toPath(), pdfFixture.getName() + "-%s.cms"),
+                   hasValue(valid ? verified() : failedToVerify()));
+    }
+
+    public PdfBoxMklValidateSignatureMappedTest(String description, File pdfFixture, boolean valid)
+    {
+        super(description, pdfFixture, valid);
+    }
+}
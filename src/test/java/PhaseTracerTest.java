@@ -0,0 +1,78 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.metrics.JfrPhaseTracer;
+import signature.metrics.Phase;
+import signature.metrics.PhaseTracer;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+
+public class PhaseTracerTest
+{
+    @Test
+    public void verifierTracesEachPhaseWithItsFields() throws Exception
+    {
+        final List<String> spans = new ArrayList<>();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setPhaseTracer(phase -> new PhaseTracer.Span()
+        {
+            private final StringBuilder fields = new StringBuilder(phase.name());
+
+            @Override
+            public boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            public PhaseTracer.Span subFilter(String subFilter)
+            {
+                fields.append(" ").append(subFilter);
+                return this;
+            }
+
+            @Override
+            public PhaseTracer.Span digestAlgorithm(String digestAlgorithm)
+            {
+                fields.append(" ").append(digestAlgorithm);
+                return this;
+            }
+
+            @Override
+            public void end()
+            {
+                spans.add(fields.toString());
+            }
+        });
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+
+        assertThat(spans, contains("LOAD", "LOCATE", "CMS_PARSE adbe.pkcs7.detached", "DIGEST SHA256",
+                "SIGNER_VERIFY adbe.pkcs7.detached SHA256"));
+    }
+
+    /**
+     * Without a recording, or without Flight Recorder at all, the events are not even created.
+     */
+    @Test
+    public void flightRecorderEventsCostNothingWhileNotRecorded() throws Exception
+    {
+        PhaseTracer tracer = JfrPhaseTracer.create();
+        assertThat(tracer.start(Phase.DIGEST).isEnabled(), is(false));
+
+        final List<Phase> traced = new ArrayList<>();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setPhaseTracer(phase ->
+        {
+            traced.add(phase);
+            return tracer.start(phase);
+        });
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+        assertThat(traced, hasItem(Phase.SIGNER_VERIFY));
+    }
+}
@@ -0,0 +1,169 @@
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureInventory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class SignatureInventoryTest
+{
+    private static final Path RESOURCES = Paths.get("src", "test", "resources");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path archive;
+    private Path index;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        archive = folder.newFolder("archive").toPath();
+        index = folder.getRoot().toPath().resolve("signatures.idx");
+        Files.createDirectories(archive.resolve("sha1"));
+        Files.copy(RESOURCES.resolve("text_sigBCc.2.pdf"), archive.resolve("text_sigBCc.2.pdf"));
+        Files.copy(RESOURCES.resolve("sigField_sigAdobeDC.2.pdf"), archive.resolve("sigField_sigAdobeDC.2.pdf"));
+        Files.copy(RESOURCES.resolve("sigFieldPkcs7Sha1_sigAdobeDC.2.pdf"), archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC.2.pdf"));
+        Files.copy(RESOURCES.resolve("sigFieldPkcs7Sha1_sigAdobeDC_modified.3.pdf"), archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC_modified.3.pdf"));
+    }
+
+    @Test
+    public void queries() throws Exception
+    {
+        SignatureInventory inventory = new SignatureInventory(archive, index);
+        assertThat(inventory.update(), equalTo(4));
+
+        List<SignatureInventory.Document> sha1 = inventory.find(signature -> "adbe.pkcs7.sha1".equals(signature.getSubFilter()));
+        assertThat(paths(sha1), containsInAnyOrder(archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC.2.pdf"),
+                archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC_modified.3.pdf")));
+
+        X509Certificate signer = TestKeys.signerCertificate();
+        List<SignatureInventory.Document> bySigner = inventory.find(signature -> signer.getIssuerX500Principal().equals(signature.getIssuer())
+                && signer.getSerialNumber().equals(signature.getSerialNumber()));
+        assertThat(paths(bySigner), contains(archive.resolve("text_sigBCc.2.pdf")));
+
+        SignatureInventory.Document signed = inventory.getDocument(archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC.2.pdf"));
+        SignatureInventory.Document modified = inventory.getDocument(archive.resolve("sha1/sigFieldPkcs7Sha1_sigAdobeDC_modified.3.pdf"));
+        assertThat(signed.getSignatures(), hasSize(1));
+        assertThat(signed.getSignatures().get(0).getSignDate(), notNullValue());
+        assertThat(signed.coversDocument(signed.getSignatures().get(0)), equalTo(true));
+        assertThat(modified.coversDocument(modified.getSignatures().get(0)), equalTo(false));
+    }
+
+    @Test
+    public void rescansOnlyChangedDocuments() throws Exception
+    {
+        assertThat(new SignatureInventory(archive, index).update(), equalTo(4));
+
+        SignatureInventory reopened = new SignatureInventory(archive, index);
+        assertThat(reopened.size(), equalTo(4));
+        assertThat(reopened.update(), equalTo(0));
+
+        Path changed = archive.resolve("text_sigBCc.2.pdf");
+        Files.write(changed, "%%EOF\n".getBytes("US-ASCII"), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 2000));
+        Files.delete(archive.resolve("sigField_sigAdobeDC.2.pdf"));
+        Files.write(archive.resolve("broken.pdf"), "not a PDF".getBytes("US-ASCII"));
+
+        assertThat(reopened.update(), equalTo(2));
+        assertThat(reopened.size(), equalTo(4));
+        assertThat(reopened.getDocument(archive.resolve("sigField_sigAdobeDC.2.pdf")), equalTo(null));
+        assertThat(reopened.getDocument(archive.resolve("broken.pdf")).getFailure(), notNullValue());
+        assertThat(reopened.getDocument(archive.resolve("broken.pdf")).getSignatures(), empty());
+
+        SignatureInventory.Document document = new SignatureInventory(archive, index).getDocument(changed);
+        assertThat(document.getSignatures(), hasSize(1));
+        assertThat(document.getSignatures().get(0).getSerialNumber(), notNullValue());
+        assertThat(document.coversDocument(document.getSignatures().get(0)), equalTo(false));
+    }
+
+    /**
+     * Signing times before 1970 are negative, they must not be mistaken for a missing /M.
+     */
+    @Test
+    public void keepsSignDatesBefore1970() throws Exception
+    {
+        Path blank = folder.newFile("blank.pdf").toPath();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            document.save(blank.toFile());
+        }
+        Calendar signDate = new GregorianCalendar(1969, Calendar.DECEMBER, 31, 23, 59, 59);
+        try (PDDocument document = PDDocument.load(blank.toFile());
+             OutputStream out = Files.newOutputStream(archive.resolve("early.pdf")))
+        {
+            PDSignature signature = new PDSignature();
+            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+            signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
+            signature.setSignDate(signDate);
+            // not a CMS structure, the signature is inventoried without a signer
+            document.addSignature(signature, content -> new byte[] { 1, 2, 3 });
+            document.saveIncremental(out);
+        }
+        new SignatureInventory(archive, index).update();
+
+        SignatureInventory.Document early = new SignatureInventory(archive, index).getDocument(archive.resolve("early.pdf"));
+        assertThat(early.getSignatures(), hasSize(1));
+        assertThat(early.getSignatures().get(0).getSignDate(), equalTo(signDate.getTime()));
+    }
+
+    /**
+     * Strings in the index are not limited to the 65535 bytes of modified UTF-8.
+     */
+    @Test
+    public void keepsLongStrings() throws Exception
+    {
+        Path blank = folder.newFile("blank.pdf").toPath();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            document.save(blank.toFile());
+        }
+        char[] subFilter = new char[70000];
+        Arrays.fill(subFilter, 'x');
+        try (PDDocument document = PDDocument.load(blank.toFile());
+             OutputStream out = Files.newOutputStream(archive.resolve("long.pdf")))
+        {
+            PDSignature signature = new PDSignature();
+            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+            signature.setSubFilter(COSName.getPDFName(new String(subFilter)));
+            document.addSignature(signature, content -> new byte[] { 1, 2, 3 });
+            document.saveIncremental(out);
+        }
+        new SignatureInventory(archive, index).update();
+
+        SignatureInventory.Document document = new SignatureInventory(archive, index).getDocument(archive.resolve("long.pdf"));
+        assertThat(document.getSignatures(), hasSize(1));
+        assertThat(document.getSignatures().get(0).getSubFilter(), equalTo(new String(subFilter)));
+    }
+
+    private static List<Path> paths(List<SignatureInventory.Document> documents)
+    {
+        return documents.stream().map(SignatureInventory.Document::getPath).collect(java.util.stream.Collectors.toList());
+    }
+}
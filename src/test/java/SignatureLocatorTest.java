@@ -0,0 +1,273 @@
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureDictionary;
+import pdfbox.SignatureLocator;
+import signature.io.BufferByteSource;
+import signature.io.ByteSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+
+public class SignatureLocatorTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The fixtures cover cross-reference tables, cross-reference and object streams and incremental updates.
+     */
+    @Test
+    public void locatesTheSignaturesPdfBoxFinds() throws IOException
+    {
+        List<Path> fixtures;
+        try (Stream<Path> files = Files.walk(Paths.get("src", "test", "resources")))
+        {
+            fixtures = files.filter(path -> path.toString().endsWith(".pdf")).collect(Collectors.toList());
+        }
+        assertThat(fixtures, not(empty()));
+        for (Path fixture : fixtures)
+        {
+            byte[] pdf = Files.readAllBytes(fixture);
+            List<SignatureDictionary> located = new SignatureLocator(BufferByteSource.wrap(pdf)).locate();
+            try (PDDocument document = PDDocument.load(pdf))
+            {
+                List<PDSignature> expected = document.getSignatureDictionaries();
+                assertThat(fixture.toString(), located.size(), equalTo(expected.size()));
+                for (int i = 0; i < expected.size(); i++)
+                {
+                    PDSignature signature = expected.get(i);
+                    SignatureDictionary dictionary = located.get(i);
+                    assertThat(fixture.toString(), dictionary.getName(), equalTo(signature.getName()));
+                    assertThat(fixture.toString(), dictionary.getSubFilter(), equalTo(signature.getSubFilter()));
+                    assertThat(fixture.toString(), dictionary.getSignDate(), equalTo(signature.getSignDate()));
+                    // the /Contents without the zero padding of the placeholder
+                    byte[] contents = ((COSString) signature.getCOSObject().getDictionaryObject(COSName.CONTENTS)).getBytes();
+                    ByteBuffer decoded = dictionary.getContents(BufferByteSource.wrap(pdf));
+                    assertThat(fixture.toString(), decoded.remaining(), lessThanOrEqualTo(contents.length));
+                    assertThat(fixture.toString(), Arrays.copyOfRange(decoded.array(), decoded.position(), decoded.limit()),
+                            equalTo(Arrays.copyOf(contents, decoded.remaining())));
+                    for (int j = decoded.remaining(); j < contents.length; j++)
+                    {
+                        assertThat(fixture.toString(), contents[j], equalTo((byte) 0));
+                    }
+
+                    long[] byteRange = dictionary.getByteRange();
+                    int[] expectedByteRange = signature.getByteRange();
+                    assertThat(byteRange.length, equalTo(expectedByteRange.length));
+                    for (int j = 0; j < byteRange.length; j++)
+                    {
+                        assertThat(byteRange[j], equalTo((long) expectedByteRange[j]));
+                    }
+                    if (!fixture.getFileName().toString().contains("_modified"))
+                    {
+                        // the /Contents string fills the gap of the byte range, unless the document was rewritten
+                        assertThat(fixture.toString(), dictionary.getContentsOffset(), equalTo(byteRange[0] + byteRange[1]));
+                        assertThat(dictionary.getContentsOffset() + dictionary.getContentsLength(), equalTo(byteRange[2]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unsignedDocument() throws IOException
+    {
+        File pdf = folder.newFile();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            document.save(pdf);
+        }
+        assertThat(new SignatureLocator(BufferByteSource.wrap(Files.readAllBytes(pdf.toPath()))).locate(), empty());
+    }
+
+    @Test
+    public void encryptedDocumentFallsBackToPdfBox() throws IOException
+    {
+        File pdf = folder.newFile();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            StandardProtectionPolicy policy = new StandardProtectionPolicy("owner", "", new AccessPermission());
+            policy.setEncryptionKeyLength(40);
+            document.protect(policy);
+            document.save(pdf);
+        }
+        ByteSource source = BufferByteSource.wrap(Files.readAllBytes(pdf.toPath()));
+        try
+        {
+            new SignatureLocator(source).locate();
+            throw new AssertionError("Encrypted documents are not supported by the locator");
+        }
+        catch (IOException e)
+        {
+            assertThat(e.getMessage().length(), greaterThan(0));
+        }
+        assertThat(SignatureLocator.locateSignatures(source), empty());
+    }
+
+    /**
+     * Malformed input makes the locator fail with an {@link IOException}, so that PDFBox gets to try it.
+     */
+    @Test
+    public void malformedReferenceFallsBackToPdfBox() throws IOException
+    {
+        File pdf = folder.newFile();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            document.save(pdf);
+        }
+        byte[] original = Files.readAllBytes(pdf.toPath());
+        String text = new String(original, StandardCharsets.ISO_8859_1);
+        int root = text.lastIndexOf("/Root ");
+        String reference = text.substring(root, text.indexOf(" R", root) + 2);
+        // the trailer follows the cross-reference table, its offsets stay valid
+        ByteSource source = BufferByteSource.wrap(text.replace(reference, "/Root 1 99999999999 R")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        try
+        {
+            new SignatureLocator(source).locate();
+            throw new AssertionError("The generation does not fit an int");
+        }
+        catch (IOException e)
+        {
+            assertThat(e.getMessage(), containsString("99999999999"));
+        }
+        try
+        {
+            assertThat(SignatureLocator.locateSignatures(source), empty());
+        }
+        catch (IOException e)
+        {
+            // PDFBox may reject the document as well, but only ever with a checked exception
+        }
+    }
+
+    /**
+     * Deeply nested arrays are rejected with an {@link IOException} instead of overflowing the stack.
+     */
+    @Test
+    public void deepNestingFallsBackToPdfBox() throws IOException
+    {
+        File pdf = folder.newFile();
+        try (PDDocument document = new PDDocument())
+        {
+            document.addPage(new PDPage());
+            document.save(pdf);
+        }
+        String text = new String(Files.readAllBytes(pdf.toPath()), StandardCharsets.ISO_8859_1);
+        char[] nesting = new char[200000];
+        Arrays.fill(nesting, '[');
+        int trailer = text.lastIndexOf("trailer");
+        // the trailer follows the cross-reference table, its offsets stay valid
+        ByteSource source = BufferByteSource.wrap((text.substring(0, trailer) + text.substring(trailer).replaceFirst("<<", "<< /Deep " + new String(nesting)))
+                .getBytes(StandardCharsets.ISO_8859_1));
+        try
+        {
+            new SignatureLocator(source).locate();
+            throw new AssertionError("The nesting exceeds the limit");
+        }
+        catch (IOException e)
+        {
+            assertThat(e.getMessage(), containsString("nested"));
+        }
+        try
+        {
+            SignatureLocator.locateSignatures(source);
+        }
+        catch (IOException e)
+        {
+            // PDFBox runs out of stack on the nesting, which is reported as a checked exception as well
+        }
+    }
+
+    /**
+     * An object freed by an incremental update is gone, even though an older section still locates it.
+     */
+    @Test
+    public void objectFreedByAnUpdateIsGone() throws IOException
+    {
+        byte[] pdf = Files.readAllBytes(Paths.get("src", "test", "resources", "text_sigBCc.2.pdf"));
+        assertThat(new SignatureLocator(BufferByteSource.wrap(pdf)).locate().size(), equalTo(1));
+        assertThat(new SignatureLocator(BufferByteSource.wrap(freeSignatureValue(pdf, false))).locate(), empty());
+    }
+
+    /**
+     * The cross-reference table of a hybrid-reference file lists the objects its XRefStm locates as free.
+     */
+    @Test
+    public void objectFreedInTheTableOfAHybridFileIsInItsXrefStream() throws IOException
+    {
+        byte[] pdf = Files.readAllBytes(Paths.get("src", "test", "resources", "text_sigBCc.2.pdf"));
+        List<SignatureDictionary> located = new SignatureLocator(BufferByteSource.wrap(freeSignatureValue(pdf, true))).locate();
+        assertThat(located.size(), equalTo(1));
+        assertThat(located.get(0).getName(), equalTo(new SignatureLocator(BufferByteSource.wrap(pdf)).locate().get(0).getName()));
+    }
+
+    /**
+     * Appends an incremental update whose cross-reference table marks the signature value of the first signature
+     * field as free.
+     *
+     * @param hybrid whether the update has an XRefStm, too, which locates the signature value where it was
+     */
+    private static byte[] freeSignatureValue(byte[] pdf, boolean hybrid) throws IOException
+    {
+        long number;
+        long size;
+        long rootNumber;
+        try (PDDocument document = PDDocument.load(pdf))
+        {
+            COSObject value = (COSObject) document.getSignatureFields().get(0).getCOSObject().getItem(COSName.V);
+            number = value.getObjectNumber();
+            size = document.getDocument().getTrailer().getLong(COSName.SIZE);
+            rootNumber = ((COSObject) document.getDocument().getTrailer().getItem(COSName.ROOT)).getObjectNumber();
+        }
+        String text = new String(pdf, StandardCharsets.ISO_8859_1);
+        int startXref = text.lastIndexOf("startxref");
+        long previous = Long.parseLong(text.substring(startXref + "startxref".length(), text.indexOf("%%EOF", startXref)).trim());
+        StringBuilder update = new StringBuilder(text).append('\n');
+        String xrefStream = "";
+        if (hybrid)
+        {
+            int valueOffset = text.lastIndexOf("\n" + number + " 0 obj") + 1;
+            char[] entry = { 1, (char) (valueOffset >>> 24), (char) (valueOffset >>> 16 & 0xff),
+                    (char) (valueOffset >>> 8 & 0xff), (char) (valueOffset & 0xff), 0 };
+            xrefStream = " /XRefStm " + update.length();
+            update.append(size).append(" 0 obj\n<< /Type /XRef /Size ").append(size + 1).append(" /Index [").append(number)
+                    .append(" 1] /W [1 4 1] /Length 6 >>\nstream\n").append(entry).append("\nendstream\nendobj\n");
+            size++;
+        }
+        int xref = update.length();
+        update.append("xref\n").append(number).append(" 1\n0000000000 65535 f\r\ntrailer\n<< /Size ").append(size)
+                .append(" /Root ").append(rootNumber).append(" 0 R /Prev ").append(previous).append(xrefStream)
+                .append(" >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        return update.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
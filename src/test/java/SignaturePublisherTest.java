@@ -0,0 +1,144 @@
+import fixture.GenerateSyntheticCorpus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureVerifier;
+import signature.Flow;
+import signature.SignatureResult;
+
+import java.io.File;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SignaturePublisherTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void publishesAsManyResultsAsRequested() throws Exception
+    {
+        File document = generate(GenerateSyntheticCorpus.Shape.of("cosigned", 1, 0, 4));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new SignatureVerifier().publishSignatures(document, Runnable::run).subscribe(subscriber);
+
+        assertThat(subscriber.results, hasSize(0));
+        subscriber.subscription.request(1);
+        assertThat(subscriber.results, hasSize(1));
+        subscriber.subscription.request(2);
+        assertThat(subscriber.results, hasSize(3));
+        assertThat(subscriber.completed, is(false));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.results, hasSize(4));
+        assertThat(subscriber.completed, is(true));
+        assertThat(subscriber.results, everyItem(equalTo(true)));
+    }
+
+    /**
+     * A subscriber may reject a document at its first failing signature.
+     */
+    @Test
+    public void stopsVerifyingWhenCancelled() throws Exception
+    {
+        File document = generate(GenerateSyntheticCorpus.Shape.of("tampered", 1, 0, 3).tampered());
+        RecordingSubscriber subscriber = new RecordingSubscriber()
+        {
+            @Override
+            public void onNext(SignatureResult item)
+            {
+                super.onNext(item);
+                if (!item.isVerified())
+                {
+                    subscription.cancel();
+                }
+            }
+        };
+        new SignatureVerifier().publishSignatures(document, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.results, equalTo(Collections.singletonList(false)));
+        assertThat(subscriber.completed, is(false));
+    }
+
+    /**
+     * A subscriber that throws from onNext is treated as cancelled, not sent its own failure.
+     */
+    @Test
+    public void throwingSubscriberIsCancelled() throws Exception
+    {
+        File document = generate(GenerateSyntheticCorpus.Shape.of("cosigned", 1, 0, 3));
+        RecordingSubscriber subscriber = new RecordingSubscriber()
+        {
+            @Override
+            public void onNext(SignatureResult item)
+            {
+                super.onNext(item);
+                throw new IllegalStateException("Rejected");
+            }
+        };
+        new SignatureVerifier().publishSignatures(document, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.results, hasSize(1));
+        assertThat(subscriber.failure, nullValue());
+        assertThat(subscriber.completed, is(false));
+    }
+
+    @Test
+    public void signalsFailures() throws Exception
+    {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new SignatureVerifier().publishSignatures(new File(folder.getRoot(), "missing.pdf"), Runnable::run)
+                .subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        assertThat(subscriber.failure, instanceOf(NoSuchFileException.class));
+    }
+
+    private File generate(GenerateSyntheticCorpus.Shape shape) throws Exception
+    {
+        return new GenerateSyntheticCorpus(folder.getRoot().toPath()).generate(shape).toFile();
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<SignatureResult>
+    {
+        protected Flow.Subscription subscription;
+        private final List<Boolean> results = new ArrayList<>();
+        private boolean completed;
+        private Throwable failure;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(SignatureResult item)
+        {
+            results.add(item.isVerified());
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            failure = throwable;
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.BoundedCache;
+import signature.VerificationContext;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SignerCacheTest
+{
+    @Test
+    public void evictsLeastRecentlyUsed()
+    {
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+        cache.putIfAbsent("a", "A");
+        cache.putIfAbsent("b", "B");
+        assertThat(cache.getIfPresent("a"), equalTo("A"));
+        cache.putIfAbsent("c", "C");
+
+        assertThat(cache.getIfPresent("b"), nullValue());
+        assertThat(cache.get("c", key -> "other"), equalTo("C"));
+        assertThat(cache.get("d", String::toUpperCase), equalTo("D"));
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.getEvictionCount(), equalTo(2L));
+        assertThat(cache.getHitCount(), equalTo(2L));
+        assertThat(cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void repeatSignerIsServedFromCache() throws Exception
+    {
+        VerificationContext context = new VerificationContext();
+        SignatureVerifier verifier = new SignatureVerifier(context);
+        File fixture = new File("src/test/resources/text_sigAdobeDC.2.pdf");
+
+        verifier.extractSignatures(fixture);
+        verifier.extractSignatures(fixture);
+
+        assertThat(context.getSignerCache().size(), equalTo(1));
+        assertThat(context.getSignerCache().getMissCount(), equalTo(1L));
+        assertThat(context.getSignerCache().getHitCount(), equalTo(1L));
+    }
+}
@@ -0,0 +1,110 @@
+import fixture.GenerateSyntheticCorpus;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureDictionary;
+import pdfbox.SignatureLocator;
+import pdfbox.SignatureVerifier;
+import pdfbox.mkl.ValidateSignature;
+import signature.ByteRangeContent;
+import signature.SignatureResult;
+import signature.SpooledDocument;
+import signature.io.BufferByteSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class SpooledDocumentTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The byte ranges of all signatures of an incrementally signed document are digested while spooling, however
+     * the stream happens to be chunked.
+     */
+    @Test
+    public void digestsTheSignedByteRangesWhileSpooling() throws Exception
+    {
+        Path document = new GenerateSyntheticCorpus(folder.getRoot().toPath())
+                .generate(GenerateSyntheticCorpus.Shape.of("cosigned", 1, 0, 3));
+        byte[] pdf = Files.readAllBytes(document);
+        List<SignatureDictionary> signatures = new SignatureLocator(BufferByteSource.wrap(pdf)).locate();
+        assertThat(signatures, hasSize(3));
+
+        try (SpooledDocument spooled = SpooledDocument.spool(new TrickleInputStream(pdf, 7), Integer.MAX_VALUE,
+                SpooledDocument.DEFAULT_ALGORITHMS, null))
+        {
+            for (SignatureDictionary signature : signatures)
+            {
+                byte[] expected = new ByteRangeContent(BufferByteSource.wrap(pdf), signature.getByteRange())
+                        .digest(MessageDigest.getInstance("SHA-256"));
+                assertThat(spooled.getDigest(signature.getByteRange(), NISTObjectIdentifiers.id_sha256), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void overflowsIntoATemporaryFile() throws Exception
+    {
+        byte[] pdf = Files.readAllBytes(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf"));
+        try (SpooledDocument spooled = SpooledDocument.spool(new ByteArrayInputStream(pdf), 1024,
+                SpooledDocument.DEFAULT_ALGORITHMS, null))
+        {
+            assertThat(spooled.isSpooledToFile(), is(true));
+            assertThat(spooled.size(), equalTo((long) pdf.length));
+            ByteBuffer tail = ByteBuffer.allocate(16);
+            spooled.read(pdf.length - 16, tail);
+            assertThat(tail.array(), equalTo(Arrays.copyOfRange(pdf, pdf.length - 16, pdf.length)));
+        }
+    }
+
+    @Test
+    public void verifiesStreams() throws Exception
+    {
+        Path document = Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf");
+        byte[] pdf = Files.readAllBytes(document);
+
+        Map<String, SignatureResult> streamed = new SignatureVerifier().extractSignatures(new ByteArrayInputStream(pdf));
+        assertThat(streamed.toString(), equalTo(new SignatureVerifier().extractSignatures(document.toFile()).toString()));
+
+        Map<String, SignatureResult> validated = new ValidateSignature(null)
+                .validateSignaturesImproved(new TrickleInputStream(pdf, 1000), null);
+        assertThat(validated.values().iterator().next().isVerified(), is(true));
+    }
+
+    /**
+     * Returns at most a few bytes per read, like a slow network connection.
+     */
+    private static final class TrickleInputStream extends FilterInputStream
+    {
+        private final int maxRead;
+
+        private TrickleInputStream(byte[] data, int maxRead)
+        {
+            super(new ByteArrayInputStream(data));
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            return super.read(b, off, Math.min(len, maxRead));
+        }
+    }
+}
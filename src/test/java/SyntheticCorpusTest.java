@@ -0,0 +1,63 @@
+import fixture.GenerateSyntheticCorpus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pdfbox.SignatureDictionary;
+import pdfbox.SignatureLocator;
+import pdfbox.SignatureVerifier;
+import signature.SignatureResult;
+import signature.io.BufferByteSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class SyntheticCorpusTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Small variants of the shapes of the corpus, verified against the manifest.
+     */
+    @Test
+    public void generatesDocumentsWithTheExpectedVerdicts() throws Exception
+    {
+        Path root = folder.getRoot().toPath();
+        GenerateSyntheticCorpus corpus = new GenerateSyntheticCorpus(root);
+        GenerateSyntheticCorpus.Shape[] shapes = {
+                GenerateSyntheticCorpus.Shape.of("images", 3, 200000, 1),
+                GenerateSyntheticCorpus.Shape.of("cosigned-xref-streams", 2, 0, 3).withXRefStreams().withCertificates(5),
+                GenerateSyntheticCorpus.Shape.of("tampered", 2, 0, 2).withXRefStreams().tampered()
+        };
+        for (GenerateSyntheticCorpus.Shape shape : shapes)
+        {
+            Path document = corpus.generate(shape);
+            byte[] pdf = Files.readAllBytes(document);
+            List<SignatureDictionary> signatures = new SignatureLocator(BufferByteSource.wrap(pdf)).locate();
+            assertThat(shape.getName(), signatures, hasSize(shape.getSignatures()));
+
+            // every signature has a /Name of its own, so there is one result per signature
+            Map<String, SignatureResult> results = new SignatureVerifier().extractSignatures(document.toFile());
+            assertThat(shape.getName(), results.size(), equalTo(shape.getSignatures()));
+            for (SignatureResult result : results.values())
+            {
+                assertThat(shape.getName() + ": " + result, result.isVerified(), is(!shape.isTampered()));
+            }
+        }
+
+        List<String> manifest = Files.readAllLines(root.resolve(GenerateSyntheticCorpus.MANIFEST));
+        assertThat(manifest, hasSize(shapes.length + 1));
+        assertThat(manifest.get(3).split("\t")[6], equalTo("invalid"));
+
+        // regenerating a document rewrites its line rather than adding another
+        corpus.generate(shapes[0]);
+        assertThat(Files.readAllLines(root.resolve(GenerateSyntheticCorpus.MANIFEST)), hasSize(shapes.length + 1));
+    }
+}
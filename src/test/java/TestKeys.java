@@ -0,0 +1,185 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.asn1.cms.Time;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * The keys the tests sign with: the self-signed certificate of the test key store, which also signed the
+ * BouncyCastle fixtures and is valid from April 2017 to April 2018, and throwaway timestamp authorities.
+ * Documents are signed in-process with them.
+ */
+final class TestKeys
+{
+    private static final String KEY_STORE = "src/test/resources/keystore.jks";
+    private static final String ALIAS = "selfsigned";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private TestKeys()
+    {
+    }
+
+    static KeyStore keyStore() throws GeneralSecurityException, IOException
+    {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = new FileInputStream(KEY_STORE))
+        {
+            keyStore.load(in, PASSWORD);
+        }
+        return keyStore;
+    }
+
+    static X509Certificate signerCertificate() throws GeneralSecurityException, IOException
+    {
+        return (X509Certificate) keyStore().getCertificate(ALIAS);
+    }
+
+    static PrivateKey signerKey() throws GeneralSecurityException, IOException
+    {
+        return (PrivateKey) keyStore().getKey(ALIAS, PASSWORD);
+    }
+
+    /**
+     * Signs data with the key store certificate, as a detached CMS signature with a signing time attribute.
+     *
+     * @param tsa the authority to add a signature timestamp at the signing time with, or null
+     */
+    static byte[] signDetached(byte[] data, Date signingTime, TimeStampAuthority tsa)
+            throws GeneralSecurityException, OperatorCreationException, CMSException, TSPException, IOException
+    {
+        X509Certificate certificate = signerCertificate();
+        Attribute signingTimeAttribute = new Attribute(CMSAttributes.signingTime, new DERSet(new Time(signingTime)));
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().build())
+                .setSignedAttributeGenerator(new DefaultSignedAttributeTableGenerator(new AttributeTable(new DERSet(signingTimeAttribute))))
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(signerKey()), certificate));
+        generator.addCertificates(new JcaCertStore(Collections.singletonList(certificate)));
+        CMSSignedData signedData = generator.generate(new CMSProcessableByteArray(data), false);
+        if (tsa != null)
+        {
+            SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+            signedData = CMSSignedData.replaceSigners(signedData,
+                    new SignerInformationStore(tsa.addTimeStamp(signer, signer.getSignature(), signingTime)));
+        }
+        return signedData.getEncoded();
+    }
+
+    /**
+     * Adds a signature to a document as an incremental update.
+     *
+     * @param signed the file to write the signed document to
+     */
+    static void addSignature(File pdf, File signed, PDSignature signature, SignatureInterface signer) throws IOException
+    {
+        try (PDDocument document = PDDocument.load(pdf); OutputStream out = new FileOutputStream(signed))
+        {
+            document.addSignature(signature, signer);
+            document.saveIncremental(out);
+        }
+    }
+
+    /**
+     * A timestamp authority with a fresh key, valid from 2017, so that it can also stamp signatures of the key store
+     * certificate at a time within its validity, until tomorrow.
+     */
+    static final class TimeStampAuthority
+    {
+        final X509Certificate certificate;
+        final PrivateKey key;
+        private BigInteger serial = BigInteger.ZERO;
+
+        TimeStampAuthority() throws GeneralSecurityException, OperatorCreationException, IOException
+        {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair keyPair = generator.generateKeyPair();
+            key = keyPair.getPrivate();
+            X500Name name = new X500Name("CN=Test TSA");
+            JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+                    new GregorianCalendar(2017, Calendar.JANUARY, 1).getTime(), new Date(System.currentTimeMillis() + DAY),
+                    name, keyPair.getPublic());
+            builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+            certificate = new JcaX509CertificateConverter().getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(key)));
+        }
+
+        /**
+         * @return an encoded timestamp token over the SHA-256 digest of the data, with the given time
+         */
+        byte[] stamp(byte[] data, Date time) throws GeneralSecurityException, OperatorCreationException, TSPException, IOException
+        {
+            TimeStampTokenGenerator generator = new TimeStampTokenGenerator(
+                    new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().build())
+                            .build(new JcaContentSignerBuilder("SHA256withRSA").build(key), certificate),
+                    new JcaDigestCalculatorProviderBuilder().build().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)),
+                    new ASN1ObjectIdentifier("1.2.3.4"));
+            generator.addCertificates(new JcaCertStore(Collections.singletonList(certificate)));
+            TimeStampRequestGenerator requestGenerator = new TimeStampRequestGenerator();
+            requestGenerator.setCertReq(true);
+            serial = serial.add(BigInteger.ONE);
+            return generator.generate(requestGenerator.generate(TSPAlgorithms.SHA256, MessageDigest.getInstance("SHA-256").digest(data)),
+                    serial, time).getEncoded();
+        }
+
+        /**
+         * Adds a signature timestamp token over the given bytes, normally the signature value, to the signer, like
+         * {@code CreateSignatureBase.signTimeStamp}.
+         */
+        SignerInformation addTimeStamp(SignerInformation signer, byte[] stamped, Date time)
+                throws GeneralSecurityException, OperatorCreationException, TSPException, IOException
+        {
+            Attribute attribute = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                    new DERSet(ASN1Primitive.fromByteArray(stamp(stamped, time))));
+            return SignerInformation.replaceUnsignedAttributes(signer, new AttributeTable(new DERSet(attribute)));
+        }
+    }
+}
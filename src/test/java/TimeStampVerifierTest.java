@@ -0,0 +1,83 @@
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPException;
+import org.junit.Before;
+import org.junit.Test;
+import signature.ChainValidator;
+import signature.TimeStampVerifier;
+import signature.VerificationContext;
+
+import java.security.PrivateKey;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TimeStampVerifierTest
+{
+    private X509Certificate signerCertificate;
+    private PrivateKey signerKey;
+    private TestKeys.TimeStampAuthority tsa;
+    private final TimeStampVerifier verifier = new TimeStampVerifier(new VerificationContext());
+
+    @Before
+    public void setUp() throws Exception
+    {
+        signerCertificate = TestKeys.signerCertificate();
+        signerKey = TestKeys.signerKey();
+        tsa = new TestKeys.TimeStampAuthority();
+    }
+
+    @Test
+    public void signerWithoutTimestamp() throws Exception
+    {
+        assertThat(verifier.verify(sign(), null), nullValue());
+    }
+
+    @Test
+    public void validTimestamp() throws Exception
+    {
+        SignerInformation signer = sign();
+        Date time = new Date(System.currentTimeMillis() / 1000 * 1000);
+        SignerInformation timeStamped = tsa.addTimeStamp(signer, signer.getSignature(), time);
+
+        assertThat(verifier.verify(timeStamped, null), equalTo(time));
+        ChainValidator chainValidator = new ChainValidator(Collections.singleton(new TrustAnchor(tsa.certificate, null)));
+        assertThat(verifier.verify(timeStamped, chainValidator), equalTo(time));
+        assertThat(verifier.verify(timeStamped, chainValidator), equalTo(time));
+        assertThat(chainValidator.getHitCount(), equalTo(1L));
+    }
+
+    @Test(expected = TSPException.class)
+    public void timestampOverOtherSignature() throws Exception
+    {
+        SignerInformation signer = sign();
+        verifier.verify(tsa.addTimeStamp(signer, new byte[] { 1, 2, 3 }, new Date()), null);
+    }
+
+    @Test(expected = TSPException.class)
+    public void untrustedTsa() throws Exception
+    {
+        SignerInformation signer = sign();
+        ChainValidator chainValidator = new ChainValidator(Collections.singleton(new TrustAnchor(signerCertificate, null)));
+        verifier.verify(tsa.addTimeStamp(signer, signer.getSignature(), new Date()), chainValidator);
+    }
+
+    private SignerInformation sign() throws Exception
+    {
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().build())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(signerKey), signerCertificate));
+        generator.addCertificates(new JcaCertStore(Collections.singletonList(signerCertificate)));
+        return generator.generate(new CMSProcessableByteArray(new byte[] { 42 })).getSignerInfos().getSigners().iterator().next();
+    }
+}
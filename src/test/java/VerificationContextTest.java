@@ -0,0 +1,53 @@
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.SignatureResult;
+import signature.VerificationContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static matcher.SignatureResultVerifiedMatcher.verified;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+
+public class VerificationContextTest
+{
+    private static final File FIXTURE = new File("src/test/resources/text_sigAdobeDC.2.pdf");
+
+    @Test
+    public void contextIsSharedAcrossThreads() throws Exception
+    {
+        final SignatureVerifier verifier = new SignatureVerifier(new VerificationContext(new BouncyCastleProvider()));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Map<String, SignatureResult>>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+            {
+                futures.add(executor.submit(new Callable<Map<String, SignatureResult>>()
+                {
+                    @Override
+                    public Map<String, SignatureResult> call() throws Exception
+                    {
+                        return verifier.extractSignatures(FIXTURE);
+                    }
+                }));
+            }
+            for (Future<Map<String, SignatureResult>> future : futures)
+            {
+                assertThat(future.get().values(), everyItem(verified()));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import signature.ConsoleVerificationListener;
+import signature.SignatureResult;
+import signature.VerificationListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+
+public class VerificationListenerTest
+{
+    @Test
+    public void reportsEachStepOfVerification() throws Exception
+    {
+        final List<String> events = new ArrayList<>();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setVerificationListener(new VerificationListener()
+        {
+            @Override
+            public void signatureFound(int index, String name, String subFilter, Calendar signDate)
+            {
+                events.add("found " + index + " " + subFilter);
+            }
+
+            @Override
+            public void signatureChecked(String name, boolean valid, Throwable cause)
+            {
+                events.add("checked " + valid);
+            }
+
+            @Override
+            public void signatureVerified(String name, SignatureResult result)
+            {
+                events.add("verified " + result.isVerified());
+            }
+        });
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+
+        assertThat(events, equalTo(Arrays.asList("found 1 adbe.pkcs7.detached", "checked true", "verified true")));
+    }
+
+    @Test
+    public void certificatesAreOnlyConvertedForAListener() throws Exception
+    {
+        final List<Collection<? extends Certificate>> certificates = new ArrayList<>();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setVerificationListener(new VerificationListener()
+        {
+            @Override
+            public void certificatesFound(String name, Collection<? extends Certificate> found)
+            {
+                certificates.add(found);
+            }
+        });
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "sigFieldPkcs7Sha1_sigAdobeDC.2.pdf").toFile());
+
+        assertThat(certificates.size(), equalTo(1));
+        assertThat(certificates.get(0).isEmpty(), equalTo(false));
+    }
+
+    @Test
+    public void consoleListenerPrintsTheEvents() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setVerificationListener(new ConsoleVerificationListener(new PrintStream(out, true, "UTF-8")));
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+
+        String printed = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(printed, containsString("Signature # 1 (adbe.pkcs7.detached)"));
+        assertThat(printed, containsString("Signature verification successful."));
+        assertThat(Arrays.asList(printed.split("\\R")), not(hasItem(containsString("!!!"))));
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import pdfbox.mkl.ValidateSignature;
+import signature.metrics.LatencyHistogram;
+import signature.metrics.Phase;
+import signature.metrics.VerificationMetrics;
+
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+
+public class VerificationMetricsTest
+{
+    @Test
+    public void histogramPercentilesAreWithinTheBucketWidth()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++)
+        {
+            histogram.record(nanos * 1_000);
+        }
+
+        assertThat(histogram.getCount(), equalTo(100_000L));
+        assertThat(histogram.getMax(), equalTo(100_000_000L));
+        // a bucket is at most 1/16 of its values wide
+        assertThat(histogram.getValueAtPercentile(50), allOf(greaterThanOrEqualTo(50_000_000L), lessThanOrEqualTo(53_125_000L)));
+        assertThat(histogram.getValueAtPercentile(99), allOf(greaterThanOrEqualTo(99_000_000L), lessThanOrEqualTo(100_000_000L)));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(100_000_000L));
+    }
+
+    @Test
+    public void verifierRecordsPhasesAndOutcomes() throws Exception
+    {
+        VerificationMetrics metrics = new VerificationMetrics();
+        SignatureVerifier verifier = new SignatureVerifier();
+        verifier.setMetrics(metrics);
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+        verifier.extractSignatures(Paths.get("src", "test", "resources", "text_sigAdobeDC.2.pdf").toFile());
+
+        assertThat(metrics.getCount("adbe.pkcs7.detached", VerificationMetrics.Outcome.VERIFIED), equalTo(2L));
+        assertThat(metrics.getHistogram(Phase.LOCATE).getCount(), equalTo(2L));
+        assertThat(metrics.getHistogram(Phase.DIGEST).getCount(), equalTo(2L));
+        assertThat(metrics.getHistogram(Phase.SIGNER_VERIFY).getCount(), equalTo(2L));
+        assertThat(metrics.getHistogram(Phase.DIGEST).getTotal(), greaterThan(0L));
+        // one sample per signature, and none for a timestamp the signature does not carry
+        assertThat(metrics.getHistogram(Phase.CMS_PARSE).getCount(), equalTo(2L));
+        assertThat(metrics.getHistogram(Phase.TIMESTAMP).getCount(), equalTo(0L));
+
+        Map<String, Long> scraped = metrics.scrape();
+        assertThat(scraped, hasKey("phase.signer_verify.p99"));
+        assertThat(scraped.get("outcome.adbe.pkcs7.detached.verified"), equalTo(2L));
+    }
+
+    @Test
+    public void validatorCountsFailures() throws Exception
+    {
+        VerificationMetrics metrics = new VerificationMetrics();
+        ValidateSignature validateSignature = new ValidateSignature(null);
+        validateSignature.setMetrics(metrics);
+        validateSignature.validateSignaturesImproved(
+                Paths.get("src", "test", "resources", "mkl", "pkcs7DetachedFailure.pdf"), null);
+
+        assertThat(metrics.getCount("adbe.pkcs7.detached", VerificationMetrics.Outcome.FAILED), equalTo(1L));
+        assertThat(metrics.getHistogram(Phase.LOAD).getCount(), equalTo(1L));
+        assertThat(metrics.getHistogram(Phase.CMS_PARSE).getCount(), greaterThan(0L));
+    }
+
+    /**
+     * The /SubFilter comes from the document, only the standard ones get counters of their own.
+     */
+    @Test
+    public void unknownSubFiltersShareACounter()
+    {
+        VerificationMetrics metrics = new VerificationMetrics();
+        metrics.count("x.1", VerificationMetrics.Outcome.FAILED);
+        metrics.count("x.2", VerificationMetrics.Outcome.FAILED);
+        metrics.count("ETSI.RFC3161", VerificationMetrics.Outcome.FAILED);
+
+        assertThat(metrics.getCount("x.3", VerificationMetrics.Outcome.FAILED), equalTo(2L));
+        Map<String, Long> scraped = metrics.scrape();
+        assertThat(scraped.get("outcome.other.failed"), equalTo(2L));
+        assertThat(scraped.get("outcome.ETSI.RFC3161.failed"), equalTo(1L));
+        assertThat(scraped, not(hasKey("outcome.x.1.failed")));
+    }
+
+    @Test
+    public void noneRecordsNothing()
+    {
+        VerificationMetrics.NONE.stop(Phase.DIGEST, VerificationMetrics.NONE.start());
+        VerificationMetrics.NONE.count("adbe.pkcs7.detached", VerificationMetrics.Outcome.VERIFIED);
+
+        assertThat(VerificationMetrics.NONE.getHistogram(Phase.DIGEST).getCount(), equalTo(0L));
+        assertThat(VerificationMetrics.NONE.getCount("adbe.pkcs7.detached", VerificationMetrics.Outcome.VERIFIED), equalTo(0L));
+    }
+}
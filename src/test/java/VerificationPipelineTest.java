@@ -0,0 +1,129 @@
+import org.junit.Test;
+import pdfbox.SignatureVerifier;
+import pdfbox.VerificationPipeline;
+import signature.DocumentResult;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class VerificationPipelineTest
+{
+    private static final Path FIXTURES = Paths.get("src", "test", "resources");
+
+    @Test
+    public void deliversOneResultPerSubmittedDocument() throws Exception
+    {
+        Set<Path> expected;
+        try (Stream<Path> files = Files.walk(FIXTURES))
+        {
+            expected = files.filter(path -> path.toString().endsWith(".pdf")).collect(Collectors.toSet());
+        }
+
+        List<DocumentResult> results = new ArrayList<>();
+        VerificationPipeline pipeline = new VerificationPipeline(new SignatureVerifier(), 2, 2, 2, results::add);
+        try
+        {
+            for (Path document : expected)
+            {
+                pipeline.submit(document);
+            }
+        }
+        finally
+        {
+            pipeline.close();
+        }
+
+        Set<Path> verified = new HashSet<>();
+        for (DocumentResult result : results)
+        {
+            verified.add(result.getDocument());
+            if (result.getDocument().endsWith("text_sigAdobeDC.2.pdf"))
+            {
+                assertThat(result.toString(), result.isVerified(), is(true));
+            }
+            if (result.getDocument().endsWith("text_sigNitro11.2.pdf"))
+            {
+                // a document failing in any stage is delivered with its failure
+                assertThat(result.getFailure(), notNullValue());
+            }
+        }
+        assertThat(results.size(), equalTo(expected.size()));
+        assertThat(verified, equalTo(expected));
+        for (VerificationPipeline.Stage stage : VerificationPipeline.Stage.values())
+        {
+            assertThat(pipeline.getQueueDepth(stage), equalTo(0));
+        }
+    }
+
+    /**
+     * A document whose submission was interrupted is not waited for on close.
+     */
+    @Test(timeout = 10000)
+    public void interruptedSubmissionDoesNotBlockClose() throws Exception
+    {
+        List<DocumentResult> results = new ArrayList<>();
+        VerificationPipeline pipeline = new VerificationPipeline(new SignatureVerifier(), 1, 1, 1, results::add);
+        Thread.currentThread().interrupt();
+        try
+        {
+            pipeline.submit(FIXTURES.resolve("text_sigAdobeDC.2.pdf"));
+            throw new AssertionError("The submission should have been interrupted");
+        }
+        catch (InterruptedException e)
+        {
+            // expected, the interrupt flag is cleared
+        }
+        pipeline.close();
+        assertThat(results.isEmpty(), is(true));
+    }
+
+    /**
+     * An interrupted close restores the interrupt flag for the caller.
+     */
+    @Test(timeout = 10000)
+    public void interruptedCloseKeepsTheInterrupt() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        List<DocumentResult> results = new ArrayList<>();
+        VerificationPipeline pipeline = new VerificationPipeline(new SignatureVerifier(), 1, 1, 1, result ->
+        {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            results.add(result);
+        });
+        pipeline.submit(FIXTURES.resolve("text_sigAdobeDC.2.pdf"));
+        Thread.currentThread().interrupt();
+        try
+        {
+            pipeline.close();
+            throw new AssertionError("The close should have been interrupted");
+        }
+        catch (InterruptedIOException e)
+        {
+            assertThat(Thread.interrupted(), is(true));
+        }
+        release.countDown();
+        pipeline.close();
+        assertThat(results.size(), equalTo(1));
+    }
+}
@@ -31,6 +31,8 @@ import java.util.Collections;
 @Ignore
 public class GeneratePDFFixtures
 {
+    private static final float MARGIN = 72;
+
     @Test public void generateFixture_text_sigNitro11() throws IOException, GeneralSecurityException
     {
         generateSimplePdfText(testResources("text_sigNitro11.1.pdf"),
@@ -202,64 +204,8 @@ public class GeneratePDFFixtures
 
             final PDPage page = new PDPage(PDRectangle.A4);
             doc.addPage(page);
-            final PDPageContentStream contentStream = new PDPageContentStream(doc, page);
-
-            PDFont pdfFont = PDType1Font.HELVETICA;
-            final float fontSize = 14;
-            final float leading = 1.5f * fontSize;
-
-            final PDRectangle mediabox = page.getMediaBox();
-            final float margin = 72;
-            final float startX = mediabox.getLowerLeftX() + margin;
-            final float startY = mediabox.getUpperRightY() - margin;
-
-            /* We don't need auto-wrapping for simple fixtures
-
-            float width = mediabox.getWidth() - 2*margin;
-
-            String text = "I am trying to create a PDF file with a lot of text contents in the document. I am using PDFBox";
-            List<String> lines = new ArrayList<String>();
-            int lastSpace = -1;
-            while (text.length() > 0) {
-                int spaceIndex = text.indexOf(' ', lastSpace + 1);
-                if (spaceIndex < 0) {
-                    spaceIndex = text.length();
-                }
-                String subString = text.substring(0, spaceIndex);
-                float size = fontSize * pdfFont.getStringWidth(subString) / 1000;
-                System.out.printf("'%s' - %f of %f\n", subString, size, width);
-                if (size > width) {
-                    if (lastSpace < 0)
-                        lastSpace = spaceIndex;
-                    subString = text.substring(0, lastSpace);
-                    lines.add(subString);
-                    text = text.substring(lastSpace).trim();
-                    System.out.printf("'%s' is line\n", subString);
-                    lastSpace = -1;
-
-                } else if (spaceIndex == text.length()) {
-                    lines.add(text);
-                    System.out.printf("'%s' is line\n", text);
-                    text = "";
-
-                } else {
-                    lastSpace = spaceIndex;
-                }
-            }
-            */
-
-            float currentY = startY;
-
-            contentStream.beginText();
-            contentStream.setFont(pdfFont, fontSize);
-            contentStream.newLineAtOffset(startX, startY);
-            for (String line: lines) {
-                contentStream.showText(line);
-                contentStream.newLineAtOffset(0, -leading);
-                currentY -= leading;
-            }
-            contentStream.endText();
-            contentStream.close();
+            final float startX = page.getMediaBox().getLowerLeftX() + MARGIN;
+            final float currentY = showLines(doc, page, lines);
 
             if (sigField.includeSignatureField) {
                 // Add a new AcroForm and add that to the document
@@ -295,6 +241,74 @@ public class GeneratePDFFixtures
         }
     }
 
+    /**
+     * Writes the lines on the page, one below the other, starting at the upper left of the margin.
+     *
+     * @return the vertical position below the last line
+     */
+    static float showLines(final PDDocument doc, final PDPage page, final String... lines) throws IOException
+    {
+        final PDPageContentStream contentStream = new PDPageContentStream(doc, page);
+
+        PDFont pdfFont = PDType1Font.HELVETICA;
+        final float fontSize = 14;
+        final float leading = 1.5f * fontSize;
+
+        final PDRectangle mediabox = page.getMediaBox();
+        final float startX = mediabox.getLowerLeftX() + MARGIN;
+        final float startY = mediabox.getUpperRightY() - MARGIN;
+
+        /* We don't need auto-wrapping for simple fixtures
+
+        float width = mediabox.getWidth() - 2*MARGIN;
+
+        String text = "I am trying to create a PDF file with a lot of text contents in the document. I am using PDFBox";
+        List<String> lines = new ArrayList<String>();
+        int lastSpace = -1;
+        while (text.length() > 0) {
+            int spaceIndex = text.indexOf(' ', lastSpace + 1);
+            if (spaceIndex < 0) {
+                spaceIndex = text.length();
+            }
+            String subString = text.substring(0, spaceIndex);
+            float size = fontSize * pdfFont.getStringWidth(subString) / 1000;
+            System.out.printf("'%s' - %f of %f\n", subString, size, width);
+            if (size > width) {
+                if (lastSpace < 0)
+                    lastSpace = spaceIndex;
+                subString = text.substring(0, lastSpace);
+                lines.add(subString);
+                text = text.substring(lastSpace).trim();
+                System.out.printf("'%s' is line\n", subString);
+                lastSpace = -1;
+
+            } else if (spaceIndex == text.length()) {
+                lines.add(text);
+                System.out.printf("'%s' is line\n", text);
+                text = "";
+
+            } else {
+                lastSpace = spaceIndex;
+            }
+        }
+        */
+
+        float currentY = startY;
+
+        contentStream.beginText();
+        contentStream.setFont(pdfFont, fontSize);
+        contentStream.newLineAtOffset(startX, startY);
+        for (String line: lines) {
+            contentStream.showText(line);
+            contentStream.newLineAtOffset(0, -leading);
+            currentY -= leading;
+        }
+        contentStream.endText();
+        contentStream.close();
+
+        return currentY;
+    }
+
     private CreateSignature createSignature() throws GeneralSecurityException, IOException
     {
         final char[] password = "changeit".toCharArray();
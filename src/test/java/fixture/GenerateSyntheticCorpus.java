@@ -0,0 +1,491 @@
+package fixture;
+
+import fixture.pdfboxeg.CreateSignature;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates signed documents of production-like sizes and shapes for benchmarks and soak tests, together with a
+ * manifest of the verdicts verifiers are expected to reach, so that they need not be kept in the repository:
+ * <pre>
+ * java fixture.GenerateSyntheticCorpus &lt;output folder&gt; [&lt;max document size in bytes&gt;]
+ * </pre>
+ * The documents of {@link #MATRIX} span 1 to 10k pages, 1 MB to 4 GB, 1 to 50 incremental signatures, embedded
+ * images, cross-reference streams and large certificate bags. Their content is derived from the shape alone, so a
+ * corpus regenerated from the same matrix has the same pages, images and verdicts; only the signing times, and so
+ * the signature bytes, differ.
+ *
+ * Documents are signed with {@link CreateSignature#signDetached} by a key generated for the corpus, one incremental
+ * revision per signature, the first one certifying. The key is not trusted by anything, the verdicts are those of
+ * the signatures themselves.
+ */
+public class GenerateSyntheticCorpus
+{
+    public static final String MANIFEST = "manifest.tsv";
+
+    private static final long MB = 1024 * 1024;
+    private static final long GB = 1024 * MB;
+    /**
+     * Images are split into slices of at most this size, to stay well within the int arithmetic of image readers.
+     */
+    private static final int MAX_IMAGE_BYTES = (int) (16 * MB);
+    private static final int IMAGE_WIDTH = 1024;
+    private static final char[] PIN = "synthetic".toCharArray();
+
+    public static final List<Shape> MATRIX = Collections.unmodifiableList(Arrays.asList(
+            Shape.of("minimal", 1, 0, 1),
+            Shape.of("one-page-1m", 1, MB, 1),
+            Shape.of("text-10k-pages", 10000, 0, 1),
+            Shape.of("cosigned-5", 10, MB, 5),
+            Shape.of("cosigned-50", 10, MB, 50),
+            Shape.of("cosigned-5-xref-streams", 10, MB, 5).withXRefStreams(),
+            Shape.of("cosigned-50-xref-streams", 100, 64 * MB, 50).withXRefStreams(),
+            Shape.of("cert-bag-200", 1, MB, 1).withCertificates(200),
+            Shape.of("cosigned-5-cert-bags-50", 10, MB, 5).withCertificates(50),
+            Shape.of("images-100-pages-64m", 100, 64 * MB, 1),
+            Shape.of("images-1000-pages-1g", 1000, GB, 3),
+            Shape.of("images-10k-pages-4g", 10000, 4 * GB, 2).withXRefStreams(),
+            Shape.of("tampered-one-page", 1, MB, 1).tampered(),
+            Shape.of("tampered-cosigned-5", 10, MB, 5).withXRefStreams().tampered(),
+            Shape.of("tampered-1g", 1000, GB, 3).tampered()
+    ));
+
+    private final Path folder;
+    private final KeyStore keyStore;
+    private final KeyPair keyPair;
+
+    /**
+     * @param folder the folder to generate the documents and the manifest in
+     */
+    public GenerateSyntheticCorpus(Path folder) throws GeneralSecurityException, IOException
+    {
+        this.folder = folder;
+        try
+        {
+            // a fixed seed, so that the corpus is signed by the same key every time
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(GenerateSyntheticCorpus.class.getName().getBytes(StandardCharsets.US_ASCII));
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048, random);
+            this.keyPair = generator.generateKeyPair();
+            X509Certificate certificate = certificate(keyPair, "CN=Synthetic corpus signer", BigInteger.ONE);
+            this.keyStore = KeyStore.getInstance("PKCS12");
+            this.keyStore.load(null, null);
+            this.keyStore.setKeyEntry("signer", keyPair.getPrivate(), PIN, new Certificate[] {certificate});
+        }
+        catch (OperatorCreationException e)
+        {
+            throw new GeneralSecurityException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, GeneralSecurityException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: java " + GenerateSyntheticCorpus.class.getName() + " <output folder> [<max document size in bytes>]");
+            System.exit(1);
+        }
+        long maxBytes = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+        Path folder = Paths.get(args[0]);
+        Files.createDirectories(folder);
+        GenerateSyntheticCorpus corpus = new GenerateSyntheticCorpus(folder);
+        for (Shape shape : MATRIX)
+        {
+            if (shape.bytes <= maxBytes)
+            {
+                long start = System.nanoTime();
+                Path document = corpus.generate(shape);
+                System.out.printf("%s: %d bytes in %d s%n", document, Files.size(document),
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            }
+        }
+    }
+
+    /**
+     * Generates the document of the shape, replacing an existing one, and writes its line of the manifest.
+     *
+     * @return the document
+     */
+    public Path generate(Shape shape) throws IOException, GeneralSecurityException
+    {
+        Path document = folder.resolve(shape.name + ".pdf");
+        Path revision = folder.resolve(shape.name + ".pdf.tmp");
+        long markerOffset = writeUnsigned(shape, revision);
+
+        CreateSignature createSignature = new CreateSignature(keyStore, PIN);
+        createSignature.setExternalSigning(true);
+        createSignature.setAdditionalCertificates(certificateBag(shape.certificates));
+        if (shape.certificates > 0)
+        {
+            // the default leaves room for a few certificates only
+            createSignature.setPreferredSignatureSize(SignatureOptions.DEFAULT_SIGNATURE_SIZE + shape.certificates * 1024);
+        }
+        for (int i = 1; i <= shape.signatures; i++)
+        {
+            Path signed = folder.resolve(shape.name + ".pdf." + i + ".tmp");
+            // verifiers report their results by /Name, each signature gets its own
+            createSignature.setSignatureName("Synthetic signer " + i);
+            try (PDDocument doc = PDDocument.load(revision.toFile(), MemoryUsageSetting.setupTempFileOnly());
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(signed)))
+            {
+                if (shape.xrefStreams)
+                {
+                    // PDFBox writes the incremental update with a cross-reference stream then
+                    doc.getDocument().setIsXRefStream(true);
+                }
+                createSignature.signDetached(doc, out, null, i == 1);
+            }
+            Files.delete(revision);
+            revision = signed;
+        }
+        if (shape.tampered)
+        {
+            // the marker is in the first revision, which all signatures cover
+            try (RandomAccessFile file = new RandomAccessFile(revision.toFile(), "rw"))
+            {
+                file.seek(markerOffset);
+                int marker = file.read();
+                // read() moved past the marker
+                file.seek(markerOffset);
+                file.write(Character.toLowerCase(marker));
+            }
+        }
+        Files.move(revision, document, StandardCopyOption.REPLACE_EXISTING);
+        writeManifestLine(shape, document);
+        return document;
+    }
+
+    /**
+     * Writes the unsigned first revision: a page of text per page, and as much image data as it takes to reach the
+     * size of the shape.
+     *
+     * @return the offset of the tampering marker in the document
+     */
+    private long writeUnsigned(Shape shape, Path target) throws IOException
+    {
+        Random random = new Random(shape.name.hashCode());
+        String marker = "Synthetic corpus document " + shape.name;
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly()))
+        {
+            doc.getDocumentInformation().setSubject(marker);
+            long imageBytes = shape.bytes;
+            for (int i = 1; i <= shape.pages; i++)
+            {
+                PDPage page = new PDPage(PDRectangle.A4);
+                doc.addPage(page);
+                float y = GeneratePDFFixtures.showLines(doc, page, marker, "Page " + i + " of " + shape.pages);
+                // spread the image data evenly over the remaining pages
+                long pageBytes = imageBytes / (shape.pages - i + 1);
+                imageBytes -= pageBytes;
+                if (pageBytes > 0)
+                {
+                    drawImages(doc, page, y, pageBytes, random);
+                }
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target)))
+            {
+                doc.save(out);
+            }
+        }
+        return find(target, ("(" + marker + ")").getBytes(StandardCharsets.US_ASCII)) + 1;
+    }
+
+    /**
+     * Draws uncompressed RGB noise of about the given size below the text of the page, in slices of at most
+     * {@link #MAX_IMAGE_BYTES}.
+     */
+    private static void drawImages(PDDocument doc, PDPage page, float top, long bytes, Random random) throws IOException
+    {
+        try (PDPageContentStream contentStream = new PDPageContentStream(doc, page, PDPageContentStream.AppendMode.APPEND, true))
+        {
+            float width = page.getMediaBox().getWidth() - 144;
+            float height = top - 72;
+            int slices = (int) ((bytes + MAX_IMAGE_BYTES - 1) / MAX_IMAGE_BYTES);
+            for (int slice = 0; slice < slices; slice++)
+            {
+                long sliceBytes = Math.min(MAX_IMAGE_BYTES, bytes - (long) slice * MAX_IMAGE_BYTES);
+                int rows = (int) Math.max(1, sliceBytes / (3 * IMAGE_WIDTH));
+                PDStream stream = new PDStream(doc, new NoiseInputStream(random, 3L * IMAGE_WIDTH * rows));
+                PDImageXObject image = new PDImageXObject(stream, null);
+                image.setWidth(IMAGE_WIDTH);
+                image.setHeight(rows);
+                image.setBitsPerComponent(8);
+                image.setColorSpace(PDDeviceRGB.INSTANCE);
+                float sliceHeight = height / slices;
+                contentStream.drawImage(image, 72, 72 + slice * sliceHeight, width, sliceHeight);
+            }
+        }
+    }
+
+    private List<X509Certificate> certificateBag(int count) throws GeneralSecurityException
+    {
+        List<X509Certificate> certificates = new ArrayList<>(count);
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                // certificates of unrelated keys would take a key pair each, their subjects are all that matters here
+                certificates.add(certificate(keyPair, "CN=Synthetic corpus bag certificate " + (i + 1),
+                        BigInteger.valueOf(i + 2)));
+            }
+        }
+        catch (OperatorCreationException e)
+        {
+            throw new GeneralSecurityException(e);
+        }
+        return certificates;
+    }
+
+    private static X509Certificate certificate(KeyPair keyPair, String subject, BigInteger serialNumber)
+            throws GeneralSecurityException, OperatorCreationException
+    {
+        long now = System.currentTimeMillis();
+        X500Name name = new X500Name(subject);
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, serialNumber,
+                new Date(now - TimeUnit.DAYS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(3650)), name,
+                keyPair.getPublic());
+        ContentSigner contentSigner = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(contentSigner));
+    }
+
+    /**
+     * Writes the line of the document to the manifest, in place of the line of a previous generation of it.
+     */
+    private void writeManifestLine(Shape shape, Path document) throws IOException
+    {
+        Path manifest = folder.resolve(MANIFEST);
+        String fileName = document.getFileName().toString();
+        String documentLine = String.join("\t", fileName, String.valueOf(Files.size(document)),
+                String.valueOf(shape.pages), String.valueOf(shape.signatures), String.valueOf(shape.certificates + 1),
+                String.valueOf(shape.xrefStreams), shape.tampered ? "invalid" : "valid");
+        List<String> lines = new ArrayList<>();
+        if (Files.exists(manifest))
+        {
+            lines.addAll(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+        }
+        else
+        {
+            lines.add("file\tbytes\tpages\tsignatures\tcertificates\txrefStreams\texpected");
+        }
+        boolean replaced = false;
+        for (int i = 1; i < lines.size(); i++)
+        {
+            if (lines.get(i).startsWith(fileName + "\t"))
+            {
+                lines.set(i, documentLine);
+                replaced = true;
+            }
+        }
+        if (!replaced)
+        {
+            lines.add(documentLine);
+        }
+        Files.write(manifest, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the offset of the first occurrence of the pattern in the file
+     */
+    private static long find(Path file, byte[] pattern) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(file))
+        {
+            byte[] buffer = new byte[65536];
+            long bufferOffset = 0;
+            int filled = 0;
+            int read;
+            while ((read = in.read(buffer, filled, buffer.length - filled)) != -1)
+            {
+                filled += read;
+                for (int i = 0; i + pattern.length <= filled; i++)
+                {
+                    if (regionMatches(buffer, i, pattern))
+                    {
+                        return bufferOffset + i;
+                    }
+                }
+                // keep what may be the start of the pattern
+                int keep = Math.min(filled, pattern.length - 1);
+                System.arraycopy(buffer, filled - keep, buffer, 0, keep);
+                bufferOffset += filled - keep;
+                filled = keep;
+            }
+        }
+        throw new IOException("Marker not found in " + file);
+    }
+
+    private static boolean regionMatches(byte[] buffer, int offset, byte[] pattern)
+    {
+        for (int i = 0; i < pattern.length; i++)
+        {
+            if (buffer[offset + i] != pattern[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The size and shape of a generated document.
+     */
+    public static final class Shape
+    {
+        private final String name;
+        private final int pages;
+        private final long bytes;
+        private final int signatures;
+        private final int certificates;
+        private final boolean xrefStreams;
+        private final boolean tampered;
+
+        private Shape(String name, int pages, long bytes, int signatures, int certificates, boolean xrefStreams,
+                      boolean tampered)
+        {
+            this.name = name;
+            this.pages = pages;
+            this.bytes = bytes;
+            this.signatures = signatures;
+            this.certificates = certificates;
+            this.xrefStreams = xrefStreams;
+            this.tampered = tampered;
+        }
+
+        /**
+         * @param name the name of the document, which also seeds its content
+         * @param pages the number of pages
+         * @param bytes the approximate size of the document, which is made up with images; 0 for text only
+         * @param signatures the number of signatures, each in an incremental revision of its own
+         */
+        public static Shape of(String name, int pages, long bytes, int signatures)
+        {
+            return new Shape(name, pages, bytes, signatures, 0, false, false);
+        }
+
+        /**
+         * @return this shape, with the given number of certificates in each signature besides the signer's
+         */
+        public Shape withCertificates(int certificates)
+        {
+            return new Shape(name, pages, bytes, signatures, certificates, xrefStreams, tampered);
+        }
+
+        /**
+         * @return this shape, with cross-reference streams in the signed revisions
+         */
+        public Shape withXRefStreams()
+        {
+            return new Shape(name, pages, bytes, signatures, certificates, true, tampered);
+        }
+
+        /**
+         * @return this shape, with a byte of the first revision changed after signing, so that no signature verifies
+         */
+        public Shape tampered()
+        {
+            return new Shape(name, pages, bytes, signatures, certificates, xrefStreams, true);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getSignatures()
+        {
+            return signatures;
+        }
+
+        public boolean isTampered()
+        {
+            return tampered;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Pseudo-random bytes of the given length, generated as they are read.
+     */
+    private static final class NoiseInputStream extends InputStream
+    {
+        private final Random random;
+        private final byte[] noise = new byte[8192];
+        private long remaining;
+
+        private NoiseInputStream(Random random, long length)
+        {
+            this.random = random;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read()
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            remaining--;
+            return random.nextInt(256);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            int n = (int) Math.min(Math.min(len, remaining), noise.length);
+            random.nextBytes(noise);
+            System.arraycopy(noise, 0, b, off, n);
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.util.Calendar;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.ExternalSigningSupport;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
 
 /**
  * An example for singing a PDF with bouncy castle.
@@ -49,6 +50,8 @@ import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
  */
 public class CreateSignature extends CreateSignatureBase
 {
+    private int preferredSignatureSize;
+    private String signatureName = "Example User";
 
     /**
      * Initialize the signature creator with a keystore and certficate password.
@@ -67,6 +70,25 @@ public class CreateSignature extends CreateSignatureBase
         super(keystore, pin);
     }
 
+    /**
+     * Sets the space to reserve for the signature, e.g. for signatures with many certificates.
+     *
+     * @param preferredSignatureSize the size in bytes, or 0 for the PDFBox default of
+     *                               {@link SignatureOptions#DEFAULT_SIGNATURE_SIZE}
+     */
+    public void setPreferredSignatureSize(int preferredSignatureSize)
+    {
+        this.preferredSignatureSize = preferredSignatureSize;
+    }
+
+    /**
+     * Sets the /Name of the signatures created from now on, "Example User" by default.
+     */
+    public void setSignatureName(String signatureName)
+    {
+        this.signatureName = signatureName;
+    }
+
     /**
      * Signs the given PDF file. Alters the original file on disk.
      * @param file the PDF file to sign
@@ -127,7 +149,7 @@ public class CreateSignature extends CreateSignatureBase
         PDSignature signature = new PDSignature();
         signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
         signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
-        signature.setName("Example User");
+        signature.setName(signatureName);
         signature.setLocation("Los Angeles, CA");
         signature.setReason("Testing");
         // TODO extract the above details from the signing certificate? Reason as a parameter?
@@ -141,24 +163,31 @@ public class CreateSignature extends CreateSignatureBase
             setMDPPermission(document, signature, 2);
         }        
 
-        if (isExternalSigning())
-        {
-            //System.out.println("Sign externally...");
-            document.addSignature(signature);
-            ExternalSigningSupport externalSigning =
-                    document.saveIncrementalForExternalSigning(output);
-            // invoke external signature service
-            byte[] cmsSignature = sign(externalSigning.getContent());
-            // set signature bytes received from the service
-            externalSigning.setSignature(cmsSignature);
-        }
-        else
+        try (SignatureOptions signatureOptions = new SignatureOptions())
         {
-            // register signature dictionary and sign interface
-            document.addSignature(signature, this);
+            if (preferredSignatureSize > 0)
+            {
+                signatureOptions.setPreferredSignatureSize(preferredSignatureSize);
+            }
+            if (isExternalSigning())
+            {
+                //System.out.println("Sign externally...");
+                document.addSignature(signature, signatureOptions);
+                ExternalSigningSupport externalSigning =
+                        document.saveIncrementalForExternalSigning(output);
+                // invoke external signature service
+                byte[] cmsSignature = sign(externalSigning.getContent());
+                // set signature bytes received from the service
+                externalSigning.setSignature(cmsSignature);
+            }
+            else
+            {
+                // register signature dictionary and sign interface
+                document.addSignature(signature, this, signatureOptions);
 
-            // write incremental (only for signing purpose)
-            document.saveIncremental(output);
+                // write incremental (only for signing purpose)
+                document.saveIncremental(output);
+            }
         }
     }
 
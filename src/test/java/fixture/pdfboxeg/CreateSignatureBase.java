@@ -60,12 +60,16 @@ import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.tsp.TSPException;
 import org.bouncycastle.util.Store;
+import signature.metrics.Phase;
+import signature.metrics.PhaseTracer;
 
 public abstract class CreateSignatureBase implements SignatureInterface
 {
     private PrivateKey privateKey;
     private Certificate certificate;
+    private List<? extends Certificate> additionalCertificates = new ArrayList<>();
     private TSAClient tsaClient;
+    private PhaseTracer tracer = PhaseTracer.NONE;
     private boolean externalSigning;
 
     /**
@@ -124,6 +128,16 @@ public abstract class CreateSignatureBase implements SignatureInterface
         this.certificate = certificate;
     }
 
+    /**
+     * Sets certificates to include in the signature besides the signing certificate, e.g. its chain.
+     *
+     * @param additionalCertificates the certificates
+     */
+    public void setAdditionalCertificates(List<? extends Certificate> additionalCertificates)
+    {
+        this.additionalCertificates = additionalCertificates;
+    }
+
     public void setTsaClient(TSAClient tsaClient)
     {
         this.tsaClient = tsaClient;
@@ -134,6 +148,16 @@ public abstract class CreateSignatureBase implements SignatureInterface
         return tsaClient;
     }
 
+    /**
+     * Traces the round trips to the TSA, e.g. as Flight Recorder events with {@link signature.metrics.JfrPhaseTracer}.
+     *
+     * @param tracer the tracer, or null to trace nothing
+     */
+    public void setPhaseTracer(PhaseTracer tracer)
+    {
+        this.tracer = tracer == null ? PhaseTracer.NONE : tracer;
+    }
+
     /**
      * We just extend CMS signed Data
      *
@@ -174,7 +198,17 @@ public abstract class CreateSignatureBase implements SignatureInterface
             vector = unsignedAttributes.toASN1EncodableVector();
         }
 
-        byte[] token = getTsaClient().getTimeStampToken(signer.getSignature());
+        PhaseTracer.Span span = tracer.start(Phase.TIMESTAMP_REQUEST);
+        byte[] token;
+        try
+        {
+            token = getTsaClient().getTimeStampToken(signer.getSignature());
+        }
+        finally
+        {
+            // failed round trips are the ones worth tracing
+            span.digestAlgorithm(getTsaClient().getDigestAlgorithm()).bytesHashed(signer.getSignature().length).end();
+        }
         ASN1ObjectIdentifier oid = PKCSObjectIdentifiers.id_aa_signatureTimeStampToken;
         ASN1Encodable signatureTimeStamp = new Attribute(oid, new DERSet(ASN1Primitive.fromByteArray(token)));
 
@@ -213,6 +247,7 @@ public abstract class CreateSignatureBase implements SignatureInterface
         {
             List<Certificate> certList = new ArrayList<>();
             certList.add(certificate);
+            certList.addAll(additionalCertificates);
             Store certs = new JcaCertStore(certList);
             CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
             org.bouncycastle.asn1.x509.Certificate cert = org.bouncycastle.asn1.x509.Certificate.getInstance(ASN1Primitive.fromByteArray(certificate.getEncoded()));
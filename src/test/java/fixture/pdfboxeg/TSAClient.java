@@ -67,6 +67,14 @@ public class TSAClient
         this.digest = digest;
     }
 
+    /**
+     * @return the name of the algorithm the message imprint is digested with
+     */
+    public String getDigestAlgorithm()
+    {
+        return digest.getAlgorithm();
+    }
+
     /**
      *
      * @param messageImprint imprint of message contents